@@ -0,0 +1,4 @@
+#!/bin/sh
+# Solo para desarrollo: permite que el servicio postgres-replica (perfil "replica" de
+# docker-compose) se conecte a la primaria por streaming.
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,90 @@
+#!/bin/sh
+# Tiempo hasta listo (readiness UP) de cada modo de arranque, contra una base ya migrada.
+#
+#   SPRING_DATASOURCE_URL=jdbc:postgresql://localhost:5435/contabilidad_db \
+#   SPRING_DATASOURCE_USERNAME=postgres SPRING_DATASOURCE_PASSWORD=postgres \
+#   CONTABILIDAD_FIRMA_CLAVES=1:<claveBase64> \
+#   scripts/medir-arranque.sh [corridas]
+#
+# Modos:
+#   update    jar ejecutable con ddl-auto=update y show-sql (configuración anterior)
+#   validate  jar ejecutable con la configuración actual (Flyway + validate)
+#   aot       classpath plano con el contexto AOT
+#   aot-cds   classpath plano con el contexto AOT y el archivo CDS (lo que corre la imagen)
+#
+# Compila con -Parranque-rapido salvo OMITIR_BUILD=1. Arranca una sola vez antes de medir
+# para que Flyway migre y la caché de disco no favorezca al primer modo.
+set -eu
+
+CORRIDAS=${1:-5}
+PUERTO=${PUERTO:-18083}
+DIR=$(cd "$(dirname "$0")/.." && pwd)
+SALIDA="$DIR/target/arranque"
+MAIN=com.switchbank.mscontabilidad.MsContabilidadApplication
+LISTO="http://localhost:$PUERTO/actuator/health/readiness"
+
+: "${SPRING_DATASOURCE_URL:?Definir SPRING_DATASOURCE_URL (base PostgreSQL de pruebas)}"
+: "${CONTABILIDAD_FIRMA_CLAVES:?Definir CONTABILIDAD_FIRMA_CLAVES (la clave con que se firmaron las cuentas de la base)}"
+export SPRING_DATASOURCE_URL CONTABILIDAD_FIRMA_CLAVES
+
+cd "$DIR"
+if [ "${OMITIR_BUILD:-0}" != "1" ]; then
+    ./mvnw -q -Parranque-rapido package -DskipTests
+fi
+JAR=$(ls target/ms-contabilidad-*.jar | head -n 1)
+
+# Mismo classpath plano y misma corrida de entrenamiento que el Dockerfile
+rm -rf "$SALIDA" && mkdir -p "$SALIDA/extraido" "$SALIDA/lib"
+(cd "$SALIDA/extraido" && jar xf "$DIR/$JAR" \
+    && mv BOOT-INF/lib/*.jar ../lib/ \
+    && jar cf ../lib/app.jar -C BOOT-INF/classes .)
+(cd "$SALIDA" && java -XX:ArchiveClassesAtExit=app.jsa -Dspring.context.exit=onRefresh \
+    -Dspring.flyway.enabled=false -Dspring.jpa.hibernate.ddl-auto=none \
+    -Dspring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect \
+    -Dspring.jpa.properties.hibernate.temp.use_jdbc_metadata_defaults=false \
+    -cp 'lib/*' "$MAIN" > entrenamiento.log 2>&1)
+
+comando() {
+    case "$1" in
+        update)   echo "java -Dspring.jpa.hibernate.ddl-auto=update -Dspring.jpa.show-sql=true -jar $DIR/$JAR" ;;
+        validate) echo "java -jar $DIR/$JAR" ;;
+        aot)      echo "java -Dspring.aot.enabled=true -cp lib/* $MAIN" ;;
+        aot-cds)  echo "java -XX:SharedArchiveFile=app.jsa -Dspring.aot.enabled=true -cp lib/* $MAIN" ;;
+    esac
+}
+
+# Milisegundos desde el lanzamiento hasta el primer 200 de readiness
+medir() {
+    inicio=$(date +%s%N)
+    # Sin globbing: lib/* lo expande la JVM
+    set -f
+    (cd "$SALIDA" && exec $(comando "$1") --server.port="$PUERTO") > "$SALIDA/$1.log" 2>&1 &
+    set +f
+    pid=$!
+    until curl -sf -o /dev/null "$LISTO"; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "El modo $1 terminó sin quedar listo; ver $SALIDA/$1.log" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+    fin=$(date +%s%N)
+    kill "$pid" && wait "$pid" 2>/dev/null || true
+    echo $(( (fin - inicio) / 1000000 ))
+}
+
+medir validate > /dev/null
+
+printf '%-10s %10s %10s   %s\n' modo mediana minimo "corridas (ms)"
+for modo in update validate aot aot-cds; do
+    tiempos=""
+    i=0
+    while [ "$i" -lt "$CORRIDAS" ]; do
+        tiempos="$tiempos $(medir "$modo")"
+        i=$((i + 1))
+    done
+    ordenados=$(echo "$tiempos" | tr ' ' '\n' | sed '/^$/d' | sort -n)
+    mediana=$(echo "$ordenados" | sed -n "$(( (CORRIDAS + 1) / 2 ))p")
+    minimo=$(echo "$ordenados" | head -n 1)
+    printf '%-10s %10s %10s  %s\n' "$modo" "$mediana" "$minimo" "$tiempos"
+done
@@ -0,0 +1,398 @@
+package com.switchbank.mscontabilidad.carga;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.switchbank.mscontabilidad.MsContabilidadApplication;
+import com.switchbank.mscontabilidad.dto.CrearCuentaRequest;
+import com.switchbank.mscontabilidad.dto.RecargaRequest;
+import com.switchbank.mscontabilidad.dto.RegistroMovimientoRequest;
+import com.switchbank.mscontabilidad.dto.ReturnRequestDTO;
+import com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO;
+import com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO.PosicionBancariaDTO;
+import com.switchbank.mscontabilidad.servicio.ContabilidadServicio;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Arnés de carga y corrección del ledger.
+ *
+ * Levanta el servicio completo con el perfil {@code carga} (H2 en modo PostgreSQL o un
+ * PostgreSQL local vía {@code CARGA_DATASOURCE_URL}), crea y fondea las cuentas, y lanza
+ * clientes concurrentes en lazo cerrado con una mezcla de disponibilidad, movimientos,
+ * transferencias de dos tramos, reservas, reversos y compensaciones. Informa throughput y p50/p99/p999 por operación y
+ * al final verifica las invariantes del ledger ({@link VerificadorInvariantes}); si alguna
+ * falla, termina con código 1.
+ *
+ * Parámetros {@code clave=valor}: clientes, operaciones, calentamiento, bancos,
+ * saldoInicial, semilla y el peso de cada operación (disponibilidad, movimiento,
+ * transferencia, reserva, reverso, compensacion).
+ */
+public final class ArnesCarga {
+
+    enum Operacion {
+        DISPONIBILIDAD(30), MOVIMIENTO(25), TRANSFERENCIA(10), RESERVA(15), REVERSO(15), COMPENSACION(5);
+
+        private final int pesoPorDefecto;
+
+        Operacion(int pesoPorDefecto) {
+            this.pesoPorDefecto = pesoPorDefecto;
+        }
+
+        String clave() {
+            return name().toLowerCase();
+        }
+    }
+
+    private record Registrado(UUID idInstruccion, BigDecimal monto) {
+    }
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final Map<String, String> parametros;
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(TIMEOUT)
+            .build();
+
+    private final List<String> bics = new ArrayList<>();
+    private final int[] acumulados = new int[Operacion.values().length];
+    private final List<Registrado> registrados = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger ciclos = new AtomicInteger();
+    private final LongAdder movimientosConfirmados = new LongAdder();
+    private final LongAdder movimientosSinRespuesta = new LongAdder();
+    private String base;
+
+    private ArnesCarga(Map<String, String> parametros) {
+        this.parametros = parametros;
+        int total = 0;
+        for (Operacion op : Operacion.values()) {
+            total += entero(op.clave(), op.pesoPorDefecto);
+            acumulados[op.ordinal()] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("La mezcla de operaciones no tiene pesos positivos");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> parametros = new HashMap<>();
+        for (String arg : args) {
+            String[] par = arg.split("=", 2);
+            if (par.length != 2) {
+                throw new IllegalArgumentException("Parámetro inválido, se espera clave=valor: " + arg);
+            }
+            parametros.put(par[0], par[1]);
+        }
+        int codigo;
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(MsContabilidadApplication.class)
+                .profiles("carga")
+                .run()) {
+            codigo = new ArnesCarga(parametros).ejecutar(contexto);
+        }
+        System.exit(codigo);
+    }
+
+    private int ejecutar(ConfigurableApplicationContext contexto) throws Exception {
+        int puerto = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+        base = "http://localhost:" + puerto;
+        int clientes = entero("clientes", 64);
+        int operaciones = entero("operaciones", 20_000);
+        int calentamiento = entero("calentamiento", 2_000);
+        long semilla = Long.parseLong(parametros.getOrDefault("semilla", "42"));
+
+        preparar(entero("bancos", 16), new BigDecimal(parametros.getOrDefault("saldoInicial", "100000.00")));
+        System.out.printf("[CARGA] %d bancos, %d clientes, %d operaciones (+%d de calentamiento) contra %s%n",
+                bics.size(), clientes, operaciones, calentamiento, base);
+
+        correr(clientes, calentamiento, semilla - 1, null);
+        Map<Operacion, Resultado> resultados = new EnumMap<>(Operacion.class);
+        for (Operacion op : Operacion.values()) {
+            resultados.put(op, new Resultado());
+        }
+        long inicio = System.nanoTime();
+        correr(clientes, operaciones, semilla, resultados);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        // Con el diario habilitado los movimientos confirmados pueden estar aún sin aplicar en BD
+        contexto.getBean(ContabilidadServicio.class).drenarDiario();
+        informar(resultados, operaciones, segundos);
+
+        VerificadorInvariantes verificador = new VerificadorInvariantes(
+                new JdbcTemplate(contexto.getBean(DataSource.class)));
+        List<String> violaciones = verificador.verificar(movimientosConfirmados.sum(), movimientosSinRespuesta.sum());
+        if (violaciones.isEmpty()) {
+            System.out.println("[CARGA] Invariantes OK: sin saldos negativos, posiciones = suma de movimientos,"
+                    + " sin reversos dobles, movimientos confirmados persistidos");
+            return 0;
+        }
+        violaciones.forEach(v -> System.out.println("[CARGA] VIOLACIÓN: " + v));
+        return 1;
+    }
+
+    private void preparar(int bancos, BigDecimal saldoInicial) throws Exception {
+        for (int i = 0; i < bancos; i++) {
+            String bic = String.format("CARGA%03dXXX", i);
+            CrearCuentaRequest cuenta = new CrearCuentaRequest();
+            cuenta.setCodigoBic(bic);
+            exigirOk(enviar("/api/v1/ledger/cuentas", cuenta), "crear cuenta " + bic);
+
+            RecargaRequest recarga = new RecargaRequest();
+            recarga.setBic(bic);
+            recarga.setMonto(saldoInicial);
+            recarga.setIdInstruccion(UUID.randomUUID());
+            exigirOk(enviar("/api/v1/funding/recharge", recarga), "fondear " + bic);
+            bics.add(bic);
+        }
+    }
+
+    private void correr(int clientes, int operaciones, long semilla, Map<Operacion, Resultado> resultados)
+            throws Exception {
+        AtomicInteger restantes = new AtomicInteger(operaciones);
+        SplittableRandom raiz = new SplittableRandom(semilla);
+        List<Future<Map<Operacion, Resultado>>> futuros = new ArrayList<>(clientes);
+        try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clientes; c++) {
+                SplittableRandom random = raiz.split();
+                futuros.add(ejecutor.submit(() -> cliente(random, restantes)));
+            }
+        }
+        if (resultados != null) {
+            for (Future<Map<Operacion, Resultado>> futuro : futuros) {
+                futuro.get().forEach((op, parcial) -> resultados.get(op).agregar(parcial));
+            }
+        }
+    }
+
+    private Map<Operacion, Resultado> cliente(SplittableRandom random, AtomicInteger restantes) {
+        Map<Operacion, Resultado> propios = new EnumMap<>(Operacion.class);
+        while (restantes.getAndDecrement() > 0) {
+            Operacion op = elegir(random);
+            if (op == Operacion.REVERSO && registrados.isEmpty()) {
+                op = Operacion.MOVIMIENTO;
+            }
+            Resultado resultado = propios.computeIfAbsent(op, k -> new Resultado());
+            long t0 = System.nanoTime();
+            int estado;
+            try {
+                estado = invocar(op, random);
+            } catch (Exception e) {
+                estado = -1;
+                // En una transferencia solo queda sin respuesta el tramo en curso
+                if (op == Operacion.MOVIMIENTO || op == Operacion.TRANSFERENCIA) {
+                    movimientosSinRespuesta.increment();
+                }
+            }
+            resultado.registrar(estado, System.nanoTime() - t0);
+        }
+        return propios;
+    }
+
+    private Operacion elegir(SplittableRandom random) {
+        int r = random.nextInt(acumulados[acumulados.length - 1]);
+        for (Operacion op : Operacion.values()) {
+            if (r < acumulados[op.ordinal()]) {
+                return op;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private int invocar(Operacion op, SplittableRandom random) throws Exception {
+        String bic = bics.get(random.nextInt(bics.size()));
+        return switch (op) {
+            case DISPONIBILIDAD -> consultar("/api/v1/funding/available/" + bic + "/" + monto(random, 50_000));
+            case MOVIMIENTO -> {
+                RegistroMovimientoRequest req = movimiento(bic, random.nextBoolean() ? "DEBIT" : "CREDIT", random);
+                int estado = enviar("/api/v1/ledger/movimientos", req).statusCode();
+                if (estado == 200) {
+                    movimientosConfirmados.increment();
+                    registrados.add(new Registrado(req.getIdInstruccion(), req.getMonto()));
+                }
+                yield estado;
+            }
+            case TRANSFERENCIA -> transferencia(bic, otro(bic, random), random);
+            case RESERVA -> {
+                // Una parte con TTL corto para que la rueda expire retenciones durante la corrida
+                long ttl = random.nextInt(10) < 3 ? 2 : 60;
+                yield enviar("/api/v1/ledger/reservar?ttlSegundos=" + ttl, movimiento(bic, "DEBIT", random))
+                        .statusCode();
+            }
+            case REVERSO -> {
+                // Sin quitar el original de la lista: los reversos repetidos deben rechazarse
+                Registrado original;
+                synchronized (registrados) {
+                    original = registrados.get(random.nextInt(registrados.size()));
+                }
+                yield enviar("/api/v1/ledger/v2/switch/transfers/return", reverso(original)).statusCode();
+            }
+            case COMPENSACION -> enviar("/api/v1/ledger/compensar",
+                    compensacion(bic, otro(bic, random), monto(random, 5_000))).statusCode();
+        };
+    }
+
+    /**
+     * Instrucción del switch con dos tramos: débito al deudor y crédito al acreedor con el
+     * mismo idInstruccion. El orden es al azar, así el reverso (que toma el primer tramo
+     * asentado) alcanza tanto débitos como créditos de instrucciones con otro tramo en otra
+     * cuenta. Si el primer tramo se rechaza no se envía el segundo.
+     */
+    private int transferencia(String deudor, String acreedor, SplittableRandom random) throws Exception {
+        RegistroMovimientoRequest debito = movimiento(deudor, "DEBIT", random);
+        RegistroMovimientoRequest credito = movimiento(acreedor, "CREDIT", random);
+        credito.setIdInstruccion(debito.getIdInstruccion());
+        credito.setMonto(debito.getMonto());
+
+        boolean creditoPrimero = random.nextBoolean();
+        RegistroMovimientoRequest primero = creditoPrimero ? credito : debito;
+        int estado = enviar("/api/v1/ledger/movimientos", primero).statusCode();
+        if (estado != 200) {
+            return estado;
+        }
+        movimientosConfirmados.increment();
+        registrados.add(new Registrado(primero.getIdInstruccion(), primero.getMonto()));
+
+        estado = enviar("/api/v1/ledger/movimientos", creditoPrimero ? debito : credito).statusCode();
+        if (estado == 200) {
+            movimientosConfirmados.increment();
+        }
+        return estado;
+    }
+
+    private String otro(String bic, SplittableRandom random) {
+        String otro = bics.get(random.nextInt(bics.size()));
+        return otro.equals(bic) ? bics.get((bics.indexOf(bic) + 1) % bics.size()) : otro;
+    }
+
+    private static RegistroMovimientoRequest movimiento(String bic, String tipo, SplittableRandom random) {
+        RegistroMovimientoRequest req = new RegistroMovimientoRequest();
+        req.setCodigoBic(bic);
+        req.setIdInstruccion(new UUID(random.nextLong(), random.nextLong()));
+        req.setMonto(monto(random, 50_000));
+        req.setTipo(tipo);
+        return req;
+    }
+
+    private static ReturnRequestDTO reverso(Registrado original) {
+        return new ReturnRequestDTO(
+                new ReturnRequestDTO.Header(UUID.randomUUID().toString(), LocalDateTime.now().toString(), "CARGA"),
+                new ReturnRequestDTO.Body(UUID.randomUUID().toString(), original.idInstruccion().toString(), "AC04",
+                        new ReturnRequestDTO.Amount("USD", original.monto())));
+    }
+
+    // El deudor liquida contra lo que tiene bloqueado; si no le alcanza, el ciclo se rechaza completo
+    private SolicitudCompensacionDTO compensacion(String deudor, String acreedor, BigDecimal monto) {
+        SolicitudCompensacionDTO req = new SolicitudCompensacionDTO();
+        req.setCicloId(ciclos.incrementAndGet());
+        req.setPosiciones(List.of(posicion(deudor, monto, BigDecimal.ZERO), posicion(acreedor, BigDecimal.ZERO, monto)));
+        return req;
+    }
+
+    private static PosicionBancariaDTO posicion(String bic, BigDecimal debitos, BigDecimal creditos) {
+        PosicionBancariaDTO pos = new PosicionBancariaDTO();
+        pos.setBic(bic);
+        pos.setTotalDebitos(debitos);
+        pos.setTotalCreditos(creditos);
+        pos.setPosicionNeta(creditos.subtract(debitos));
+        return pos;
+    }
+
+    // Entre 0.01 y maxCentavos/100, siempre con escala 2
+    private static BigDecimal monto(SplittableRandom random, int maxCentavos) {
+        return BigDecimal.valueOf(1 + random.nextInt(maxCentavos), 2);
+    }
+
+    private int consultar(String ruta) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(base + ruta)).timeout(TIMEOUT).GET().build();
+        return http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpResponse<String> enviar(String ruta, Object cuerpo) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(base + ruta))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(cuerpo)))
+                .build();
+        return http.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void exigirOk(HttpResponse<String> respuesta, String paso) {
+        if (respuesta.statusCode() != 200) {
+            throw new IllegalStateException("No se pudo " + paso + ": HTTP " + respuesta.statusCode() + " "
+                    + respuesta.body());
+        }
+    }
+
+    private static void informar(Map<Operacion, Resultado> resultados, int operaciones, double segundos) {
+        Resultado total = new Resultado();
+        resultados.values().forEach(total::agregar);
+        System.out.printf("[CARGA] %d operaciones en %.1f s: %.0f op/s%n", operaciones, segundos,
+                operaciones / segundos);
+        System.out.printf("%-15s %8s %8s %8s %8s %8s %10s %10s %10s%n", "operacion", "total", "2xx", "4xx", "5xx",
+                "fallas", "p50 ms", "p99 ms", "p999 ms");
+        resultados.forEach((op, r) -> r.imprimir(op.clave()));
+        total.imprimir("TOTAL");
+    }
+
+    private int entero(String clave, int porDefecto) {
+        return Integer.parseInt(parametros.getOrDefault(clave, String.valueOf(porDefecto)));
+    }
+
+    private static final class Resultado {
+        private final Latencias latencias = new Latencias();
+        private final long[] porClase = new long[4];
+
+        void registrar(int estado, long nanos) {
+            latencias.registrar(nanos);
+            porClase[clase(estado)]++;
+        }
+
+        void agregar(Resultado otro) {
+            latencias.agregar(otro.latencias);
+            for (int i = 0; i < porClase.length; i++) {
+                porClase[i] += otro.porClase[i];
+            }
+        }
+
+        void imprimir(String nombre) {
+            latencias.ordenar();
+            System.out.printf("%-15s %8d %8d %8d %8d %8d %10.2f %10.2f %10.2f%n", nombre, latencias.cantidad(),
+                    porClase[0], porClase[1], porClase[2], porClase[3],
+                    latencias.percentil(0.50), latencias.percentil(0.99), latencias.percentil(0.999));
+        }
+
+        // 0 = 2xx, 1 = 4xx (rechazo de negocio), 2 = 5xx, 3 = sin respuesta
+        private static int clase(int estado) {
+            if (estado < 0) {
+                return 3;
+            }
+            if (estado < 300) {
+                return 0;
+            }
+            return estado < 500 ? 1 : 2;
+        }
+    }
+}
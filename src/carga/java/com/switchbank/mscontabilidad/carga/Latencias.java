@@ -0,0 +1,45 @@
+package com.switchbank.mscontabilidad.carga;
+
+import java.util.Arrays;
+
+/**
+ * Latencias de un cliente para una operación, en nanosegundos. Cada cliente escribe solo
+ * en las suyas; al final se combinan para calcular percentiles exactos.
+ */
+final class Latencias {
+
+    private long[] muestras = new long[1024];
+    private int n;
+
+    void registrar(long nanos) {
+        if (n == muestras.length) {
+            muestras = Arrays.copyOf(muestras, n * 2);
+        }
+        muestras[n++] = nanos;
+    }
+
+    int cantidad() {
+        return n;
+    }
+
+    void agregar(Latencias otras) {
+        for (int i = 0; i < otras.n; i++) {
+            registrar(otras.muestras[i]);
+        }
+    }
+
+    /**
+     * Ordena las muestras; debe llamarse una vez, antes de {@link #percentil(double)}.
+     */
+    void ordenar() {
+        Arrays.sort(muestras, 0, n);
+    }
+
+    double percentil(double q) {
+        if (n == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(q * n) - 1;
+        return muestras[Math.max(0, Math.min(n - 1, i))] / 1_000_000.0;
+    }
+}
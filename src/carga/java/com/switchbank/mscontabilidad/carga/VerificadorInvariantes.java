@@ -0,0 +1,96 @@
+package com.switchbank.mscontabilidad.carga;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Invariantes del ledger verificadas directamente en BD al terminar la carga.
+ *
+ * <ul>
+ * <li>Ningún saldo disponible ni fondo bloqueado negativo.</li>
+ * <li>La posición total de cada cuenta (disponible + bloqueado) es la suma de los efectos
+ * de sus movimientos: las cuentas nacen en cero, las reservas y liberaciones solo mueven
+ * fondos entre disponible y bloqueado, y la compensación asienta la posición neta.</li>
+ * <li>Ningún movimiento revertido más de una vez en su cuenta.</li>
+ * <li>Cada débito/crédito confirmado al cliente existe en BD, y ninguno de más salvo los
+ * de peticiones sin respuesta (timeout), cuyo resultado el cliente no conoce.</li>
+ * </ul>
+ */
+final class VerificadorInvariantes {
+
+    private static final String SQL_NEGATIVOS = """
+            SELECT bic FROM CuentaTecnica
+            WHERE saldoDisponible < 0 OR fondosBloqueados < 0
+            """;
+
+    // El efecto de un reverso depende del tipo del original en la misma cuenta: devolver un
+    // débito acredita. Los dos tramos de una transferencia comparten idInstruccion.
+    private static final String SQL_POSICIONES = """
+            SELECT c.bic AS bic,
+                   c.saldoDisponible + c.fondosBloqueados AS posicion,
+                   COALESCE(SUM(CASE
+                       WHEN m.tipo = 'DEBIT' THEN -m.monto
+                       WHEN m.tipo = 'REVERSAL' AND o.tipo = 'DEBIT' THEN m.monto
+                       WHEN m.tipo = 'REVERSAL' THEN -m.monto
+                       ELSE m.monto END), 0) AS efectos
+            FROM CuentaTecnica c
+            LEFT JOIN Movimiento m ON m.idCuenta = c.idCuenta
+            LEFT JOIN Movimiento o ON m.tipo = 'REVERSAL' AND o.idInstruccion = m.referenciaId
+                                   AND o.idCuenta = m.idCuenta AND o.tipo <> 'REVERSAL'
+            GROUP BY c.bic, c.saldoDisponible, c.fondosBloqueados
+            """;
+
+    private static final String SQL_REVERSOS_DOBLES = """
+            SELECT c.bic AS bic, m.referenciaId AS referenciaId, COUNT(*) AS reversos
+            FROM Movimiento m JOIN CuentaTecnica c ON c.idCuenta = m.idCuenta
+            WHERE m.tipo = 'REVERSAL'
+            GROUP BY c.bic, m.referenciaId HAVING COUNT(*) > 1
+            """;
+
+    private static final String SQL_DEBITOS_CREDITOS = """
+            SELECT COUNT(*) FROM Movimiento WHERE tipo IN ('DEBIT', 'CREDIT')
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    VerificadorInvariantes(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Devuelve las violaciones encontradas; vacía si el ledger es consistente.
+     */
+    List<String> verificar(long movimientosConfirmados, long movimientosSinRespuesta) {
+        List<String> violaciones = new ArrayList<>();
+
+        for (String bic : jdbc.queryForList(SQL_NEGATIVOS, String.class)) {
+            violaciones.add("Saldo negativo en " + bic);
+        }
+
+        for (Map<String, Object> fila : jdbc.queryForList(SQL_POSICIONES)) {
+            BigDecimal posicion = (BigDecimal) fila.get("posicion");
+            BigDecimal efectos = (BigDecimal) fila.get("efectos");
+            if (posicion.compareTo(efectos) != 0) {
+                violaciones.add("Posición de " + fila.get("bic") + " = " + posicion
+                        + " pero sus movimientos suman " + efectos);
+            }
+        }
+
+        for (Map<String, Object> fila : jdbc.queryForList(SQL_REVERSOS_DOBLES)) {
+            violaciones.add("Movimiento " + fila.get("referenciaId") + " de " + fila.get("bic") + " revertido "
+                    + fila.get("reversos") + " veces");
+        }
+
+        Long persistidos = jdbc.queryForObject(SQL_DEBITOS_CREDITOS, Long.class);
+        if (persistidos == null || persistidos < movimientosConfirmados
+                || persistidos > movimientosConfirmados + movimientosSinRespuesta) {
+            violaciones.add("Débitos/créditos confirmados al cliente: " + movimientosConfirmados
+                    + " (sin respuesta " + movimientosSinRespuesta + "), persistidos: " + persistidos);
+        }
+        return violaciones;
+    }
+}
@@ -0,0 +1,85 @@
+package com.switchbank.mscontabilidad.benchmark;
+
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Secuencia de saldo de {@code registrarMovimiento}: comparación contra el saldo, débito y
+ * crédito, y el paso a centavos que hace la firma.
+ *
+ * {@code debitoYCredito} es la variante BigDecimal original y queda como referencia;
+ * {@code debitoYCreditoCentavos} es la actual: convierte el monto recibido una vez con
+ * {@link Centavos#de} y opera sobre long.
+ *
+ * Cada invocación aplica un débito y un crédito del mismo monto, así el saldo no deriva.
+ * {@code escalaMonto} reproduce montos recibidos por JSON con escala distinta de 2
+ * ("150", "150.5"), que cambian la escala del resultado y el costo de setScale.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AritmeticaSaldoBenchmark {
+
+    @Param({ "0", "1", "2" })
+    private int escalaMonto;
+
+    private BigDecimal saldo;
+    private BigDecimal monto;
+    private long saldoCentavos;
+
+    @Setup
+    public void preparar() {
+        saldo = new BigDecimal("1250075.40");
+        monto = new BigDecimal("150.25").setScale(escalaMonto, RoundingMode.DOWN);
+        saldoCentavos = Centavos.de(saldo);
+    }
+
+    @Benchmark
+    public long debitoYCredito() {
+        if (saldo.compareTo(monto) < 0) {
+            throw new IllegalStateException("FONDOS INSUFICIENTES");
+        }
+        BigDecimal debitado = saldo.subtract(monto);
+        long centavosDebito = centavos(debitado);
+        saldo = debitado.add(monto);
+        return centavosDebito + centavos(saldo);
+    }
+
+    @Benchmark
+    public long debitoYCreditoCentavos() {
+        long montoCentavos = Centavos.de(monto);
+        if (saldoCentavos < montoCentavos) {
+            throw new IllegalStateException("FONDOS INSUFICIENTES");
+        }
+        long debitado = Centavos.restar(saldoCentavos, montoCentavos);
+        saldoCentavos = Centavos.sumar(debitado, montoCentavos);
+        return debitado + saldoCentavos;
+    }
+
+    @Benchmark
+    public boolean comparar() {
+        return saldo.compareTo(monto) >= 0;
+    }
+
+    // Conversión que hacía FirmaIntegridad antes de guardar los saldos en centavos
+    private static long centavos(BigDecimal valor) {
+        return valor.setScale(2, RoundingMode.HALF_UP).scaleByPowerOfTen(2).longValueExact();
+    }
+}
@@ -0,0 +1,58 @@
+package com.switchbank.mscontabilidad.benchmark;
+
+import com.switchbank.mscontabilidad.dto.CuentaDTO;
+import com.switchbank.mscontabilidad.dto.MovimientoDTO;
+import com.switchbank.mscontabilidad.mapper.ContabilidadMapper;
+import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import com.switchbank.mscontabilidad.modelo.Movimiento;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ContabilidadMapper}: una cuenta y listas grandes de movimientos (como las de
+ * /range y /range/page). Los movimientos se reparten entre varias cuentas para que el
+ * acceso a {@code getCuenta().getBic()} no sea siempre sobre el mismo objeto.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ContabilidadMapperBenchmark {
+
+    @Param({ "1000", "100000" })
+    private int tamano;
+
+    private final ContabilidadMapper mapper = new ContabilidadMapper();
+    private CuentaTecnica cuenta;
+    private List<Movimiento> movimientos;
+
+    @Setup
+    public void preparar() {
+        cuenta = Datos.cuenta(0);
+        movimientos = Datos.movimientos(tamano);
+    }
+
+    @Benchmark
+    public CuentaDTO cuentaToDTO() {
+        return mapper.toDTO(cuenta);
+    }
+
+    @Benchmark
+    public List<MovimientoDTO> movimientosToDTOList() {
+        return mapper.toDTOList(movimientos);
+    }
+}
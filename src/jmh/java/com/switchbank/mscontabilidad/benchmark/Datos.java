@@ -0,0 +1,54 @@
+package com.switchbank.mscontabilidad.benchmark;
+
+import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import com.switchbank.mscontabilidad.modelo.Movimiento;
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Datos sintéticos compartidos por los benchmarks. Semilla fija para que las corridas
+ * sean comparables entre sí.
+ */
+final class Datos {
+
+    static final int CUENTAS = 64;
+
+    private Datos() {
+    }
+
+    static CuentaTecnica cuenta(int i) {
+        CuentaTecnica cuenta = new CuentaTecnica(String.format("BANCO%03dXXX", i));
+        cuenta.setIdCuenta(UUID.nameUUIDFromBytes(cuenta.getBic().getBytes()));
+        cuenta.setSaldoDisponible(125_007_540L + i * 1_000L);
+        cuenta.setFirmaIntegridad("v1:0123456789012345678901234567890123456789012=");
+        return cuenta;
+    }
+
+    static List<Movimiento> movimientos(int n) {
+        Random random = new Random(42);
+        CuentaTecnica[] cuentas = new CuentaTecnica[CUENTAS];
+        for (int i = 0; i < cuentas.length; i++) {
+            cuentas[i] = cuenta(i);
+        }
+        LocalDateTime inicio = LocalDateTime.of(2026, 1, 15, 9, 0);
+        List<Movimiento> movimientos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Movimiento mov = new Movimiento();
+            mov.setIdMovimiento((long) i + 1);
+            mov.setCuenta(cuentas[random.nextInt(cuentas.length)]);
+            mov.setIdInstruccion(new UUID(random.nextLong(), random.nextLong()));
+            mov.setTipo(random.nextBoolean() ? TipoMovimiento.DEBIT : TipoMovimiento.CREDIT);
+            mov.setMonto(BigDecimal.valueOf(1 + random.nextInt(5_000_000), 2));
+            mov.setSaldoResultante(BigDecimal.valueOf(random.nextInt(Integer.MAX_VALUE), 2));
+            mov.setFechaRegistro(inicio.plusNanos(i * 1_500_000L));
+            movimientos.add(mov);
+        }
+        return movimientos;
+    }
+}
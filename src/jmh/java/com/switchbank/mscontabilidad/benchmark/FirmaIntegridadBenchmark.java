@@ -0,0 +1,84 @@
+package com.switchbank.mscontabilidad.benchmark;
+
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import com.switchbank.mscontabilidad.servicio.FirmaIntegridad;
+import com.switchbank.mscontabilidad.servicio.MetricasContabilidad;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Firma de integridad que se calcula en cada asiento ({@code ContabilidadServicio.calcularHash}).
+ *
+ * <ul>
+ * <li>{@code hashLegado}: el SHA-256 sobre Strings del esquema original, como referencia.</li>
+ * <li>{@code firmar}: HMAC-SHA256 de {@link FirmaIntegridad} con buffers por hilo.</li>
+ * <li>{@code calcularHash}: lo anterior más el timer de {@link MetricasContabilidad},
+ * que es lo que corre realmente en el camino caliente.</li>
+ * <li>{@code verificar}: la validación previa a cada mutación.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FirmaIntegridadBenchmark {
+
+    private static final String CLAVES = "1:Q0xBVkVfREVfQkVOQ0hNQVJLX05PX1VTQVJfRU5fUFJPRA==";
+
+    private FirmaIntegridad firma;
+    private MetricasContabilidad metricas;
+    private CuentaTecnica cuenta;
+
+    @Setup
+    public void preparar() {
+        firma = new FirmaIntegridad(CLAVES, 1, true);
+        metricas = new MetricasContabilidad(new SimpleMeterRegistry(), 50);
+        cuenta = new CuentaTecnica("BANCOECUXXX");
+        cuenta.setSaldoDisponible(125_007_540L);
+        cuenta.setFondosBloqueados(320_000L);
+        cuenta.setFirmaIntegridad(firma.firmar(cuenta));
+    }
+
+    @Benchmark
+    public String hashLegado() throws Exception {
+        String secretKey = "SECRET_KEY_INTERNAL_LEDGER_V3";
+        String saldoFormateado = Centavos.aBigDecimal(cuenta.getSaldoDisponible()).toString();
+        String bloqueadoFormateado = Centavos.aBigDecimal(cuenta.getFondosBloqueados()).toString();
+        String data = saldoFormateado + bloqueadoFormateado + cuenta.getBic() + secretKey;
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    @Benchmark
+    public String firmar() {
+        return firma.firmar(cuenta);
+    }
+
+    @Benchmark
+    public String calcularHash() {
+        return metricas.firmar(() -> firma.firmar(cuenta));
+    }
+
+    @Benchmark
+    public boolean verificar() {
+        return firma.verificar(cuenta);
+    }
+}
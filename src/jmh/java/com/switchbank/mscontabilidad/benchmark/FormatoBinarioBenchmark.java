@@ -0,0 +1,109 @@
+package com.switchbank.mscontabilidad.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.switchbank.mscontabilidad.dto.CuentaDTO;
+import com.switchbank.mscontabilidad.dto.FormatoBinario;
+import com.switchbank.mscontabilidad.dto.RegistroMovimientoRequest;
+import com.switchbank.mscontabilidad.mapper.ContabilidadMapper;
+import com.switchbank.mscontabilidad.modelo.Movimiento;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON frente a {@link FormatoBinario} en el camino de ingreso del switch: decodificar un
+ * movimiento y un lote, y codificar la respuesta de cuenta. Los bytes en el cable de cada
+ * variante se imprimen al preparar el estado.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatoBinarioBenchmark {
+
+    private static final TypeReference<List<RegistroMovimientoRequest>> LOTE = new TypeReference<>() {
+    };
+
+    @Param({ "1000" })
+    private int tamano;
+
+    private ObjectMapper objectMapper;
+    private CuentaDTO cuenta;
+    private byte[] movimientoJson;
+    private byte[] movimientoBinario;
+    private byte[] loteJson;
+    private byte[] loteBinario;
+
+    @Setup
+    public void preparar() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        cuenta = new ContabilidadMapper().toDTO(Datos.cuenta(0));
+        List<RegistroMovimientoRequest> lote = Datos.movimientos(tamano).stream()
+                .map(FormatoBinarioBenchmark::solicitud)
+                .toList();
+
+        movimientoJson = objectMapper.writeValueAsBytes(lote.get(0));
+        movimientoBinario = FormatoBinario.escribirMovimiento(lote.get(0));
+        loteJson = objectMapper.writeValueAsBytes(lote);
+        loteBinario = FormatoBinario.escribirLote(lote);
+        System.out.printf("%n[FORMATO] movimiento: json %d B, binario %d B | lote de %d: json %d B, binario %d B"
+                + " | cuenta: json %d B, binario %d B%n",
+                movimientoJson.length, movimientoBinario.length, tamano, loteJson.length, loteBinario.length,
+                objectMapper.writeValueAsBytes(cuenta).length, FormatoBinario.escribirCuenta(cuenta).length);
+    }
+
+    private static RegistroMovimientoRequest solicitud(Movimiento mov) {
+        RegistroMovimientoRequest req = new RegistroMovimientoRequest();
+        req.setCodigoBic(mov.getCuenta().getBic());
+        req.setIdInstruccion(mov.getIdInstruccion());
+        req.setMonto(mov.getMonto());
+        req.setTipo(mov.getTipo().name());
+        return req;
+    }
+
+    @Benchmark
+    public RegistroMovimientoRequest decodificarMovimientoJson() throws Exception {
+        return objectMapper.readValue(movimientoJson, RegistroMovimientoRequest.class);
+    }
+
+    @Benchmark
+    public RegistroMovimientoRequest decodificarMovimientoBinario() {
+        return FormatoBinario.leerMovimiento(ByteBuffer.wrap(movimientoBinario));
+    }
+
+    @Benchmark
+    public List<RegistroMovimientoRequest> decodificarLoteJson() throws Exception {
+        return objectMapper.readValue(loteJson, LOTE);
+    }
+
+    @Benchmark
+    public List<RegistroMovimientoRequest> decodificarLoteBinario() {
+        return FormatoBinario.leerLote(ByteBuffer.wrap(loteBinario));
+    }
+
+    @Benchmark
+    public byte[] codificarCuentaJson() throws Exception {
+        return objectMapper.writeValueAsBytes(cuenta);
+    }
+
+    @Benchmark
+    public byte[] codificarCuentaBinario() {
+        return FormatoBinario.escribirCuenta(cuenta);
+    }
+}
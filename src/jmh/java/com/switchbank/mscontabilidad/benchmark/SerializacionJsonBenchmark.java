@@ -0,0 +1,67 @@
+package com.switchbank.mscontabilidad.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.switchbank.mscontabilidad.dto.CuentaDTO;
+import com.switchbank.mscontabilidad.dto.MovimientoDTO;
+import com.switchbank.mscontabilidad.mapper.ContabilidadMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización Jackson de las respuestas del ledger. El {@link ObjectMapper} se arma con
+ * {@link Jackson2ObjectMapperBuilder}, igual que el de Spring MVC (JavaTimeModule y
+ * fechas ISO-8601 en vez de timestamps).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializacionJsonBenchmark {
+
+    @Param({ "1000" })
+    private int tamano;
+
+    private ObjectMapper objectMapper;
+    private CuentaDTO cuenta;
+    private MovimientoDTO movimiento;
+    private List<MovimientoDTO> movimientos;
+
+    @Setup
+    public void preparar() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ContabilidadMapper mapper = new ContabilidadMapper();
+        cuenta = mapper.toDTO(Datos.cuenta(0));
+        movimientos = mapper.toDTOList(Datos.movimientos(tamano));
+        movimiento = movimientos.get(0);
+    }
+
+    @Benchmark
+    public byte[] cuentaDTO() throws Exception {
+        return objectMapper.writeValueAsBytes(cuenta);
+    }
+
+    @Benchmark
+    public byte[] movimientoDTO() throws Exception {
+        return objectMapper.writeValueAsBytes(movimiento);
+    }
+
+    @Benchmark
+    public byte[] listaMovimientosDTO() throws Exception {
+        return objectMapper.writeValueAsBytes(movimientos);
+    }
+}
@@ -0,0 +1,272 @@
+package com.switchbank.mscontabilidad.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.switchbank.mscontabilidad.dto.FormatoBinario;
+import com.switchbank.mscontabilidad.excepcion.ErrorDTO;
+import com.switchbank.mscontabilidad.servicio.ControlAdmision;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Admisión por BIC ({@link ControlAdmision}) detrás del filtro del APIM: lo que excede la
+ * tasa o la concurrencia de su BIC recibe 429 con Retry-After sin llegar a los controladores.
+ *
+ * El BIC se toma de la ruta o, en las instrucciones individuales, del cuerpo (hasta
+ * {@link #MAX_CUERPO} bytes, que se guarda para que el controlador lo vuelva a leer). Lotes,
+ * rangos y demás consultas van a la partición compartida. Health y el feed (long polling
+ * y SSE, esperas largas por diseño) no pasan por el control.
+ */
+@Slf4j
+@Component
+@Order(2)
+@RequiredArgsConstructor
+public class ControlAdmisionFilter implements Filter {
+
+    private static final Pattern BIC_EN_RUTA = Pattern.compile("^/api/v1/(?:ledger/cuentas|funding/available)/([^/]+)");
+    // Campo del cuerpo con el BIC, por ruta
+    private static final Map<String, String> CAMPO_BIC = Map.of(
+            "/api/v1/ledger/movimientos", "codigoBic",
+            "/api/v1/ledger/reservar", "codigoBic",
+            "/api/v1/funding/recharge", "bic",
+            "/api/v1/ledger/v2/switch/transfers/return", "originatingBankId");
+    private static final int MAX_CUERPO = 16 * 1024;
+    private static final int MAX_BIC = 20;
+
+    private final ControlAdmision admision;
+    private final ObjectMapper mapper;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        String path = httpRequest.getRequestURI();
+
+        if (!admision.habilitada() || path.startsWith("/actuator") || path.startsWith("/api/v1/ledger/feed")) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest peticion = httpRequest;
+        String bic = bicEnRuta(path);
+        String campo = CAMPO_BIC.get(path);
+        if (bic == null && campo != null && "POST".equals(httpRequest.getMethod())) {
+            long longitud = httpRequest.getContentLengthLong();
+            if (longitud > 0 && longitud <= MAX_CUERPO) {
+                CuerpoLeido leido = new CuerpoLeido(httpRequest, httpRequest.getInputStream().readAllBytes());
+                peticion = leido;
+                bic = bicEnCuerpo(leido, campo);
+            }
+        }
+
+        ControlAdmision.Permiso permiso = admision.admitir(bic);
+        if (!permiso.admitido()) {
+            rechazar(peticion, httpResponse, permiso, bic);
+            return;
+        }
+        boolean asincrona = false;
+        try {
+            chain.doFilter(peticion, response);
+            if (peticion.isAsyncStarted()) {
+                // Respuestas en streaming: la petición sigue en curso hasta completar
+                peticion.getAsyncContext().addListener(new Liberacion(permiso, httpResponse));
+                asincrona = true;
+            }
+        } finally {
+            if (!asincrona) {
+                permiso.liberar(httpResponse.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+            }
+        }
+    }
+
+    private static String bicEnRuta(String path) {
+        Matcher m = BIC_EN_RUTA.matcher(path);
+        return m.find() ? bicValido(m.group(1)) : null;
+    }
+
+    private static String bicEnCuerpo(CuerpoLeido peticion, String campo) {
+        String tipo = peticion.getContentType();
+        if (tipo != null && tipo.startsWith(FormatoBinario.TIPO_CONTENIDO)) {
+            if (!"codigoBic".equals(campo)) {
+                return null;
+            }
+            try {
+                return bicValido(FormatoBinario.leerMovimiento(ByteBuffer.wrap(peticion.cuerpo)).getCodigoBic());
+            } catch (RuntimeException e) {
+                // El controlador responde el error de formato
+                return null;
+            }
+        }
+        return bicValido(valorJson(peticion.cuerpo, campo));
+    }
+
+    /**
+     * Valor de texto del primer {@code "campo": "valor"} del JSON, sin deserializarlo: basta
+     * para el BIC, que no lleva comillas ni escapes. Si no lo encuentra, {@code null}.
+     */
+    private static String valorJson(byte[] json, String campo) {
+        byte[] clave = ('"' + campo + '"').getBytes(StandardCharsets.US_ASCII);
+        int i = indice(json, clave);
+        if (i < 0) {
+            return null;
+        }
+        i = saltarEspacios(json, i + clave.length);
+        if (i >= json.length || json[i] != ':') {
+            return null;
+        }
+        i = saltarEspacios(json, i + 1);
+        if (i >= json.length || json[i] != '"') {
+            return null;
+        }
+        int inicio = i + 1;
+        for (int fin = inicio; fin < json.length && fin - inicio <= MAX_BIC; fin++) {
+            if (json[fin] == '"') {
+                return new String(json, inicio, fin - inicio, StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
+    private static int indice(byte[] texto, byte[] patron) {
+        for (int i = 0; i <= texto.length - patron.length; i++) {
+            int j = 0;
+            while (j < patron.length && texto[i + j] == patron[j]) {
+                j++;
+            }
+            if (j == patron.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int saltarEspacios(byte[] json, int i) {
+        while (i < json.length && (json[i] == ' ' || json[i] == '\t' || json[i] == '\n' || json[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String bicValido(String bic) {
+        return bic == null || bic.isBlank() || bic.length() > MAX_BIC ? null : bic;
+    }
+
+    private void rechazar(HttpServletRequest request, HttpServletResponse response, ControlAdmision.Permiso permiso,
+            String bic) throws IOException {
+        String mensaje = ControlAdmision.MOTIVO_TASA.equals(permiso.motivo())
+                ? "Tasa de solicitudes excedida para "
+                : "Demasiadas solicitudes en curso para ";
+        ErrorDTO error = ErrorDTO.builder()
+                .codigo("ADMISION_RECHAZADA")
+                .mensaje(mensaje + (bic == null ? "la partición compartida" : "el BIC: " + bic))
+                .fecha(LocalDateTime.now())
+                .path(request.getRequestURI())
+                .build();
+        log.debug("[ADMISION] {} ({})", error.getMensaje(), request.getRequestURI());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(permiso.reintentarEnSegundos()));
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null && accept.contains(FormatoBinario.TIPO_CONTENIDO)) {
+            response.setContentType(FormatoBinario.TIPO_CONTENIDO);
+            response.getOutputStream().write(FormatoBinario.escribirError(error));
+        } else {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            mapper.writeValue(response.getOutputStream(), error);
+        }
+    }
+
+    // Tras un timeout o un error el contenedor completa la petición y llega onComplete
+    private record Liberacion(ControlAdmision.Permiso permiso, HttpServletResponse response) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permiso.liberar(response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    /**
+     * Petición con el cuerpo ya leído, que se entrega de nuevo al controlador.
+     */
+    private static final class CuerpoLeido extends HttpServletRequestWrapper {
+
+        private final byte[] cuerpo;
+
+        CuerpoLeido(HttpServletRequest request, byte[] cuerpo) {
+            super(request);
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream entrada = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return entrada.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("Cuerpo ya leído por el control de admisión");
+                }
+
+                @Override
+                public int read() {
+                    return entrada.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return entrada.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String codificacion = getCharacterEncoding();
+            Charset charset = codificacion == null ? StandardCharsets.UTF_8 : Charset.forName(codificacion);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.switchbank.mscontabilidad.config;
+
+import com.switchbank.mscontabilidad.dto.CuentaDTO;
+import com.switchbank.mscontabilidad.dto.DisponibilidadDTO;
+import com.switchbank.mscontabilidad.dto.FormatoBinario;
+import com.switchbank.mscontabilidad.dto.RegistroMovimientoRequest;
+import com.switchbank.mscontabilidad.dto.ResultadoLoteDTO;
+import com.switchbank.mscontabilidad.excepcion.ErrorDTO;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lee y escribe {@link FormatoBinario} cuando el cliente lo pide por Content-Type o Accept.
+ * Se registra detrás de Jackson, así un {@code Accept: *}{@code /*} sigue recibiendo JSON.
+ */
+public class ConversorBinario extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType BINARIO = MediaType.parseMediaType(FormatoBinario.TIPO_CONTENIDO);
+
+    private static final Set<Class<?>> ESCRIBIBLES = Set.of(CuentaDTO.class, DisponibilidadDTO.class,
+            ResultadoLoteDTO.class, ErrorDTO.class);
+
+    public ConversorBinario() {
+        super(BINARIO);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ESCRIBIBLES.contains(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return clazz == RegistroMovimientoRequest.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (type == RegistroMovimientoRequest.class || esLote(type)) && canRead(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        ByteBuffer entrada = ByteBuffer.wrap(inputMessage.getBody().readAllBytes());
+        try {
+            return esLote(type) ? FormatoBinario.leerLote(entrada) : FormatoBinario.leerMovimiento(entrada);
+        } catch (RuntimeException e) {
+            throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object objeto, Type type, HttpOutputMessage outputMessage) throws IOException {
+        byte[] cuerpo;
+        try {
+            cuerpo = switch (objeto) {
+                case CuentaDTO cuenta -> FormatoBinario.escribirCuenta(cuenta);
+                case DisponibilidadDTO disponibilidad -> FormatoBinario.escribirDisponibilidad(disponibilidad);
+                case ResultadoLoteDTO lote -> FormatoBinario.escribirResultadoLote(lote);
+                case ErrorDTO error -> FormatoBinario.escribirError(error);
+                default -> throw new IllegalArgumentException("Sin formato binario para " + objeto.getClass().getSimpleName());
+            };
+        } catch (RuntimeException e) {
+            throw new HttpMessageNotWritableException(e.getMessage(), e);
+        }
+        outputMessage.getHeaders().setContentLength(cuerpo.length);
+        outputMessage.getBody().write(cuerpo);
+    }
+
+    private static boolean esLote(Type type) {
+        ResolvableType tipo = ResolvableType.forType(type);
+        return List.class.equals(tipo.resolve()) && tipo.getGeneric(0).resolve() == RegistroMovimientoRequest.class;
+    }
+}
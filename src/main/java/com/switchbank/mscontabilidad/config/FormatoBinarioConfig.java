@@ -0,0 +1,17 @@
+package com.switchbank.mscontabilidad.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class FormatoBinarioConfig implements WebMvcConfigurer {
+
+    // Al final de la lista: solo se elige si el cliente pide el tipo binario explícitamente
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new ConversorBinario());
+    }
+}
@@ -0,0 +1,80 @@
+package com.switchbank.mscontabilidad.config;
+
+import com.switchbank.mscontabilidad.servicio.ReplicaLectura;
+import com.switchbank.mscontabilidad.servicio.SondaReplica;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Primaria y réplica de lectura. El DataSource de la aplicación enruta cada conexión según
+ * {@link ReplicaLectura}; va envuelto en un proxy perezoso porque el gestor de transacciones
+ * pide la conexión antes de marcar la transacción como de solo lectura, y la decisión debe
+ * tomarse en la primera sentencia.
+ */
+@Configuration
+@ConditionalOnProperty(name = "contabilidad.replica.habilitada", havingValue = "true")
+public class FuentesDatosConfig {
+
+    private static final String PRIMARIA = "primaria";
+    private static final String REPLICA = "replica";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource fuentePrimaria(DataSourceProperties propiedades) {
+        HikariDataSource primaria = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primaria.setPoolName("primaria");
+        return primaria;
+    }
+
+    @Bean
+    public HikariDataSource fuenteReplica(DataSourceProperties propiedades,
+            @Value("${contabilidad.replica.url:}") String url,
+            @Value("${contabilidad.replica.username:}") String usuario,
+            @Value("${contabilidad.replica.password:}") String clave,
+            @Value("${contabilidad.replica.pool:10}") int pool) {
+        if (url.isBlank()) {
+            throw new IllegalStateException("contabilidad.replica.url es obligatoria con la réplica habilitada");
+        }
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setJdbcUrl(url);
+        replica.setUsername(usuario.isBlank() ? propiedades.determineUsername() : usuario);
+        replica.setPassword(clave.isBlank() ? propiedades.determinePassword() : clave);
+        replica.setMaximumPoolSize(Math.max(1, pool));
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource fuentePrimaria, HikariDataSource fuenteReplica,
+            ReplicaLectura replicaLectura) {
+        AbstractRoutingDataSource enrutada = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return replicaLectura.usarReplica() ? REPLICA : PRIMARIA;
+            }
+        };
+        enrutada.setTargetDataSources(Map.of(PRIMARIA, fuentePrimaria, REPLICA, fuenteReplica));
+        enrutada.setDefaultTargetDataSource(fuentePrimaria);
+        enrutada.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(enrutada);
+    }
+
+    @Bean
+    public SondaReplica sondaReplica(HikariDataSource fuentePrimaria, HikariDataSource fuenteReplica,
+            ReplicaLectura replicaLectura) {
+        return new SondaReplica(fuentePrimaria, fuenteReplica, replicaLectura);
+    }
+}
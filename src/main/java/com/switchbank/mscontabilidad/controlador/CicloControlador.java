@@ -0,0 +1,39 @@
+package com.switchbank.mscontabilidad.controlador;
+
+import com.switchbank.mscontabilidad.dto.CierreCicloDTO;
+import com.switchbank.mscontabilidad.servicio.BulkheadBd;
+import com.switchbank.mscontabilidad.servicio.NeteoCiclos;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/ledger/ciclos")
+@RequiredArgsConstructor
+@Tag(name = "Ciclos", description = "Neteo multilateral por ciclo de clearing calculado por el ledger")
+public class CicloControlador {
+
+    private final NeteoCiclos neteo;
+    private final BulkheadBd bulkhead;
+
+    @GetMapping("/abierto")
+    @Operation(summary = "Posiciones del Ciclo Abierto", description = "Débitos, créditos y posición neta por BIC acumulados desde el último cierre.")
+    public ResponseEntity<CierreCicloDTO> cicloAbierto() {
+        return ResponseEntity.ok(neteo.cicloAbierto());
+    }
+
+    @PostMapping("/{cicloId}/cierre")
+    @Operation(summary = "Cerrar Ciclo", description = "Corta el ciclo abierto y devuelve sus posiciones netas. Con aplicar=true además las asienta como /compensar. Idempotente por cicloId.")
+    public ResponseEntity<CierreCicloDTO> cerrar(@PathVariable Integer cicloId,
+            @RequestParam(defaultValue = "false") boolean aplicar) {
+        return ResponseEntity.ok(neteo.cerrar(cicloId, aplicar));
+    }
+
+    @GetMapping("/{cicloId}")
+    @Operation(summary = "Consultar Ciclo Cerrado", description = "Posiciones registradas al cerrar el ciclo.")
+    public ResponseEntity<CierreCicloDTO> consultar(@PathVariable Integer cicloId) {
+        return ResponseEntity.ok(bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> neteo.consultar(cicloId)));
+    }
+}
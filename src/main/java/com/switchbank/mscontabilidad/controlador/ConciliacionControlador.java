@@ -0,0 +1,30 @@
+package com.switchbank.mscontabilidad.controlador;
+
+import com.switchbank.mscontabilidad.dto.ReporteConciliacionDTO;
+import com.switchbank.mscontabilidad.servicio.ConciliacionServicio;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/ledger/conciliacion")
+@RequiredArgsConstructor
+@Tag(name = "Conciliación", description = "Verificación incremental de saldos contra movimientos")
+public class ConciliacionControlador {
+
+    private final ConciliacionServicio servicio;
+
+    @PostMapping
+    @Operation(summary = "Ejecutar Conciliación", description = "Concilia en paralelo los movimientos nuevos de cada cuenta desde su último punto de control.")
+    public ResponseEntity<ReporteConciliacionDTO> conciliar() {
+        return ResponseEntity.ok(servicio.conciliar());
+    }
+
+    @GetMapping("/ultimo")
+    @Operation(summary = "Último Reporte de Conciliación", description = "Resultado de la última corrida (manual o programada).")
+    public ResponseEntity<ReporteConciliacionDTO> obtenerUltimoReporte() {
+        return ResponseEntity.ok(servicio.obtenerUltimoReporte());
+    }
+}
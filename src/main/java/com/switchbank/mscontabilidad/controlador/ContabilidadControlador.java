@@ -1,18 +1,38 @@
 package com.switchbank.mscontabilidad.controlador;
 
+import com.switchbank.mscontabilidad.dto.ContencionCuentaDTO;
 import com.switchbank.mscontabilidad.dto.CrearCuentaRequest;
 import com.switchbank.mscontabilidad.dto.CuentaDTO;
 import com.switchbank.mscontabilidad.dto.MovimientoDTO;
+import com.switchbank.mscontabilidad.dto.PaginaMovimientosDTO;
 import com.switchbank.mscontabilidad.dto.RegistroMovimientoRequest;
+import com.switchbank.mscontabilidad.dto.ResultadoCompensacionDTO;
+import com.switchbank.mscontabilidad.dto.ResultadoLoteDTO;
 import com.switchbank.mscontabilidad.dto.ReturnRequestDTO;
+import com.switchbank.mscontabilidad.dto.SaldoHistoricoDTO;
+import com.switchbank.mscontabilidad.servicio.BulkheadBd;
+import com.switchbank.mscontabilidad.servicio.CompensacionServicio;
 import com.switchbank.mscontabilidad.servicio.ContabilidadServicio;
+import com.switchbank.mscontabilidad.servicio.PoliticaReintentos;
+import com.switchbank.mscontabilidad.servicio.SaldoHistoricoServicio;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -23,6 +43,11 @@ import java.util.List;
 public class ContabilidadControlador {
 
     private final ContabilidadServicio servicio;
+    private final CompensacionServicio compensacion;
+    private final SaldoHistoricoServicio saldoHistorico;
+    private final PoliticaReintentos reintentos;
+    private final BulkheadBd bulkhead;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/cuentas")
     @Operation(summary = "Crear Cuenta Técnica", description = "Inicializa una cuenta técnica para un Banco.")
@@ -36,24 +61,43 @@ public class ContabilidadControlador {
         return ResponseEntity.ok(servicio.obtenerCuenta(bic));
     }
 
+    @GetMapping("/cuentas/{bic}/balance")
+    @Operation(summary = "Saldo en un Instante", description = "Posición de la cuenta (disponible + bloqueado) en la fecha indicada, reconstruida desde la instantánea de saldo más cercana.")
+    public ResponseEntity<SaldoHistoricoDTO> obtenerSaldoEn(@PathVariable String bic,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.ok(bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> saldoHistorico.saldoEn(bic, at)));
+    }
+
+    @GetMapping("/contencion")
+    @Operation(summary = "Contención por Cuenta", description = "Conflictos, reintentos y abortos de escritura por BIC, de mayor a menor conflicto.")
+    public ResponseEntity<List<ContencionCuentaDTO>> obtenerContencion() {
+        return ResponseEntity.ok(reintentos.estadisticas());
+    }
+
     @PostMapping("/movimientos")
     @Operation(summary = "Registrar Movimiento", description = "Debita o Acredita fondos en la cuenta técnica.")
     public ResponseEntity<CuentaDTO> registrarMovimiento(@RequestBody RegistroMovimientoRequest req) {
         return ResponseEntity.ok(servicio.registrarMovimiento(req));
     }
 
+    @PostMapping("/movimientos/batch")
+    @Operation(summary = "Registrar Lote de Movimientos", description = "Aplica miles de movimientos en una sola llamada con resultado por ítem.")
+    public ResponseEntity<ResultadoLoteDTO> registrarMovimientosLote(@RequestBody List<RegistroMovimientoRequest> lote) {
+        return ResponseEntity.ok(servicio.registrarMovimientosLote(lote));
+    }
+
     @PostMapping("/reservar")
-    @Operation(summary = "Reservar Fondos (Pre-Autorización)", description = "Bloquea fondos preventivamente.")
-    public ResponseEntity<CuentaDTO> reservarFondos(@RequestBody RegistroMovimientoRequest req) {
-        return ResponseEntity.ok(servicio.reservarFondos(req));
+    @Operation(summary = "Reservar Fondos (Pre-Autorización)", description = "Bloquea fondos preventivamente y crea una retención que expira tras ttlSegundos.")
+    public ResponseEntity<CuentaDTO> reservarFondos(@RequestBody RegistroMovimientoRequest req,
+            @RequestParam(required = false) Long ttlSegundos) {
+        return ResponseEntity.ok(servicio.reservarFondos(req, ttlSegundos));
     }
 
     @PostMapping("/compensar")
     @Operation(summary = "Aplicar Compensación Masiva", description = "Cierra el ciclo y asienta saldos netos.")
-    public ResponseEntity<Void> aplicarCompensacion(
+    public ResponseEntity<ResultadoCompensacionDTO> aplicarCompensacion(
             @RequestBody com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO req) {
-        servicio.aplicarCompensacion(req);
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(compensacion.aplicarCompensacion(req));
     }
 
     @PostMapping("/v2/switch/transfers/return")
@@ -62,11 +106,66 @@ public class ContabilidadControlador {
         return ResponseEntity.ok(servicio.revertirTransaccion(req));
     }
 
+    @PostMapping("/v2/switch/transfers/return/batch")
+    @Operation(summary = "Reversar Transacciones en Lote", description = "Aplica miles de devoluciones pacs.004 en una sola llamada, en paralelo por cuenta, con resultado por ítem.")
+    public ResponseEntity<ResultadoLoteDTO> revertirTransaccionesLote(@RequestBody List<ReturnRequestDTO> lote) {
+        return ResponseEntity.ok(servicio.revertirTransaccionesLote(lote));
+    }
+
     @GetMapping("/range")
     @Operation(summary = "Movimientos por Rango", description = "Auditoría de movimientos por fecha.")
     public ResponseEntity<List<MovimientoDTO>> obtenerMovimientosPorRango(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
-        return ResponseEntity.ok(servicio.obtenerMovimientosPorRango(start, end));
+        return ResponseEntity.ok(bulkhead.ejecutar(BulkheadBd.GLOBAL,
+                () -> servicio.obtenerMovimientosPorRango(start, end)));
+    }
+
+    @GetMapping(value = "/range/stream", produces = { "application/x-ndjson", MediaType.APPLICATION_JSON_VALUE })
+    @Operation(summary = "Movimientos por Rango (Streaming)", description = "Transmite el rango desde un cursor del servidor en NDJSON (por defecto) o como arreglo JSON fragmentado.")
+    public ResponseEntity<StreamingResponseBody> transmitirMovimientosPorRango(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "ndjson") String formato) {
+        boolean ndjson = !"json".equalsIgnoreCase(formato);
+        // Sin AUTO_CLOSE_TARGET: cerrar la secuencia no debe cerrar la salida antes del terminador
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        StreamingResponseBody cuerpo = salida -> {
+            OutputStream buffer = new BufferedOutputStream(salida, 64 * 1024);
+            try (SequenceWriter secuencia = ndjson
+                    ? writer.withRootValueSeparator("\n").writeValues(buffer)
+                    : writer.writeValuesAsArray(buffer)) {
+                bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> servicio.transmitirMovimientosPorRango(start, end, mov -> {
+                    try {
+                        secuencia.write(mov);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            if (ndjson) {
+                buffer.write('\n');
+            }
+            buffer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.parseMediaType("application/x-ndjson") : MediaType.APPLICATION_JSON)
+                .body(cuerpo);
+    }
+
+    @GetMapping("/range/page")
+    @Operation(summary = "Movimientos por Rango (Paginado)", description = "Paginación por keyset sobre (fechaRegistro, idMovimiento). Enviar el cursor devuelto para la página siguiente.")
+    public ResponseEntity<PaginaMovimientosDTO> obtenerPaginaMovimientos(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime despuesFecha,
+            @RequestParam(required = false) Long despuesId,
+            @RequestParam(defaultValue = "1000") int limite) {
+        return ResponseEntity.ok(bulkhead.ejecutar(BulkheadBd.GLOBAL,
+                () -> servicio.obtenerPaginaMovimientos(start, end, despuesFecha, despuesId, limite)));
     }
 }
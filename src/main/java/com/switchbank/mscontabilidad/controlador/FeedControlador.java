@@ -0,0 +1,62 @@
+package com.switchbank.mscontabilidad.controlador;
+
+import com.switchbank.mscontabilidad.dto.PaginaFeedDTO;
+import com.switchbank.mscontabilidad.servicio.FeedMovimientos;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+@RestController
+@RequestMapping("/api/v1/ledger/feed")
+@RequiredArgsConstructor
+@Tag(name = "Feed", description = "Movimientos confirmados en orden de publicación, desde un offset")
+public class FeedControlador {
+
+    private final FeedMovimientos feed;
+
+    @GetMapping
+    @Operation(summary = "Leer Feed (Long-poll)", description = "Eventos con secuencia mayor a 'despues'. Si no hay, espera hasta 'esperaMs' a que se publiquen. Enviar 'siguienteOffset' en la lectura siguiente.")
+    public ResponseEntity<PaginaFeedDTO> leer(@RequestParam(defaultValue = "0") long despues,
+            @RequestParam(defaultValue = "500") int limite,
+            @RequestParam(defaultValue = "20000") long esperaMs) {
+        return ResponseEntity.ok(feed.leer(despues, limite, esperaMs));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Suscribirse al Feed (SSE)", description = "Un evento 'movimientos' por lote, con id = última secuencia del lote. Al reconectar se retoma desde Last-Event-ID.")
+    public SseEmitter suscribir(@RequestParam(defaultValue = "0") long despues,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long ultimoEvento,
+            @RequestParam(defaultValue = "500") int limite) {
+        SseEmitter emisor = new SseEmitter(feed.getDuracionSuscripcionMs() + 60_000L);
+        Runnable envio = feed.suscribir(ultimoEvento != null ? ultimoEvento : despues, limite, pagina -> {
+            try {
+                if (pagina.getEventos().isEmpty()) {
+                    emisor.send(SseEmitter.event().comment("latido"));
+                } else {
+                    emisor.send(SseEmitter.event()
+                            .id(String.valueOf(pagina.getSiguienteOffset()))
+                            .name("movimientos")
+                            .data(pagina.getEventos(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Thread.ofVirtual().name("feed-sse").start(() -> {
+            try {
+                envio.run();
+                emisor.complete();
+            } catch (RuntimeException e) {
+                emisor.completeWithError(e);
+            }
+        });
+        return emisor;
+    }
+}
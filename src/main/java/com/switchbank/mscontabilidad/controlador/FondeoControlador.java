@@ -1,6 +1,7 @@
 package com.switchbank.mscontabilidad.controlador;
 
 import com.switchbank.mscontabilidad.dto.CuentaDTO;
+import com.switchbank.mscontabilidad.dto.DisponibilidadDTO;
 import com.switchbank.mscontabilidad.dto.RecargaRequest;
 import com.switchbank.mscontabilidad.servicio.ContabilidadServicio;
 import io.swagger.v3.oas.annotations.Operation;
@@ -10,7 +11,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/funding")
@@ -28,12 +28,13 @@ public class FondeoControlador {
 
     @GetMapping("/available/{bic}/{monto}")
     @Operation(summary = "Verificar Disponibilidad", description = "Check booleano de fondos suficientes.")
-    public ResponseEntity<Map<String, Object>> verificarSaldo(@PathVariable String bic,
+    public ResponseEntity<DisponibilidadDTO> verificarSaldo(@PathVariable String bic,
             @PathVariable BigDecimal monto) {
         boolean disponible = service.verificarSaldo(bic, monto);
-        return ResponseEntity.ok(Map.of(
-                "bic", bic,
-                "disponible", disponible,
-                "montoRequerido", monto));
+        return ResponseEntity.ok(DisponibilidadDTO.builder()
+                .bic(bic)
+                .disponible(disponible)
+                .montoRequerido(monto)
+                .build());
     }
 }
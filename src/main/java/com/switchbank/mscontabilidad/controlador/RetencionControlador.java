@@ -0,0 +1,40 @@
+package com.switchbank.mscontabilidad.controlador;
+
+import com.switchbank.mscontabilidad.dto.CapturaRequest;
+import com.switchbank.mscontabilidad.dto.RetencionDTO;
+import com.switchbank.mscontabilidad.servicio.RetencionServicio;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/ledger/retenciones")
+@RequiredArgsConstructor
+@Tag(name = "Retenciones", description = "Captura, liberación y consulta de fondos reservados")
+public class RetencionControlador {
+
+    private final RetencionServicio servicio;
+
+    @GetMapping("/{idInstruccion}")
+    @Operation(summary = "Consultar Retención", description = "Estado y montos de la retención creada por una reserva.")
+    public ResponseEntity<RetencionDTO> consultar(@PathVariable UUID idInstruccion) {
+        return ResponseEntity.ok(servicio.consultar(idInstruccion));
+    }
+
+    @PostMapping("/{idInstruccion}/capturar")
+    @Operation(summary = "Capturar Retención", description = "Captura total (sin monto) o parcial; lo capturado queda bloqueado hasta la compensación.")
+    public ResponseEntity<RetencionDTO> capturar(@PathVariable UUID idInstruccion,
+            @RequestBody(required = false) CapturaRequest req) {
+        return ResponseEntity.ok(servicio.capturar(idInstruccion, req != null ? req.getMonto() : null));
+    }
+
+    @PostMapping("/{idInstruccion}/liberar")
+    @Operation(summary = "Liberar Retención", description = "Devuelve al disponible la parte pendiente de la retención.")
+    public ResponseEntity<RetencionDTO> liberar(@PathVariable UUID idInstruccion) {
+        return ResponseEntity.ok(servicio.liberar(idInstruccion));
+    }
+}
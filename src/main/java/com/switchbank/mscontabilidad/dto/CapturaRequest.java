@@ -0,0 +1,9 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+
+@Data
+public class CapturaRequest {
+    private BigDecimal monto; // null = capturar todo lo pendiente
+}
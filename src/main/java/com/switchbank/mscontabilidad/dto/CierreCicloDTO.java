@@ -0,0 +1,23 @@
+package com.switchbank.mscontabilidad.dto;
+
+import com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO.PosicionBancariaDTO;
+import lombok.Builder;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class CierreCicloDTO {
+    private Integer cicloId;
+    private String estado; // ABIERTO, CERRADO, YA_CERRADO
+    // Eventos del feed incluidos: secuencia en (secuenciaDesde, secuenciaHasta]
+    private long secuenciaDesde;
+    private long secuenciaHasta;
+    private LocalDateTime fechaCierre;
+    private List<PosicionBancariaDTO> posiciones;
+    private BigDecimal neto;
+    // Solo si se pidió asentar el ciclo al cerrarlo
+    private ResultadoCompensacionDTO compensacion;
+}
@@ -0,0 +1,16 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ContencionCuentaDTO {
+    private String codigoBic;
+    private long operaciones;
+    private long conflictos;  // Intentos que perdieron la carrera (versión vencida o bloqueo)
+    private long reintentos;
+    private long abortos;     // Operaciones que agotaron los reintentos
+    private double tasaConflictos;
+    private double tasaAbortos;
+}
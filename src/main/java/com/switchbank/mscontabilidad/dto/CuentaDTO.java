@@ -2,11 +2,13 @@ package com.switchbank.mscontabilidad.dto;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 import java.math.BigDecimal;
 import java.util.UUID;
 
 @Data
 @Builder
+@Jacksonized
 public class CuentaDTO {
     private UUID id;
     private String codigoBic;
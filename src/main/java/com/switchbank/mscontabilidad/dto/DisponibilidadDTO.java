@@ -0,0 +1,13 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class DisponibilidadDTO {
+    private String bic;
+    private boolean disponible;
+    private BigDecimal montoRequerido;
+}
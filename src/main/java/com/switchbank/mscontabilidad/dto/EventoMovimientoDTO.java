@@ -0,0 +1,34 @@
+package com.switchbank.mscontabilidad.dto;
+
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class EventoMovimientoDTO {
+    // Offset del consumidor: creciente y sin reutilizar
+    private Long secuencia;
+    private Long idMovimiento;
+    private UUID idInstruccion;
+    private String codigoBic;
+    private String tipo;
+    private BigDecimal monto;
+    private BigDecimal saldoResultante;
+    private LocalDateTime fechaRegistro;
+    private UUID referenciaId;
+    private Integer cicloId;
+
+    // Usado por la proyección JPQL (SELECT new ...)
+    public EventoMovimientoDTO(Long secuencia, Long idMovimiento, UUID idInstruccion, String codigoBic,
+            TipoMovimiento tipo, BigDecimal monto, BigDecimal saldoResultante, LocalDateTime fechaRegistro,
+            UUID referenciaId, Integer cicloId) {
+        this(secuencia, idMovimiento, idInstruccion, codigoBic, tipo.name(), monto, saldoResultante, fechaRegistro,
+                referenciaId, cicloId);
+    }
+}
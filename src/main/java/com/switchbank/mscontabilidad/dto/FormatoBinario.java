@@ -0,0 +1,305 @@
+package com.switchbank.mscontabilidad.dto;
+
+import com.switchbank.mscontabilidad.excepcion.ErrorDTO;
+import com.switchbank.mscontabilidad.modelo.Centavos;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Formato binario de diseño fijo para el tráfico del switch ({@link #TIPO_CONTENIDO}),
+ * alternativo al JSON en movimientos, lotes, reservas y disponibilidad.
+ *
+ * Big-endian. Los UUID viajan como dos long (más y menos significativo), los montos como
+ * long en centavos y los BIC como un byte de longitud seguido de ASCII; los textos libres
+ * (firma, mensajes) como un short sin signo de longitud y UTF-8. No hay nombres de campo:
+ * el orden es el contrato.
+ *
+ * <pre>
+ * Movimiento (request):  tipo u8 | flags u8 | uuid 16 | monto i64 | bic
+ *                        tipo: 0 sin tipo, 1 DEBIT, 2 CREDIT; flags bit0: trae idInstruccion
+ * Lote (request):        cantidad i32 | movimiento*
+ * CuentaDTO:             id 16 | saldo i64 | bic | firma
+ * Disponibilidad:        disponible u8 | monto i64 | bic
+ * ResultadoLoteDTO:      total i32 | aplicados i32 | rechazados i32 | duracionMs i64 |
+ *                        movimientosPorSegundo i64 | cantidad i32 | resultado*
+ * Resultado:             indice i32 | flags u8 | uuid 16 | aplicado u8 | saldo i64 | bic | mensaje
+ *                        flags bit0: trae idInstruccion, bit1: trae saldo
+ * ErrorDTO:              codigo | mensaje
+ * </pre>
+ */
+public final class FormatoBinario {
+
+    public static final String TIPO_CONTENIDO = "application/vnd.switchbank.contabilidad+binary";
+
+    private static final byte SIN_TIPO = 0;
+    private static final byte DEBITO = 1;
+    private static final byte CREDITO = 2;
+    private static final int CON_INSTRUCCION = 1;
+    private static final int CON_SALDO = 2;
+    private static final String APLICADO = "APLICADO";
+    private static final String RECHAZADO = "RECHAZADO";
+
+    // tipo + flags + uuid + monto + longitud del BIC
+    private static final int MIN_MOVIMIENTO = 1 + 1 + 16 + 8 + 1;
+
+    private FormatoBinario() {
+    }
+
+    // ---- lectura ----
+
+    public static RegistroMovimientoRequest leerMovimiento(ByteBuffer entrada) {
+        try {
+            RegistroMovimientoRequest req = movimiento(entrada);
+            finDeMensaje(entrada);
+            return req;
+        } catch (BufferUnderflowException e) {
+            throw truncado();
+        }
+    }
+
+    public static List<RegistroMovimientoRequest> leerLote(ByteBuffer entrada) {
+        try {
+            int cantidad = entrada.getInt();
+            if (cantidad < 0 || (long) cantidad * MIN_MOVIMIENTO > entrada.remaining()) {
+                throw new IllegalArgumentException("Lote binario inválido: " + cantidad + " movimientos declarados");
+            }
+            List<RegistroMovimientoRequest> lote = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                lote.add(movimiento(entrada));
+            }
+            finDeMensaje(entrada);
+            return lote;
+        } catch (BufferUnderflowException e) {
+            throw truncado();
+        }
+    }
+
+    private static RegistroMovimientoRequest movimiento(ByteBuffer entrada) {
+        byte tipo = entrada.get();
+        byte flags = entrada.get();
+        long mas = entrada.getLong();
+        long menos = entrada.getLong();
+        long monto = entrada.getLong();
+        String bic = bic(entrada);
+
+        RegistroMovimientoRequest req = new RegistroMovimientoRequest();
+        req.setTipo(switch (tipo) {
+            case SIN_TIPO -> null;
+            case DEBITO -> "DEBIT";
+            case CREDITO -> "CREDIT";
+            default -> throw new IllegalArgumentException("Tipo de movimiento binario desconocido: " + tipo);
+        });
+        req.setIdInstruccion((flags & CON_INSTRUCCION) != 0 ? new UUID(mas, menos) : null);
+        req.setMonto(Centavos.aBigDecimal(monto));
+        req.setCodigoBic(bic);
+        return req;
+    }
+
+    private static String bic(ByteBuffer entrada) {
+        int largo = Byte.toUnsignedInt(entrada.get());
+        byte[] ascii = new byte[largo];
+        entrada.get(ascii);
+        return new String(ascii, StandardCharsets.US_ASCII);
+    }
+
+    private static void finDeMensaje(ByteBuffer entrada) {
+        if (entrada.hasRemaining()) {
+            throw new IllegalArgumentException("Mensaje binario con " + entrada.remaining() + " bytes sobrantes");
+        }
+    }
+
+    private static IllegalArgumentException truncado() {
+        return new IllegalArgumentException("Mensaje binario truncado");
+    }
+
+    // ---- escritura ----
+
+    public static byte[] escribirMovimiento(RegistroMovimientoRequest req) {
+        ByteBuffer salida = ByteBuffer.allocate(MIN_MOVIMIENTO + req.getCodigoBic().length());
+        movimiento(salida, req);
+        return salida.array();
+    }
+
+    public static byte[] escribirLote(List<RegistroMovimientoRequest> lote) {
+        int tamano = 4;
+        for (RegistroMovimientoRequest req : lote) {
+            tamano += MIN_MOVIMIENTO + req.getCodigoBic().length();
+        }
+        ByteBuffer salida = ByteBuffer.allocate(tamano);
+        salida.putInt(lote.size());
+        lote.forEach(req -> movimiento(salida, req));
+        return salida.array();
+    }
+
+    public static byte[] escribirCuenta(CuentaDTO cuenta) {
+        byte[] bic = ascii(cuenta.getCodigoBic());
+        byte[] firma = utf8(cuenta.getFirmaIntegridad());
+        ByteBuffer salida = ByteBuffer.allocate(16 + 8 + 1 + bic.length + 2 + firma.length);
+        uuid(salida, cuenta.getId());
+        salida.putLong(Centavos.de(cuenta.getSaldoDisponible()));
+        bic(salida, bic);
+        texto(salida, firma);
+        return salida.array();
+    }
+
+    public static byte[] escribirDisponibilidad(DisponibilidadDTO disponibilidad) {
+        byte[] bic = ascii(disponibilidad.getBic());
+        ByteBuffer salida = ByteBuffer.allocate(1 + 8 + 1 + bic.length);
+        salida.put((byte) (disponibilidad.isDisponible() ? 1 : 0));
+        salida.putLong(Centavos.de(disponibilidad.getMontoRequerido()));
+        bic(salida, bic);
+        return salida.array();
+    }
+
+    public static byte[] escribirResultadoLote(ResultadoLoteDTO lote) {
+        List<byte[]> bics = new ArrayList<>(lote.getResultados().size());
+        List<byte[]> mensajes = new ArrayList<>(lote.getResultados().size());
+        int tamano = 4 * 3 + 8 * 2 + 4;
+        for (ResultadoMovimientoDTO r : lote.getResultados()) {
+            byte[] bic = ascii(r.getCodigoBic());
+            byte[] mensaje = utf8(r.getMensaje());
+            bics.add(bic);
+            mensajes.add(mensaje);
+            tamano += 4 + 1 + 16 + 1 + 8 + 1 + bic.length + 2 + mensaje.length;
+        }
+        ByteBuffer salida = ByteBuffer.allocate(tamano);
+        salida.putInt(lote.getTotal());
+        salida.putInt(lote.getAplicados());
+        salida.putInt(lote.getRechazados());
+        salida.putLong(lote.getDuracionMs());
+        salida.putLong(lote.getMovimientosPorSegundo());
+        salida.putInt(lote.getResultados().size());
+        for (int i = 0; i < lote.getResultados().size(); i++) {
+            ResultadoMovimientoDTO r = lote.getResultados().get(i);
+            salida.putInt(r.getIndice());
+            salida.put((byte) ((r.getIdInstruccion() != null ? CON_INSTRUCCION : 0)
+                    | (r.getSaldoResultante() != null ? CON_SALDO : 0)));
+            uuid(salida, r.getIdInstruccion());
+            salida.put((byte) (APLICADO.equals(r.getEstado()) ? 1 : 0));
+            salida.putLong(r.getSaldoResultante() != null ? Centavos.de(r.getSaldoResultante()) : 0L);
+            bic(salida, bics.get(i));
+            texto(salida, mensajes.get(i));
+        }
+        return salida.array();
+    }
+
+    public static byte[] escribirError(ErrorDTO error) {
+        byte[] codigo = utf8(error.getCodigo());
+        byte[] mensaje = utf8(error.getMensaje());
+        ByteBuffer salida = ByteBuffer.allocate(2 + codigo.length + 2 + mensaje.length);
+        texto(salida, codigo);
+        texto(salida, mensaje);
+        return salida.array();
+    }
+
+    /**
+     * Para clientes y pruebas: decodifica una respuesta de {@link #escribirCuenta}.
+     */
+    public static CuentaDTO leerCuenta(ByteBuffer entrada) {
+        try {
+            UUID id = new UUID(entrada.getLong(), entrada.getLong());
+            BigDecimal saldo = Centavos.aBigDecimal(entrada.getLong());
+            String bic = bic(entrada);
+            String firma = texto(entrada);
+            finDeMensaje(entrada);
+            return CuentaDTO.builder().id(id).codigoBic(bic).saldoDisponible(saldo).firmaIntegridad(firma).build();
+        } catch (BufferUnderflowException e) {
+            throw truncado();
+        }
+    }
+
+    /**
+     * Para clientes y pruebas: decodifica una respuesta de {@link #escribirResultadoLote}.
+     */
+    public static ResultadoLoteDTO leerResultadoLote(ByteBuffer entrada) {
+        try {
+            ResultadoLoteDTO.ResultadoLoteDTOBuilder lote = ResultadoLoteDTO.builder()
+                    .total(entrada.getInt())
+                    .aplicados(entrada.getInt())
+                    .rechazados(entrada.getInt())
+                    .duracionMs(entrada.getLong())
+                    .movimientosPorSegundo(entrada.getLong());
+            int cantidad = entrada.getInt();
+            List<ResultadoMovimientoDTO> resultados = new ArrayList<>(Math.min(cantidad, entrada.remaining()));
+            for (int i = 0; i < cantidad; i++) {
+                int indice = entrada.getInt();
+                byte flags = entrada.get();
+                UUID id = new UUID(entrada.getLong(), entrada.getLong());
+                boolean aplicado = entrada.get() != 0;
+                long saldo = entrada.getLong();
+                resultados.add(ResultadoMovimientoDTO.builder()
+                        .indice(indice)
+                        .idInstruccion((flags & CON_INSTRUCCION) != 0 ? id : null)
+                        .estado(aplicado ? APLICADO : RECHAZADO)
+                        .saldoResultante((flags & CON_SALDO) != 0 ? Centavos.aBigDecimal(saldo) : null)
+                        .codigoBic(bic(entrada))
+                        .mensaje(texto(entrada))
+                        .build());
+            }
+            finDeMensaje(entrada);
+            return lote.resultados(resultados).build();
+        } catch (BufferUnderflowException e) {
+            throw truncado();
+        }
+    }
+
+    private static void movimiento(ByteBuffer salida, RegistroMovimientoRequest req) {
+        salida.put(req.getTipo() == null ? SIN_TIPO : switch (req.getTipo()) {
+            case "DEBIT" -> DEBITO;
+            case "CREDIT" -> CREDITO;
+            default -> throw new IllegalArgumentException("Tipo sin codificación binaria: " + req.getTipo());
+        });
+        salida.put((byte) (req.getIdInstruccion() != null ? CON_INSTRUCCION : 0));
+        uuid(salida, req.getIdInstruccion());
+        salida.putLong(Centavos.de(req.getMonto()));
+        bic(salida, ascii(req.getCodigoBic()));
+    }
+
+    private static void uuid(ByteBuffer salida, UUID id) {
+        salida.putLong(id != null ? id.getMostSignificantBits() : 0L);
+        salida.putLong(id != null ? id.getLeastSignificantBits() : 0L);
+    }
+
+    private static void bic(ByteBuffer salida, byte[] bic) {
+        if (bic.length > 255) {
+            throw new IllegalArgumentException("BIC demasiado largo para el formato binario");
+        }
+        salida.put((byte) bic.length);
+        salida.put(bic);
+    }
+
+    private static void texto(ByteBuffer salida, byte[] texto) {
+        salida.putShort((short) texto.length);
+        salida.put(texto);
+    }
+
+    private static String texto(ByteBuffer entrada) {
+        byte[] utf8 = new byte[Short.toUnsignedInt(entrada.getShort())];
+        entrada.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String valor) {
+        return valor == null ? new byte[0] : valor.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Los textos largos se recortan al máximo de un short sin signo
+    private static byte[] utf8(String valor) {
+        if (valor == null) {
+            return new byte[0];
+        }
+        byte[] utf8 = valor.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length <= 0xFFFF) {
+            return utf8;
+        }
+        byte[] recortado = new byte[0xFFFF];
+        System.arraycopy(utf8, 0, recortado, 0, recortado.length);
+        return recortado;
+    }
+}
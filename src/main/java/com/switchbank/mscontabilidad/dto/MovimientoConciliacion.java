@@ -0,0 +1,17 @@
+package com.switchbank.mscontabilidad.dto;
+
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Proyección mínima de un movimiento para la conciliación incremental.
+ */
+public record MovimientoConciliacion(
+        Long idMovimiento,
+        TipoMovimiento tipo,
+        BigDecimal monto,
+        BigDecimal saldoResultante,
+        UUID referenciaId) {
+}
@@ -1,5 +1,7 @@
 package com.switchbank.mscontabilidad.dto;
 
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import java.math.BigDecimal;
@@ -8,6 +10,7 @@ import java.util.UUID;
 
 @Data
 @Builder
+@AllArgsConstructor
 public class MovimientoDTO {
     private Long id;
     private UUID idInstruccion;
@@ -17,4 +20,10 @@ public class MovimientoDTO {
     private LocalDateTime fechaRegistro;
     private UUID referenciaId;
     private String codigoBicCuenta;
+
+    // Usado por las proyecciones JPQL (SELECT new ...) para no hidratar entidades
+    public MovimientoDTO(Long id, UUID idInstruccion, TipoMovimiento tipo, BigDecimal monto,
+            BigDecimal saldoResultante, LocalDateTime fechaRegistro, UUID referenciaId, String codigoBicCuenta) {
+        this(id, idInstruccion, tipo.name(), monto, saldoResultante, fechaRegistro, referenciaId, codigoBicCuenta);
+    }
 }
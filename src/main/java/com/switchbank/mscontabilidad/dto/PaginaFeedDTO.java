@@ -0,0 +1,16 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@Builder
+public class PaginaFeedDTO {
+    private List<EventoMovimientoDTO> eventos;
+    // Offset a enviar en la siguiente lectura (el de entrada si no hubo eventos)
+    private long siguienteOffset;
+    // Última secuencia publicada al momento de la lectura, para medir el atraso del consumidor
+    private long ultimaSecuencia;
+    private boolean hayMas;
+}
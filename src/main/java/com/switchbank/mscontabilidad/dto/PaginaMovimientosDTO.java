@@ -0,0 +1,16 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class PaginaMovimientosDTO {
+    private List<MovimientoDTO> movimientos;
+    private boolean hayMas;
+    // Cursor (fechaRegistro, idMovimiento) del último elemento, para pedir la página siguiente
+    private LocalDateTime siguienteFecha;
+    private Long siguienteId;
+}
@@ -0,0 +1,19 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class ReporteConciliacionDTO {
+    private LocalDateTime inicio;
+    private long duracionMs;
+    private int cuentas;
+    private int conciliadas;
+    private int conDiscrepancia;
+    private int conError;
+    private long movimientosRevisados;
+    private List<ResultadoConciliacionDTO> resultados;
+}
@@ -0,0 +1,17 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class ResultadoCompensacionDTO {
+    private Integer cicloId;
+    private String estado; // APLICADO, YA_APLICADO
+    private int posiciones;
+    private BigDecimal montoCompensado;
+    private LocalDateTime fechaAplicacion;
+    private long duracionMs;
+}
@@ -0,0 +1,20 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class ResultadoConciliacionDTO {
+    private String codigoBic;
+    private String estado; // APERTURA, CONCILIADA, DISCREPANCIA, ERROR
+    private int movimientosRevisados;
+    private BigDecimal saldoEsperado; // posición total (disponible + bloqueado) según movimientos
+    private BigDecimal saldoActual;
+    private Long idUltimoMovimiento;
+    private LocalDateTime fechaConciliacion;
+    private List<String> discrepancias;
+}
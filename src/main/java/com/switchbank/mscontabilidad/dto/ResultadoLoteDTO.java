@@ -0,0 +1,16 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@Builder
+public class ResultadoLoteDTO {
+    private int total;
+    private int aplicados;
+    private int rechazados;
+    private long duracionMs;
+    private long movimientosPorSegundo;
+    private List<ResultadoMovimientoDTO> resultados;
+}
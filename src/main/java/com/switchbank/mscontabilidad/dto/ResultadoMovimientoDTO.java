@@ -0,0 +1,17 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@Builder
+public class ResultadoMovimientoDTO {
+    private int indice;
+    private UUID idInstruccion;
+    private String codigoBic;
+    private String estado; // APLICADO o RECHAZADO
+    private String mensaje;
+    private BigDecimal saldoResultante;
+}
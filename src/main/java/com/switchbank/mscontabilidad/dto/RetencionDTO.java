@@ -0,0 +1,22 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+public class RetencionDTO {
+    private UUID idInstruccion;
+    private String codigoBic;
+    private BigDecimal monto;
+    private BigDecimal montoCapturado;
+    private BigDecimal montoLiberado;
+    private BigDecimal montoPendiente;
+    private String estado; // ACTIVA, CAPTURADA, LIBERADA, EXPIRADA, LIQUIDADA
+    private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaExpiracion;
+    private LocalDateTime fechaCierre;
+}
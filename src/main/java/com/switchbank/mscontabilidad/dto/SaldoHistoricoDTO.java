@@ -0,0 +1,16 @@
+package com.switchbank.mscontabilidad.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class SaldoHistoricoDTO {
+    private String codigoBic;
+    private LocalDateTime fecha;
+    private BigDecimal saldo; // posición total (disponible + bloqueado) en la fecha
+    private LocalDateTime fechaInstantanea; // instantánea desde la que se reconstruyó
+    private int movimientosAplicados;
+}
@@ -0,0 +1,7 @@
+package com.switchbank.mscontabilidad.excepcion;
+
+public class CapacidadAgotadaException extends RuntimeException {
+    public CapacidadAgotadaException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,7 @@
+package com.switchbank.mscontabilidad.excepcion;
+
+public class ConflictoConcurrenciaException extends RuntimeException {
+    public ConflictoConcurrenciaException(String mensaje) {
+        super(mensaje);
+    }
+}
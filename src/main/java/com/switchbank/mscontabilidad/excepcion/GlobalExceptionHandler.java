@@ -26,6 +26,19 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.NOT_FOUND, "CUENTA_NOT_FOUND", ex.getMessage(), request);
     }
 
+    @ExceptionHandler(CapacidadAgotadaException.class)
+    public ResponseEntity<ErrorDTO> handleCapacidadAgotada(CapacidadAgotadaException ex, HttpServletRequest request) {
+        log.warn("Capacidad Agotada: {}", ex.getMessage());
+        return buildResponse(HttpStatus.SERVICE_UNAVAILABLE, "CAPACIDAD_AGOTADA", ex.getMessage(), request);
+    }
+
+    @ExceptionHandler(ConflictoConcurrenciaException.class)
+    public ResponseEntity<ErrorDTO> handleConflictoConcurrencia(ConflictoConcurrenciaException ex,
+            HttpServletRequest request) {
+        log.warn("Conflicto de Concurrencia: {}", ex.getMessage());
+        return buildResponse(HttpStatus.CONFLICT, "CONFLICTO_CONCURRENCIA", ex.getMessage(), request);
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ErrorDTO> handleRuntimeException(RuntimeException ex, HttpServletRequest request) {
         log.error("Error de Ejecución: ", ex);
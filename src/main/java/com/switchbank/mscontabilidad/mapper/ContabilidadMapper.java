@@ -2,8 +2,11 @@ package com.switchbank.mscontabilidad.mapper;
 
 import com.switchbank.mscontabilidad.dto.CuentaDTO;
 import com.switchbank.mscontabilidad.dto.MovimientoDTO;
+import com.switchbank.mscontabilidad.dto.RetencionDTO;
+import com.switchbank.mscontabilidad.modelo.Centavos;
 import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
 import com.switchbank.mscontabilidad.modelo.Movimiento;
+import com.switchbank.mscontabilidad.modelo.Retencion;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -18,7 +21,7 @@ public class ContabilidadMapper {
         return CuentaDTO.builder()
                 .id(entidad.getIdCuenta())
                 .codigoBic(entidad.getBic())
-                .saldoDisponible(entidad.getSaldoDisponible())
+                .saldoDisponible(Centavos.aBigDecimal(entidad.getSaldoDisponible()))
                 .firmaIntegridad(entidad.getFirmaIntegridad())
                 .build();
     }
@@ -38,6 +41,23 @@ public class ContabilidadMapper {
                 .build();
     }
 
+    public RetencionDTO toDTO(Retencion entidad) {
+        if (entidad == null)
+            return null;
+        return RetencionDTO.builder()
+                .idInstruccion(entidad.getIdInstruccion())
+                .codigoBic(entidad.getBic())
+                .monto(entidad.getMonto())
+                .montoCapturado(entidad.getMontoCapturado())
+                .montoLiberado(entidad.getMontoLiberado())
+                .montoPendiente(entidad.getMontoPendiente())
+                .estado(entidad.getEstado().name())
+                .fechaCreacion(entidad.getFechaCreacion())
+                .fechaExpiracion(entidad.getFechaExpiracion())
+                .fechaCierre(entidad.getFechaCierre())
+                .build();
+    }
+
     public List<MovimientoDTO> toDTOList(List<Movimiento> entidades) {
         if (entidades == null)
             return List.of();
@@ -0,0 +1,59 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import java.math.BigDecimal;
+
+/**
+ * Montos en unidades mínimas (centavos) sobre {@code long}, para la aritmética interna de
+ * saldos sin crear un BigDecimal por operación.
+ *
+ * Las columnas son NUMERIC(18,2), así que todo valor persistible cabe en un long con holgura.
+ * Las operaciones fallan en vez de desbordar o de salirse de la columna, y la conversión
+ * desde BigDecimal es exacta: un monto con fracciones de centavo se rechaza en lugar de
+ * redondearse. BigDecimal queda solo en el borde (DTO, JPA, diario).
+ */
+public final class Centavos {
+
+    /** Mayor valor representable en NUMERIC(18,2): 9999999999999999.99 */
+    public static final long MAXIMO = 999_999_999_999_999_999L;
+
+    private static final int ESCALA = 2;
+
+    private Centavos() {
+    }
+
+    /**
+     * Conversión exacta de un monto recibido o leído de BD.
+     */
+    public static long de(BigDecimal monto) {
+        try {
+            return enRango(monto.movePointRight(ESCALA).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new RuntimeException("Monto inválido (más de 2 decimales o fuera de rango): " + monto.toPlainString());
+        }
+    }
+
+    public static BigDecimal aBigDecimal(long centavos) {
+        return BigDecimal.valueOf(centavos, ESCALA);
+    }
+
+    public static long sumar(long a, long b) {
+        return enRango(a + b);
+    }
+
+    public static long restar(long a, long b) {
+        return enRango(a - b);
+    }
+
+    public static String formatear(long centavos) {
+        return aBigDecimal(centavos).toPlainString();
+    }
+
+    // Con ambos operandos dentro de ±MAXIMO la suma o resta no puede desbordar el long,
+    // así que basta con validar el resultado contra la precisión de la columna.
+    private static long enRango(long centavos) {
+        if (centavos > MAXIMO || centavos < -MAXIMO) {
+            throw new RuntimeException("Monto fuera del rango de NUMERIC(18,2): " + centavos + " centavos");
+        }
+        return centavos;
+    }
+}
@@ -0,0 +1,24 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+/**
+ * Mapea un saldo en centavos a su columna NUMERIC(18,2).
+ */
+@Converter
+public class CentavosConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long centavos) {
+        return centavos == null ? null : Centavos.aBigDecimal(centavos);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal valor) {
+        // fondosBloqueados admite NULL en esquemas creados con el script original
+        return valor == null ? 0L : Centavos.de(valor);
+    }
+}
@@ -0,0 +1,34 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Ciclo de compensación ya asentado. Su existencia hace idempotente el cierre por cicloId.
+ */
+@Entity
+@Table(name = "CicloCompensacion")
+@Getter
+@Setter
+public class CicloCompensacion {
+
+    @Id
+    @Column(name = "cicloId")
+    private Integer cicloId;
+
+    @Column(name = "posiciones", nullable = false)
+    private int posiciones;
+
+    // Suma de totalDebitos liberados de los fondos bloqueados
+    @Column(name = "montoCompensado", nullable = false, precision = 18, scale = 2)
+    private BigDecimal montoCompensado;
+
+    @Column(name = "fechaAplicacion", nullable = false)
+    private LocalDateTime fechaAplicacion;
+
+    public CicloCompensacion() {
+    }
+}
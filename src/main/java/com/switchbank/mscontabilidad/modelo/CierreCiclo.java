@@ -0,0 +1,44 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Corte de un ciclo de clearing calculado por el ledger. El ciclo abarca los eventos del feed
+ * con secuencia en (secuenciaDesde, secuenciaHasta]; sus posiciones están en {@link PosicionCiclo}.
+ * Su existencia hace idempotente el cierre por cicloId.
+ */
+@Entity
+@Table(name = "CierreCiclo", indexes = {
+        @Index(name = "idx_cierre_secuencia", columnList = "secuenciaHasta")
+})
+@Getter
+@Setter
+public class CierreCiclo {
+
+    @Id
+    @Column(name = "cicloId")
+    private Integer cicloId;
+
+    @Column(name = "secuenciaDesde", nullable = false)
+    private long secuenciaDesde;
+
+    @Column(name = "secuenciaHasta", nullable = false)
+    private long secuenciaHasta;
+
+    @Column(name = "participantes", nullable = false)
+    private int participantes;
+
+    // Suma de posiciones netas; distinta de cero si alguna pata quedó sin contraparte en el ciclo
+    @Column(name = "neto", nullable = false, precision = 18, scale = 2)
+    private BigDecimal neto;
+
+    @Column(name = "fechaCierre", nullable = false)
+    private LocalDateTime fechaCierre;
+
+    public CierreCiclo() {
+    }
+}
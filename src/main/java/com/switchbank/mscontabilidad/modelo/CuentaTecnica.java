@@ -21,11 +21,14 @@ public class CuentaTecnica {
     @Column(name = "bic", nullable = false, unique = true, length = 20)
     private String bic;
 
+    // Saldos en centavos (ver Centavos); en BD siguen siendo NUMERIC(18,2)
+    @Convert(converter = CentavosConverter.class)
     @Column(name = "saldoDisponible", nullable = false, precision = 18, scale = 2)
-    private BigDecimal saldoDisponible;
+    private long saldoDisponible;
 
+    @Convert(converter = CentavosConverter.class)
     @Column(name = "fondosBloqueados", nullable = false, precision = 18, scale = 2)
-    private BigDecimal fondosBloqueados = BigDecimal.ZERO;
+    private long fondosBloqueados;
 
     @Column(name = "firmaIntegridad", nullable = false)
     private String firmaIntegridad;
@@ -34,14 +37,24 @@ public class CuentaTecnica {
     @Column(name = "ultimaConciliacion")
     private LocalDateTime ultimaConciliacion;
 
+    // Punto de control de la conciliación incremental: posición total (disponible + bloqueado)
+    // verificada y último movimiento incluido en ella.
+    @Column(name = "saldoConciliado", precision = 18, scale = 2)
+    private BigDecimal saldoConciliado;
+
+    @Column(name = "idUltimoMovimientoConciliado")
+    private Long idUltimoMovimientoConciliado;
+
+    // Control optimista: toda escritura de saldos incrementa la versión.
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     public CuentaTecnica() {
     }
 
     public CuentaTecnica(String bic) {
         this.bic = bic;
-
-        this.saldoDisponible = BigDecimal.ZERO.setScale(2, java.math.RoundingMode.HALF_UP);
-        this.fondosBloqueados = BigDecimal.ZERO.setScale(2, java.math.RoundingMode.HALF_UP);
         this.firmaIntegridad = "INITIAL_HASH";
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Outbox del feed de movimientos: una fila por {@link Movimiento}, escrita en su misma
+ * transacción. {@code secuencia} queda nula hasta que {@code FeedMovimientos} la publica; es
+ * el offset que usan los consumidores. Lleva copia de los datos del movimiento para que el
+ * feed no dependa del nivel (caliente o histórico) donde esté la fila original.
+ */
+@Entity
+@Table(name = "EventoMovimiento", indexes = {
+        @Index(name = "uk_evento_secuencia", columnList = "secuencia", unique = true),
+        @Index(name = "idx_evento_publicacion", columnList = "fechaPublicacion")
+})
+@Getter
+@Setter
+public class EventoMovimiento {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "evento_seq")
+    @SequenceGenerator(name = "evento_seq", sequenceName = "EventoMovimiento_SEQ", allocationSize = 50)
+    @Column(name = "idEvento")
+    private Long idEvento;
+
+    @Column(name = "secuencia")
+    private Long secuencia;
+
+    @Column(name = "fechaPublicacion")
+    private LocalDateTime fechaPublicacion;
+
+    @Column(name = "idMovimiento", nullable = false)
+    private Long idMovimiento;
+
+    @Column(name = "bic", nullable = false, length = 20)
+    private String bic;
+
+    @Column(name = "idInstruccion", nullable = false)
+    private UUID idInstruccion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", nullable = false, length = 10)
+    private TipoMovimiento tipo;
+
+    @Column(name = "monto", nullable = false, precision = 18, scale = 2)
+    private BigDecimal monto;
+
+    @Column(name = "saldoResultante", nullable = false, precision = 18, scale = 2)
+    private BigDecimal saldoResultante;
+
+    @Column(name = "fechaRegistro", nullable = false)
+    private LocalDateTime fechaRegistro;
+
+    @Column(name = "referenciaId")
+    private UUID referenciaId;
+
+    @Column(name = "cicloId")
+    private Integer cicloId;
+
+    public EventoMovimiento() {
+    }
+
+    public EventoMovimiento(Movimiento mov) {
+        this.idMovimiento = mov.getIdMovimiento();
+        this.bic = mov.getCuenta().getBic();
+        this.idInstruccion = mov.getIdInstruccion();
+        this.tipo = mov.getTipo();
+        this.monto = mov.getMonto();
+        this.saldoResultante = mov.getSaldoResultante();
+        this.fechaRegistro = mov.getFechaRegistro();
+        this.referenciaId = mov.getReferenciaId();
+        this.cicloId = mov.getCicloId();
+    }
+}
@@ -0,0 +1,59 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Saldo de una cuenta en un instante. El saldo histórico se reconstruye desde la instantánea
+ * más cercana aplicando solo los movimientos entre ambos momentos.
+ */
+@Entity
+@Table(name = "InstantaneaSaldo", indexes = {
+        @Index(name = "idx_instantanea_cuenta_fecha", columnList = "idCuenta, fechaCorte")
+})
+@Getter
+@Setter
+public class InstantaneaSaldo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "instantanea_seq")
+    @SequenceGenerator(name = "instantanea_seq", sequenceName = "InstantaneaSaldo_SEQ", allocationSize = 50)
+    @Column(name = "idInstantanea")
+    private Long idInstantanea;
+
+    @Column(name = "idCuenta", nullable = false)
+    private UUID idCuenta;
+
+    // Todo movimiento con fechaRegistro <= fechaCorte ya está reflejado en los saldos
+    @Column(name = "fechaCorte", nullable = false)
+    private LocalDateTime fechaCorte;
+
+    @Column(name = "saldoDisponible", nullable = false, precision = 18, scale = 2)
+    private BigDecimal saldoDisponible;
+
+    @Column(name = "fondosBloqueados", nullable = false, precision = 18, scale = 2)
+    private BigDecimal fondosBloqueados;
+
+    // Último movimiento de la cuenta al tomarla; si no cambió, la siguiente periódica se omite
+    @Column(name = "idUltimoMovimiento")
+    private Long idUltimoMovimiento;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "origen", nullable = false, length = 12)
+    private OrigenInstantanea origen;
+
+    // Solo en las tomadas al asentar una compensación
+    @Column(name = "cicloId")
+    private Integer cicloId;
+
+    public InstantaneaSaldo() {
+    }
+
+    public BigDecimal getPosicion() {
+        return saldoDisponible.add(fondosBloqueados);
+    }
+}
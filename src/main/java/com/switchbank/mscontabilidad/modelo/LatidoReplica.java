@@ -0,0 +1,24 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Fila única que la sonda de réplica reescribe en la primaria con la hora actual; la marca
+ * que se lee en la réplica indica hasta dónde aplicó la replicación.
+ */
+@Entity
+@Table(name = "LatidoReplica")
+@Getter
+@Setter
+public class LatidoReplica {
+
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    // Epoch en milisegundos según el reloj de la aplicación
+    @Column(name = "marcaMs", nullable = false)
+    private long marcaMs;
+}
@@ -8,13 +8,21 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "Movimiento")
+@Table(name = "Movimiento", indexes = {
+        @Index(name = "idx_movimiento_fecha_id", columnList = "fechaRegistro, idMovimiento"),
+        @Index(name = "idx_movimiento_cuenta_id", columnList = "idCuenta, idMovimiento"),
+        @Index(name = "idx_movimiento_cuenta_fecha", columnList = "idCuenta, fechaRegistro"),
+        @Index(name = "idx_movimiento_instruccion", columnList = "idInstruccion"),
+        @Index(name = "idx_movimiento_referencia", columnList = "referenciaId")
+})
 @Getter
 @Setter
 public class Movimiento {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Secuencia con asignación agrupada: IDENTITY deshabilita el batching de inserts en Hibernate.
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimiento_seq")
+    @SequenceGenerator(name = "movimiento_seq", sequenceName = "Movimiento_SEQ", allocationSize = 50)
     @Column(name = "idMovimiento")
     private Long idMovimiento;
 
@@ -42,6 +50,10 @@ public class Movimiento {
     @Column(name = "referenciaId")
     private UUID referenciaId;
 
+    // Ciclo de compensación que originó el movimiento (solo SETTLEMENT)
+    @Column(name = "cicloId")
+    private Integer cicloId;
+
     public Movimiento() {
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Nivel frío de {@link Movimiento}: filas fuera de la ventana de reverso, ya conciliadas,
+ * que {@code ArchivoMovimientos} traslada desde la tabla caliente. Solo se insertan en
+ * bloque y se leen; no tiene FK a la cuenta ni índices más allá de los de consulta.
+ */
+@Entity
+@Table(name = "MovimientoHistorico", indexes = {
+        @Index(name = "idx_movhist_fecha_id", columnList = "fechaRegistro, idMovimiento"),
+        @Index(name = "idx_movhist_instruccion", columnList = "idInstruccion"),
+        @Index(name = "idx_movhist_cuenta_fecha", columnList = "idCuenta, fechaRegistro")
+})
+@Getter
+@Setter
+public class MovimientoHistorico {
+
+    // Conserva el id de la tabla caliente
+    @Id
+    @Column(name = "idMovimiento")
+    private Long idMovimiento;
+
+    @Column(name = "idCuenta", nullable = false)
+    private UUID idCuenta;
+
+    @Column(name = "idInstruccion", nullable = false)
+    private UUID idInstruccion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", nullable = false, length = 10)
+    private TipoMovimiento tipo;
+
+    @Column(name = "monto", nullable = false, precision = 18, scale = 2)
+    private BigDecimal monto;
+
+    @Column(name = "saldoResultante", nullable = false, precision = 18, scale = 2)
+    private BigDecimal saldoResultante;
+
+    @Column(name = "fechaRegistro", nullable = false)
+    private LocalDateTime fechaRegistro;
+
+    @Column(name = "referenciaId")
+    private UUID referenciaId;
+
+    @Column(name = "cicloId")
+    private Integer cicloId;
+
+    public MovimientoHistorico() {
+    }
+}
@@ -0,0 +1,5 @@
+package com.switchbank.mscontabilidad.modelo;
+
+public enum OrigenInstantanea {
+    PERIODICA, COMPENSACION, CONSULTA
+}
@@ -0,0 +1,42 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.math.BigDecimal;
+
+/**
+ * Posición multilateral de un BIC en un ciclo cerrado ({@link CierreCiclo}).
+ */
+@Entity
+@Table(name = "PosicionCiclo", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_posicion_ciclo_bic", columnNames = { "cicloId", "bic" })
+})
+@Getter
+@Setter
+public class PosicionCiclo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "posicion_ciclo_seq")
+    @SequenceGenerator(name = "posicion_ciclo_seq", sequenceName = "PosicionCiclo_SEQ", allocationSize = 50)
+    @Column(name = "idPosicion")
+    private Long idPosicion;
+
+    @Column(name = "cicloId", nullable = false)
+    private Integer cicloId;
+
+    @Column(name = "bic", nullable = false, length = 20)
+    private String bic;
+
+    @Column(name = "totalDebitos", nullable = false, precision = 18, scale = 2)
+    private BigDecimal totalDebitos;
+
+    @Column(name = "totalCreditos", nullable = false, precision = 18, scale = 2)
+    private BigDecimal totalCreditos;
+
+    @Column(name = "posicionNeta", nullable = false, precision = 18, scale = 2)
+    private BigDecimal posicionNeta;
+
+    public PosicionCiclo() {
+    }
+}
@@ -0,0 +1,53 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Respuesta original de cada instrucción mutante, para devolverla tal cual ante reintentos.
+ * La unicidad es por (idInstruccion, operacion, bic): una misma instrucción del switch
+ * genera una pata por banco (débito en origen, crédito en destino).
+ */
+@Entity
+@Table(name = "RegistroIdempotencia", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_idempotencia_instruccion", columnNames = { "idInstruccion", "operacion", "bic" })
+})
+@Getter
+@Setter
+public class RegistroIdempotencia {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "idempotencia_seq")
+    @SequenceGenerator(name = "idempotencia_seq", sequenceName = "RegistroIdempotencia_SEQ", allocationSize = 50)
+    @Column(name = "idRegistro")
+    private Long idRegistro;
+
+    @Column(name = "idInstruccion", nullable = false)
+    private UUID idInstruccion;
+
+    @Column(name = "operacion", nullable = false, length = 20)
+    private String operacion;
+
+    @Column(name = "bic", nullable = false, length = 20)
+    private String bic;
+
+    @Column(name = "respuesta", nullable = false, length = 2000)
+    private String respuesta;
+
+    @Column(name = "fechaRegistro", nullable = false)
+    private LocalDateTime fechaRegistro;
+
+    public RegistroIdempotencia() {
+    }
+
+    public RegistroIdempotencia(UUID idInstruccion, String operacion, String bic, String respuesta) {
+        this.idInstruccion = idInstruccion;
+        this.operacion = operacion;
+        this.bic = bic;
+        this.respuesta = respuesta;
+        this.fechaRegistro = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,78 @@
+package com.switchbank.mscontabilidad.modelo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Retención (hold) de fondos creada por una reserva. Mientras está ACTIVA su parte
+ * pendiente sigue en fondosBloqueados y puede capturarse, liberarse o expirar.
+ * La parte capturada queda bloqueada hasta que la compensación del ciclo la liquide.
+ */
+@Entity
+@Table(name = "Retencion", indexes = {
+        @Index(name = "idx_retencion_estado_expiracion", columnList = "estado, fechaExpiracion"),
+        @Index(name = "idx_retencion_cuenta_cierre", columnList = "idCuenta, fechaCierre")
+})
+@Getter
+@Setter
+public class Retencion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "retencion_seq")
+    @SequenceGenerator(name = "retencion_seq", sequenceName = "Retencion_SEQ", allocationSize = 50)
+    @Column(name = "idRetencion")
+    private Long idRetencion;
+
+    @Column(name = "idInstruccion", nullable = false, unique = true)
+    private UUID idInstruccion;
+
+    @Column(name = "idCuenta", nullable = false)
+    private UUID idCuenta;
+
+    @Column(name = "bic", nullable = false, length = 20)
+    private String bic;
+
+    @Column(name = "monto", nullable = false, precision = 18, scale = 2)
+    private BigDecimal monto;
+
+    @Column(name = "montoCapturado", nullable = false, precision = 18, scale = 2)
+    private BigDecimal montoCapturado = BigDecimal.ZERO;
+
+    @Column(name = "montoLiberado", nullable = false, precision = 18, scale = 2)
+    private BigDecimal montoLiberado = BigDecimal.ZERO;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 10)
+    private EstadoRetencion estado;
+
+    @Column(name = "fechaCreacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fechaExpiracion", nullable = false)
+    private LocalDateTime fechaExpiracion;
+
+    // Momento en que se liberó (o expiró) la parte pendiente
+    @Column(name = "fechaCierre")
+    private LocalDateTime fechaCierre;
+
+    @Column(name = "cicloId")
+    private Integer cicloId;
+
+    // Una captura no mueve saldo, así que no la protege la actualización condicional de la cuenta
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    public Retencion() {
+    }
+
+    public BigDecimal getMontoPendiente() {
+        return estado == EstadoRetencion.ACTIVA
+                ? monto.subtract(montoCapturado).subtract(montoLiberado)
+                : BigDecimal.ZERO;
+    }
+}
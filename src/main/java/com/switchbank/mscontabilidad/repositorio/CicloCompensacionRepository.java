@@ -0,0 +1,8 @@
+package com.switchbank.mscontabilidad.repositorio;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.switchbank.mscontabilidad.modelo.CicloCompensacion;
+
+public interface CicloCompensacionRepository extends JpaRepository<CicloCompensacion, Integer> {
+}
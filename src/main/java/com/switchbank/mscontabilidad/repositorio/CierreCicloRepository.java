@@ -0,0 +1,13 @@
+package com.switchbank.mscontabilidad.repositorio;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.switchbank.mscontabilidad.modelo.CierreCiclo;
+
+import java.util.Optional;
+
+public interface CierreCicloRepository extends JpaRepository<CierreCiclo, Integer> {
+
+    // Corte del último ciclo cerrado: el ciclo abierto empieza después de su secuenciaHasta
+    Optional<CierreCiclo> findFirstByOrderBySecuenciaHastaDesc();
+}
@@ -1,12 +1,58 @@
 package com.switchbank.mscontabilidad.repositorio;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
 
+import jakarta.persistence.LockModeType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface CuentaTecnicaRepository extends JpaRepository<CuentaTecnica, UUID> {
     Optional<CuentaTecnica> findByBic(String bic);
-}
\ No newline at end of file
+
+    @Query("SELECT c.bic FROM CuentaTecnica c ORDER BY c.bic")
+    List<String> findAllBics();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CuentaTecnica c WHERE c.bic = :bic")
+    Optional<CuentaTecnica> findByBicParaActualizar(@Param("bic") String bic);
+
+    // Bloqueo en orden de BIC: dos cierres concurrentes nunca se esperan en ciclo.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CuentaTecnica c WHERE c.bic IN :bics ORDER BY c.bic")
+    List<CuentaTecnica> findByBicInParaActualizar(@Param("bics") Collection<String> bics);
+
+    // Actualización condicional (compare-and-set) por versión: solo aplica si nadie
+    // escribió la cuenta desde que el carril contable leyó esa versión. Saldos en centavos.
+    @Modifying
+    @Query("UPDATE CuentaTecnica c SET c.saldoDisponible = :saldo, c.fondosBloqueados = :bloqueados, "
+            + "c.firmaIntegridad = :firma, c.version = c.version + 1 "
+            + "WHERE c.idCuenta = :id AND c.version = :versionPrevia")
+    int actualizarSaldos(@Param("id") UUID id,
+            @Param("saldo") long saldo,
+            @Param("bloqueados") long bloqueados,
+            @Param("firma") String firma,
+            @Param("versionPrevia") long versionPrevia);
+
+    @Modifying
+    @Query("UPDATE CuentaTecnica c SET c.firmaIntegridad = :firma WHERE c.idCuenta = :id")
+    int actualizarFirma(@Param("id") UUID id, @Param("firma") String firma);
+
+    @Modifying
+    @Query("UPDATE CuentaTecnica c SET c.ultimaConciliacion = :fecha, c.saldoConciliado = :saldoConciliado, "
+            + "c.idUltimoMovimientoConciliado = :idUltimoMovimiento WHERE c.idCuenta = :id")
+    int actualizarConciliacion(@Param("id") UUID id,
+            @Param("fecha") LocalDateTime fecha,
+            @Param("saldoConciliado") BigDecimal saldoConciliado,
+            @Param("idUltimoMovimiento") Long idUltimoMovimiento);
+}
@@ -0,0 +1,33 @@
+package com.switchbank.mscontabilidad.repositorio;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.switchbank.mscontabilidad.dto.EventoMovimientoDTO;
+import com.switchbank.mscontabilidad.modelo.EventoMovimiento;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EventoMovimientoRepository extends JpaRepository<EventoMovimiento, Long> {
+
+    @Query("SELECT e FROM EventoMovimiento e WHERE e.secuencia IS NULL ORDER BY e.idEvento")
+    List<EventoMovimiento> findPendientes(Pageable pagina);
+
+    @Query("SELECT COALESCE(MAX(e.secuencia), 0) FROM EventoMovimiento e")
+    long findUltimaSecuencia();
+
+    @Query("SELECT new com.switchbank.mscontabilidad.dto.EventoMovimientoDTO("
+            + "e.secuencia, e.idMovimiento, e.idInstruccion, e.bic, e.tipo, e.monto, e.saldoResultante, "
+            + "e.fechaRegistro, e.referenciaId, e.cicloId) "
+            + "FROM EventoMovimiento e WHERE e.secuencia > :despues ORDER BY e.secuencia")
+    List<EventoMovimientoDTO> findDTODespuesDe(@Param("despues") long despues, Pageable pagina);
+
+    // Conserva siempre el último publicado: de él continúa la secuencia
+    @Modifying
+    @Query("DELETE FROM EventoMovimiento e WHERE e.fechaPublicacion < :corte AND e.secuencia < :ultima")
+    int eliminarPublicadosAntesDe(@Param("corte") LocalDateTime corte, @Param("ultima") long ultima);
+}
@@ -0,0 +1,22 @@
+package com.switchbank.mscontabilidad.repositorio;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.switchbank.mscontabilidad.modelo.InstantaneaSaldo;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface InstantaneaSaldoRepository extends JpaRepository<InstantaneaSaldo, Long> {
+
+    Optional<InstantaneaSaldo> findFirstByIdCuentaOrderByFechaCorteDesc(UUID idCuenta);
+
+    // Más reciente en o antes del instante
+    Optional<InstantaneaSaldo> findFirstByIdCuentaAndFechaCorteLessThanEqualOrderByFechaCorteDesc(UUID idCuenta,
+            LocalDateTime fecha);
+
+    // Más antigua posterior al instante (consultas anteriores a la primera instantánea)
+    Optional<InstantaneaSaldo> findFirstByIdCuentaAndFechaCorteGreaterThanOrderByFechaCorteAsc(UUID idCuenta,
+            LocalDateTime fecha);
+}
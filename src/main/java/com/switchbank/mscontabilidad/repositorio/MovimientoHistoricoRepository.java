@@ -0,0 +1,81 @@
+package com.switchbank.mscontabilidad.repositorio;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import com.switchbank.mscontabilidad.dto.MovimientoConciliacion;
+import com.switchbank.mscontabilidad.dto.MovimientoDTO;
+import com.switchbank.mscontabilidad.modelo.MovimientoHistorico;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface MovimientoHistoricoRepository extends JpaRepository<MovimientoHistorico, Long> {
+
+    boolean existsByIdInstruccion(UUID idInstruccion);
+
+    @Query("SELECT DISTINCT h.idInstruccion FROM MovimientoHistorico h WHERE h.idInstruccion IN :ids")
+    List<UUID> findIdInstruccionExistentes(@Param("ids") Collection<UUID> ids);
+
+    // Copia en bloque desde la tabla caliente; el llamador borra después los mismos ids
+    @Modifying
+    @Query("INSERT INTO MovimientoHistorico (idMovimiento, idCuenta, idInstruccion, tipo, monto, "
+            + "saldoResultante, fechaRegistro, referenciaId, cicloId) "
+            + "SELECT m.idMovimiento, m.cuenta.idCuenta, m.idInstruccion, m.tipo, m.monto, "
+            + "m.saldoResultante, m.fechaRegistro, m.referenciaId, m.cicloId "
+            + "FROM Movimiento m WHERE m.idMovimiento IN :ids")
+    int copiarDesdeCaliente(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT h.idInstruccion FROM MovimientoHistorico h WHERE h.idCuenta = :idCuenta "
+            + "AND h.idInstruccion IN :ids AND h.tipo = com.switchbank.mscontabilidad.modelo.TipoMovimiento.DEBIT")
+    List<UUID> findDebitosByIdCuentaAndIdInstruccionIn(@Param("idCuenta") UUID idCuenta,
+            @Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT DISTINCT c.bic, h.idInstruccion FROM MovimientoHistorico h "
+            + "JOIN CuentaTecnica c ON c.idCuenta = h.idCuenta "
+            + "WHERE h.idInstruccion IN :ids AND h.tipo = com.switchbank.mscontabilidad.modelo.TipoMovimiento.DEBIT")
+    List<Object[]> findBicDebitosByIdInstruccionIn(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT new com.switchbank.mscontabilidad.dto.MovimientoConciliacion("
+            + "h.idMovimiento, h.tipo, h.monto, h.saldoResultante, h.referenciaId) "
+            + "FROM MovimientoHistorico h WHERE h.idCuenta = :idCuenta "
+            + "AND h.fechaRegistro > :desde AND h.fechaRegistro <= :hasta")
+    List<MovimientoConciliacion> findEntreFechas(@Param("idCuenta") UUID idCuenta,
+            @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    String PROYECCION_DTO = "SELECT new com.switchbank.mscontabilidad.dto.MovimientoDTO("
+            + "h.idMovimiento, h.idInstruccion, h.tipo, h.monto, h.saldoResultante, h.fechaRegistro, "
+            + "h.referenciaId, c.bic) FROM MovimientoHistorico h JOIN CuentaTecnica c ON c.idCuenta = h.idCuenta ";
+
+    @Query(PROYECCION_DTO + "WHERE h.fechaRegistro BETWEEN :start AND :end "
+            + "ORDER BY h.fechaRegistro, h.idMovimiento")
+    List<MovimientoDTO> findDTOByRango(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(PROYECCION_DTO + "WHERE h.fechaRegistro BETWEEN :start AND :end "
+            + "ORDER BY h.fechaRegistro, h.idMovimiento")
+    Stream<MovimientoDTO> streamDTOByRango(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query(PROYECCION_DTO + "WHERE h.fechaRegistro BETWEEN :start AND :end "
+            + "AND (h.fechaRegistro > :despuesFecha "
+            + "OR (h.fechaRegistro = :despuesFecha AND h.idMovimiento > :despuesId)) "
+            + "ORDER BY h.fechaRegistro, h.idMovimiento")
+    List<MovimientoDTO> findDTOByRangoDespuesDe(@Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("despuesFecha") LocalDateTime despuesFecha,
+            @Param("despuesId") Long despuesId,
+            Pageable pagina);
+}
@@ -1,11 +1,24 @@
 package com.switchbank.mscontabilidad.repositorio;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.switchbank.mscontabilidad.dto.MovimientoConciliacion;
+import com.switchbank.mscontabilidad.dto.MovimientoDTO;
 import com.switchbank.mscontabilidad.modelo.Movimiento;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collection;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface MovimientoRepository extends JpaRepository<Movimiento, Long> {
     List<Movimiento> findByCuentaIdCuenta(UUID idCuenta);
@@ -15,4 +28,95 @@ public interface MovimientoRepository extends JpaRepository<Movimiento, Long> {
     List<Movimiento> findByFechaRegistroBetween(java.time.LocalDateTime start, java.time.LocalDateTime end);
 
     boolean existsByTipoAndReferenciaId(com.switchbank.mscontabilidad.modelo.TipoMovimiento tipo, UUID referenciaId);
-}
\ No newline at end of file
+
+    @Query("SELECT m.idInstruccion FROM Movimiento m WHERE m.idInstruccion IN :ids")
+    List<UUID> findIdInstruccionExistentes(@Param("ids") Collection<UUID> ids);
+
+    // Una instrucción del switch asienta un tramo por cuenta: la existencia se comprueba por cuenta
+    @Query("SELECT m.idInstruccion FROM Movimiento m "
+            + "WHERE m.cuenta.idCuenta = :idCuenta AND m.idInstruccion IN :ids")
+    List<UUID> findIdInstruccionExistentesEnCuenta(@Param("idCuenta") UUID idCuenta,
+            @Param("ids") Collection<UUID> ids);
+
+    String PROYECCION_DTO = "SELECT new com.switchbank.mscontabilidad.dto.MovimientoDTO("
+            + "m.idMovimiento, m.idInstruccion, m.tipo, m.monto, m.saldoResultante, m.fechaRegistro, "
+            + "m.referenciaId, c.bic) FROM Movimiento m JOIN m.cuenta c ";
+
+    @Query(PROYECCION_DTO + "WHERE m.fechaRegistro BETWEEN :start AND :end "
+            + "ORDER BY m.fechaRegistro, m.idMovimiento")
+    List<MovimientoDTO> findDTOByRango(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Cursor del lado del servidor: el llamador debe consumirlo dentro de una transacción y cerrarlo.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(PROYECCION_DTO + "WHERE m.fechaRegistro BETWEEN :start AND :end "
+            + "ORDER BY m.fechaRegistro, m.idMovimiento")
+    Stream<MovimientoDTO> streamDTOByRango(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Original de un reverso individual, con su cuenta; ante varios tramos, el primero
+    @Query(PROYECCION_DTO + "WHERE m.idInstruccion = :id ORDER BY m.idMovimiento")
+    List<MovimientoDTO> findDTOByIdInstruccion(@Param("id") UUID idInstruccion, Pageable pagina);
+
+    // Originales de un lote de devoluciones; ante ids repetidos el llamador toma el primero
+    @Query(PROYECCION_DTO + "WHERE m.idInstruccion IN :ids ORDER BY m.idMovimiento")
+    List<MovimientoDTO> findDTOByIdInstruccionIn(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT m.referenciaId FROM Movimiento m "
+            + "WHERE m.tipo = com.switchbank.mscontabilidad.modelo.TipoMovimiento.REVERSAL AND m.referenciaId IN :ids")
+    List<UUID> findReferenciasRevertidas(@Param("ids") Collection<UUID> ids);
+
+    // Paginación por keyset sobre (fechaRegistro, idMovimiento)
+    @Query(PROYECCION_DTO + "WHERE m.fechaRegistro BETWEEN :start AND :end "
+            + "AND (m.fechaRegistro > :despuesFecha "
+            + "OR (m.fechaRegistro = :despuesFecha AND m.idMovimiento > :despuesId)) "
+            + "ORDER BY m.fechaRegistro, m.idMovimiento")
+    List<MovimientoDTO> findDTOByRangoDespuesDe(@Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("despuesFecha") LocalDateTime despuesFecha,
+            @Param("despuesId") Long despuesId,
+            Pageable pagina);
+
+    // Movimientos posteriores al punto de control de conciliación, en orden de aplicación
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.switchbank.mscontabilidad.dto.MovimientoConciliacion("
+            + "m.idMovimiento, m.tipo, m.monto, m.saldoResultante, m.referenciaId) "
+            + "FROM Movimiento m WHERE m.cuenta.idCuenta = :idCuenta AND m.idMovimiento > :despuesId "
+            + "ORDER BY m.idMovimiento")
+    List<MovimientoConciliacion> findParaConciliacion(@Param("idCuenta") UUID idCuenta,
+            @Param("despuesId") Long despuesId);
+
+    // Delta de una cuenta en (desde, hasta] para reconstruir su saldo en un instante
+    @Query("SELECT new com.switchbank.mscontabilidad.dto.MovimientoConciliacion("
+            + "m.idMovimiento, m.tipo, m.monto, m.saldoResultante, m.referenciaId) "
+            + "FROM Movimiento m WHERE m.cuenta.idCuenta = :idCuenta "
+            + "AND m.fechaRegistro > :desde AND m.fechaRegistro <= :hasta")
+    List<MovimientoConciliacion> findEntreFechas(@Param("idCuenta") UUID idCuenta,
+            @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    @Query("SELECT MAX(m.idMovimiento) FROM Movimiento m WHERE m.cuenta.idCuenta = :idCuenta")
+    Long findUltimoIdMovimiento(@Param("idCuenta") UUID idCuenta);
+
+    // Una instrucción de dos tramos es débito en una cuenta y crédito en la otra
+    @Query("SELECT DISTINCT m.idInstruccion FROM Movimiento m WHERE m.cuenta.idCuenta = :idCuenta "
+            + "AND m.idInstruccion IN :ids AND m.tipo = com.switchbank.mscontabilidad.modelo.TipoMovimiento.DEBIT")
+    List<UUID> findDebitosByIdCuentaAndIdInstruccionIn(@Param("idCuenta") UUID idCuenta,
+            @Param("ids") Collection<UUID> ids);
+
+    // Pares (bic, idInstruccion) de los débitos, para clasificar reversos de varias cuentas a la vez
+    @Query("SELECT DISTINCT m.cuenta.bic, m.idInstruccion FROM Movimiento m "
+            + "WHERE m.idInstruccion IN :ids AND m.tipo = com.switchbank.mscontabilidad.modelo.TipoMovimiento.DEBIT")
+    List<Object[]> findBicDebitosByIdInstruccionIn(@Param("ids") Collection<UUID> ids);
+
+    // Candidatos al nivel frío: más antiguos que el corte y ya cubiertos por la conciliación.
+    // El punto de control se queda en caliente porque la conciliación lo relee.
+    @Query("SELECT m.idMovimiento FROM Movimiento m JOIN m.cuenta c "
+            + "WHERE m.fechaRegistro < :corte AND m.idMovimiento < c.idUltimoMovimientoConciliado "
+            + "ORDER BY m.fechaRegistro, m.idMovimiento")
+    List<Long> findIdsArchivables(@Param("corte") LocalDateTime corte, Pageable pagina);
+
+    @Modifying
+    @Query("DELETE FROM Movimiento m WHERE m.idMovimiento IN :ids")
+    int eliminarPorIds(@Param("ids") Collection<Long> ids);
+}
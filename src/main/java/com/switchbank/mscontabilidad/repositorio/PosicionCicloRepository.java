@@ -0,0 +1,12 @@
+package com.switchbank.mscontabilidad.repositorio;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.switchbank.mscontabilidad.modelo.PosicionCiclo;
+
+import java.util.List;
+
+public interface PosicionCicloRepository extends JpaRepository<PosicionCiclo, Long> {
+
+    List<PosicionCiclo> findByCicloIdOrderByBic(Integer cicloId);
+}
@@ -0,0 +1,31 @@
+package com.switchbank.mscontabilidad.repositorio;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import com.switchbank.mscontabilidad.modelo.RegistroIdempotencia;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface RegistroIdempotenciaRepository extends JpaRepository<RegistroIdempotencia, Long> {
+
+    @Query("SELECT r.respuesta FROM RegistroIdempotencia r "
+            + "WHERE r.idInstruccion = :id AND r.operacion = :operacion AND r.bic = :bic")
+    Optional<String> findRespuesta(@Param("id") UUID idInstruccion, @Param("operacion") String operacion,
+            @Param("bic") String bic);
+
+    // Solo las claves, para poblar el filtro de Bloom al arrancar.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r.idInstruccion, r.operacion, r.bic FROM RegistroIdempotencia r")
+    Stream<Object[]> streamClaves();
+}
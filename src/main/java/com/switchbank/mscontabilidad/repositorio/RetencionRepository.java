@@ -0,0 +1,56 @@
+package com.switchbank.mscontabilidad.repositorio;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import com.switchbank.mscontabilidad.modelo.Retencion;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface RetencionRepository extends JpaRepository<Retencion, Long> {
+
+    Optional<Retencion> findByIdInstruccion(UUID idInstruccion);
+
+    List<Retencion> findByIdInstruccionIn(Collection<UUID> idsInstruccion);
+
+    @Query("SELECT r.bic FROM Retencion r WHERE r.idInstruccion = :id")
+    Optional<String> findBicByIdInstruccion(@Param("id") UUID idInstruccion);
+
+    // Retenciones activas para reconstruir la rueda de expiración al arrancar
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r.idInstruccion, r.bic, r.fechaExpiracion FROM Retencion r "
+            + "WHERE r.estado = com.switchbank.mscontabilidad.modelo.EstadoRetencion.ACTIVA")
+    Stream<Object[]> streamActivas();
+
+    // Red de seguridad de la rueda: activas ya vencidas (por índice, sin recorrer cuentas)
+    @Query("SELECT r.idInstruccion, r.bic FROM Retencion r "
+            + "WHERE r.estado = com.switchbank.mscontabilidad.modelo.EstadoRetencion.ACTIVA "
+            + "AND r.fechaExpiracion <= :ahora ORDER BY r.fechaExpiracion")
+    List<Object[]> findVencidas(@Param("ahora") LocalDateTime ahora, Pageable pagina);
+
+    @Query("SELECT COALESCE(SUM(r.montoLiberado), 0) FROM Retencion r "
+            + "WHERE r.idCuenta = :idCuenta AND r.fechaCierre > :desde")
+    BigDecimal sumarLiberadoDesde(@Param("idCuenta") UUID idCuenta, @Param("desde") LocalDateTime desde);
+
+    @Modifying
+    @Query("UPDATE Retencion r SET r.estado = com.switchbank.mscontabilidad.modelo.EstadoRetencion.LIQUIDADA, "
+            + "r.cicloId = :cicloId WHERE r.idCuenta IN :idsCuenta "
+            + "AND r.estado = com.switchbank.mscontabilidad.modelo.EstadoRetencion.CAPTURADA")
+    int liquidarCapturadas(@Param("idsCuenta") Collection<UUID> idsCuenta, @Param("cicloId") Integer cicloId);
+}
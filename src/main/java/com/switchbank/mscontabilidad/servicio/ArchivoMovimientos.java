@@ -0,0 +1,284 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.MovimientoConciliacion;
+import com.switchbank.mscontabilidad.dto.MovimientoDTO;
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+import com.switchbank.mscontabilidad.repositorio.MovimientoHistoricoRepository;
+import com.switchbank.mscontabilidad.repositorio.MovimientoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Niveles caliente y frío de los movimientos.
+ *
+ * {@code Movimiento} solo conserva lo que el camino de escritura todavía consulta: la ventana
+ * de reverso, la detección de reversos duplicados y lo pendiente de conciliar. Un trabajo
+ * programado traslada en lotes a {@code MovimientoHistorico} las filas más antiguas que
+ * {@code horas-caliente} y anteriores al punto de control de conciliación de su cuenta, de
+ * modo que el tamaño de los índices calientes (y el costo de cada insert) depende del volumen
+ * de la ventana y no del histórico acumulado.
+ *
+ * Las consultas por rango leen ambos niveles y los mezclan por (fechaRegistro, idMovimiento).
+ * El caliente se lee primero: una fila trasladada entre ambas lecturas aparece dos veces y se
+ * descarta el duplicado, pero nunca falta.
+ */
+@Slf4j
+@Service
+public class ArchivoMovimientos {
+
+    private static final Comparator<MovimientoDTO> ORDEN = Comparator
+            .comparing(MovimientoDTO::getFechaRegistro)
+            .thenComparing(MovimientoDTO::getId);
+
+    private final MovimientoRepository movimientoRepo;
+    private final MovimientoHistoricoRepository historicoRepo;
+    private final MetricasContabilidad metricas;
+    private final TransactionTemplate transaccion;
+    private final boolean habilitado;
+    private final int horasCaliente;
+    private final int lote;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    public ArchivoMovimientos(MovimientoRepository movimientoRepo,
+            MovimientoHistoricoRepository historicoRepo,
+            MetricasContabilidad metricas,
+            PlatformTransactionManager transactionManager,
+            @Value("${contabilidad.archivo.habilitado:true}") boolean habilitado,
+            @Value("${contabilidad.archivo.horas-caliente:72}") int horasCaliente,
+            @Value("${contabilidad.archivo.lote:5000}") int lote) {
+        // Los reversos y su control de duplicados solo buscan en caliente
+        if (horasCaliente <= ContabilidadServicio.VENTANA_REVERSO_HORAS) {
+            throw new IllegalStateException("contabilidad.archivo.horas-caliente debe superar la ventana de reverso de "
+                    + ContabilidadServicio.VENTANA_REVERSO_HORAS + " horas");
+        }
+        this.movimientoRepo = movimientoRepo;
+        this.historicoRepo = historicoRepo;
+        this.metricas = metricas;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.horasCaliente = horasCaliente;
+        this.lote = Math.max(1, lote);
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.archivo.intervalo-ms:600000}",
+            initialDelayString = "${contabilidad.archivo.intervalo-ms:600000}")
+    public void archivadoProgramado() {
+        if (habilitado) {
+            archivar();
+        }
+    }
+
+    /**
+     * Traslada al nivel frío todo lo archivable, un lote por transacción.
+     *
+     * @return movimientos trasladados
+     */
+    public int archivar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime corte = LocalDateTime.now().minusHours(horasCaliente);
+            long t0 = System.nanoTime();
+            int total = 0;
+            int trasladados;
+            do {
+                trasladados = transaccion.execute(status -> trasladarLote(corte));
+                total += trasladados;
+            } while (trasladados == lote);
+
+            if (total > 0) {
+                metricas.movimientosArchivados(total);
+                log.info("[ARCHIVO] {} movimientos anteriores a {} trasladados al histórico en {} ms", total, corte,
+                        (System.nanoTime() - t0) / 1_000_000);
+            }
+            return total;
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    private int trasladarLote(LocalDateTime corte) {
+        List<Long> ids = movimientoRepo.findIdsArchivables(corte, PageRequest.of(0, lote));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int copiados = historicoRepo.copiarDesdeCaliente(ids);
+        int eliminados = movimientoRepo.eliminarPorIds(ids);
+        if (copiados != ids.size() || eliminados != ids.size()) {
+            throw new RuntimeException("Traslado al histórico inconsistente: " + ids.size() + " candidatos, "
+                    + copiados + " copiados, " + eliminados + " eliminados");
+        }
+        return ids.size();
+    }
+
+    public boolean archivado(UUID idInstruccion) {
+        return historicoRepo.existsByIdInstruccion(idInstruccion);
+    }
+
+    public Set<UUID> archivados(Collection<UUID> idsInstruccion) {
+        return idsInstruccion.isEmpty() ? Set.of() : new HashSet<>(historicoRepo.findIdInstruccionExistentes(idsInstruccion));
+    }
+
+    /**
+     * Originales de los reversos entre esos movimientos de la cuenta que fueron débitos de
+     * esa misma cuenta, en cualquiera de los dos niveles. Un reverso suma o resta según el
+     * tramo que revierte, y los dos tramos de una instrucción comparten idInstruccion.
+     */
+    public Set<UUID> originalesDebito(UUID idCuenta, Collection<MovimientoConciliacion> movimientos) {
+        Set<UUID> ids = movimientos.stream()
+                .filter(m -> m.tipo() == TipoMovimiento.REVERSAL)
+                .map(MovimientoConciliacion::referenciaId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        Set<UUID> debitos = new HashSet<>(movimientoRepo.findDebitosByIdCuentaAndIdInstruccionIn(idCuenta, ids));
+        List<UUID> restantes = ids.stream().filter(id -> !debitos.contains(id)).toList();
+        if (!restantes.isEmpty()) {
+            debitos.addAll(historicoRepo.findDebitosByIdCuentaAndIdInstruccionIn(idCuenta, restantes));
+        }
+        return debitos;
+    }
+
+    /**
+     * Las mismas instrucciones originales, agrupadas por el BIC de la cuenta donde fueron
+     * débito, en cualquiera de los dos niveles. Para quien clasifica reversos de varias
+     * cuentas a la vez: el reverso de un BIC solo es de un débito si está en su conjunto.
+     */
+    public Map<String, Set<UUID>> originalesDebitoPorBic(Collection<UUID> idsInstruccion) {
+        if (idsInstruccion.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Set<UUID>> porBic = new HashMap<>();
+        // Los tramos de una instrucción pueden estar en niveles distintos: se leen ambos
+        Stream.concat(movimientoRepo.findBicDebitosByIdInstruccionIn(idsInstruccion).stream(),
+                        historicoRepo.findBicDebitosByIdInstruccionIn(idsInstruccion).stream())
+                .forEach(fila -> porBic.computeIfAbsent((String) fila[0], k -> new HashSet<>()).add((UUID) fila[1]));
+        return porBic;
+    }
+
+    /**
+     * Movimientos de la cuenta en (desde, hasta] de ambos niveles, sin orden.
+     */
+    public Collection<MovimientoConciliacion> movimientosEntre(UUID idCuenta, LocalDateTime desde, LocalDateTime hasta) {
+        Map<Long, MovimientoConciliacion> porId = new HashMap<>();
+        movimientoRepo.findEntreFechas(idCuenta, desde, hasta).forEach(m -> porId.put(m.idMovimiento(), m));
+        historicoRepo.findEntreFechas(idCuenta, desde, hasta).forEach(m -> porId.putIfAbsent(m.idMovimiento(), m));
+        return porId.values();
+    }
+
+    // Las lecturas por rango corren dentro de la transacción de solo lectura del llamador
+
+    public List<MovimientoDTO> rango(LocalDateTime start, LocalDateTime end) {
+        List<MovimientoDTO> calientes = movimientoRepo.findDTOByRango(start, end);
+        List<MovimientoDTO> frios = historicoRepo.findDTOByRango(start, end);
+        if (frios.isEmpty()) {
+            return calientes;
+        }
+        List<MovimientoDTO> todos = new ArrayList<>(calientes.size() + frios.size());
+        new Mezcla(calientes.iterator(), frios.iterator()).forEachRemaining(todos::add);
+        return todos;
+    }
+
+    public long recorrerRango(LocalDateTime start, LocalDateTime end, Consumer<MovimientoDTO> consumidor) {
+        long total = 0;
+        try (Stream<MovimientoDTO> calientes = movimientoRepo.streamDTOByRango(start, end);
+                Stream<MovimientoDTO> frios = historicoRepo.streamDTOByRango(start, end)) {
+            Iterator<MovimientoDTO> it = new Mezcla(calientes.iterator(), frios.iterator());
+            while (it.hasNext()) {
+                consumidor.accept(it.next());
+                total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Los primeros {@code limite} de la unión están entre los primeros {@code limite} de cada nivel.
+     */
+    public List<MovimientoDTO> rangoDespuesDe(LocalDateTime start, LocalDateTime end,
+            LocalDateTime despuesFecha, Long despuesId, int limite) {
+        PageRequest pagina = PageRequest.of(0, limite);
+        List<MovimientoDTO> calientes = movimientoRepo.findDTOByRangoDespuesDe(start, end, despuesFecha, despuesId, pagina);
+        List<MovimientoDTO> frios = historicoRepo.findDTOByRangoDespuesDe(start, end, despuesFecha, despuesId, pagina);
+        if (frios.isEmpty()) {
+            return calientes;
+        }
+        List<MovimientoDTO> filas = new ArrayList<>(limite);
+        Iterator<MovimientoDTO> it = new Mezcla(calientes.iterator(), frios.iterator());
+        while (it.hasNext() && filas.size() < limite) {
+            filas.add(it.next());
+        }
+        return filas;
+    }
+
+    /**
+     * Mezcla dos secuencias ordenadas por {@link #ORDEN}, emitiendo una sola vez las filas
+     * presentes en ambas.
+     */
+    private static final class Mezcla implements Iterator<MovimientoDTO> {
+
+        private final Iterator<MovimientoDTO> a;
+        private final Iterator<MovimientoDTO> b;
+        private MovimientoDTO cabezaA;
+        private MovimientoDTO cabezaB;
+
+        Mezcla(Iterator<MovimientoDTO> a, Iterator<MovimientoDTO> b) {
+            this.a = a;
+            this.b = b;
+            this.cabezaA = a.hasNext() ? a.next() : null;
+            this.cabezaB = b.hasNext() ? b.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cabezaA != null || cabezaB != null;
+        }
+
+        @Override
+        public MovimientoDTO next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int cmp = cabezaA == null ? 1 : cabezaB == null ? -1 : ORDEN.compare(cabezaA, cabezaB);
+            MovimientoDTO siguiente;
+            if (cmp <= 0) {
+                siguiente = cabezaA;
+                cabezaA = a.hasNext() ? a.next() : null;
+                if (cmp == 0) {
+                    cabezaB = b.hasNext() ? b.next() : null;
+                }
+            } else {
+                siguiente = cabezaB;
+                cabezaB = b.hasNext() ? b.next() : null;
+            }
+            return siguiente;
+        }
+    }
+}
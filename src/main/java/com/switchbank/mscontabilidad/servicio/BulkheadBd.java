@@ -0,0 +1,135 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.excepcion.CapacidadAgotadaException;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead de acceso a BD: las peticiones en curso (hasta los hilos de Tomcat, o sin límite
+ * con hilos virtuales) superan al pool de Hikari, que es el límite real.
+ *
+ * Los permisos globales son los del pool menos una reserva para las tareas de fondo
+ * (drenado del diario, conciliación). Cada partición (un BIC, o {@link #GLOBAL} para
+ * consultas y compensaciones que abarcan varias cuentas) puede usar como máximo una parte
+ * de ellos: un banco ruidoso encola en su propia partición y el resto de los permisos
+ * queda siempre disponible para los demás. Ambos semáforos son justos (FIFO).
+ * Solo los primeros {@code max-bics} BIC tienen partición propia; el resto comparte
+ * {@link MetricasContabilidad#OTROS}, así un cliente no puede crear particiones a voluntad.
+ *
+ * Es reentrante por hilo: una llamada anidada que ya tiene permiso no pide otro. Las
+ * escrituras lo piden en el hilo de la petición, antes de encolarse en su carril contable.
+ */
+@Slf4j
+@Component
+public class BulkheadBd {
+
+    public static final String GLOBAL = "*";
+
+    private final boolean habilitado;
+    private final int permisosTotales;
+    private final int maxPorParticion;
+    private final long esperaMs;
+    private final int maxBics;
+    private final Semaphore global;
+    private final Map<String, Semaphore> particiones = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[]> tomados = ThreadLocal.withInitial(() -> new int[1]);
+    private final Counter rechazos;
+
+    public BulkheadBd(DataSource dataSource, MeterRegistry registry,
+            @Value("${contabilidad.bulkhead.habilitado:true}") boolean habilitado,
+            @Value("${contabilidad.bulkhead.reservadas:2}") int reservadas,
+            @Value("${contabilidad.bulkhead.max-por-bic:0}") int maxPorBic,
+            @Value("${contabilidad.bulkhead.espera-ms:2000}") long esperaMs,
+            @Value("${contabilidad.bulkhead.max-bics:1000}") int maxBics) {
+        int pool = tamanoPool(dataSource);
+        this.habilitado = habilitado;
+        this.permisosTotales = Math.max(1, pool - Math.max(0, reservadas));
+        this.maxPorParticion = maxPorBic > 0
+                ? Math.min(maxPorBic, permisosTotales)
+                : Math.max(1, permisosTotales - permisosTotales / 4);
+        this.esperaMs = esperaMs;
+        this.maxBics = Math.max(0, maxBics);
+        this.global = new Semaphore(permisosTotales, true);
+        this.rechazos = Counter.builder("contabilidad.bulkhead.rechazos").register(registry);
+        Gauge.builder("contabilidad.bulkhead.en-uso", global, s -> permisosTotales - s.availablePermits())
+                .register(registry);
+        log.info("[BULKHEAD] {} permisos de BD (pool {}), máximo {} por BIC{}", permisosTotales, pool,
+                maxPorParticion, habilitado ? "" : " (deshabilitado)");
+    }
+
+    // Con réplica de lectura el DataSource es un proxy enrutador; fuera de transacción resuelve
+    // a la primaria, que es el pool que este bulkhead protege.
+    private static int tamanoPool(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.warn("[BULKHEAD] No se pudo determinar el tamaño del pool: {}", e.getMessage());
+        }
+        return 10;
+    }
+
+    public <T> T ejecutar(String particion, Supplier<T> operacion) {
+        int[] propios = tomados.get();
+        if (!habilitado || propios[0] > 0) {
+            return operacion.get();
+        }
+        String clave = particion == null ? GLOBAL : particion;
+        Semaphore local = particion(clave);
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMs);
+        adquirir(local, limite, clave);
+        try {
+            adquirir(global, limite, clave);
+        } catch (RuntimeException e) {
+            local.release();
+            throw e;
+        }
+        propios[0]++;
+        try {
+            return operacion.get();
+        } finally {
+            propios[0]--;
+            global.release();
+            local.release();
+        }
+    }
+
+    private Semaphore particion(String clave) {
+        Semaphore local = particiones.get(clave);
+        if (local != null) {
+            return local;
+        }
+        if (!GLOBAL.equals(clave) && particiones.size() >= maxBics) {
+            clave = MetricasContabilidad.OTROS;
+        }
+        return particiones.computeIfAbsent(clave, k -> new Semaphore(maxPorParticion, true));
+    }
+
+    private void adquirir(Semaphore semaforo, long limite, String particion) {
+        try {
+            if (!semaforo.tryAcquire(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                rechazos.increment();
+                throw new CapacidadAgotadaException(GLOBAL.equals(particion)
+                        ? "Capacidad de base de datos agotada para consultas globales"
+                        : "Capacidad de base de datos agotada para el BIC: " + particion);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Espera de conexión interrumpida para " + particion);
+        }
+    }
+}
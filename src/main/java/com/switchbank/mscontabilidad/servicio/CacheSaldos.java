@@ -0,0 +1,185 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.CuentaDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Caché de saldos por BIC para las consultas de disponibilidad y de cuenta.
+ *
+ * Se escribe desde los carriles contables justo después de cada confirmación (write-through),
+ * así que un acierto nunca es más antiguo que el último asiento confirmado en este nodo.
+ * Cada escritura o invalidación toma una versión creciente por BIC; una carga desde BD
+ * solo se instala si no hubo ninguna escritura del BIC mientras se leía, lo que evita
+ * que una lectura lenta pise un saldo más reciente.
+ *
+ * El tamaño es acotado: al excederlo se desaloja, de una muestra tomada en un tramo al
+ * azar de la tabla, la entrada con el acceso más antiguo.
+ */
+@Slf4j
+@Component
+public class CacheSaldos {
+
+    private static final int MUESTRA_DESALOJO = 16;
+
+    private final boolean habilitada;
+    private final int maxEntradas;
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    // Última versión escrita por BIC; sobrevive al desalojo para validar cargas en curso.
+    private final Map<String, Long> versiones = new ConcurrentHashMap<>();
+    private final AtomicLong reloj = new AtomicLong();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder escrituras = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+
+    public CacheSaldos(@Value("${contabilidad.cache-saldos.habilitada:true}") boolean habilitada,
+            @Value("${contabilidad.cache-saldos.max-entradas:10000}") int maxEntradas,
+            MeterRegistry registry) {
+        this.habilitada = habilitada;
+        this.maxEntradas = Math.max(1, maxEntradas);
+        FunctionCounter.builder("cache.gets", aciertos, LongAdder::sum)
+                .tag("cache", "saldos").tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", fallos, LongAdder::sum)
+                .tag("cache", "saldos").tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.puts", escrituras, LongAdder::sum)
+                .tag("cache", "saldos").register(registry);
+        FunctionCounter.builder("cache.evictions", desalojos, LongAdder::sum)
+                .tag("cache", "saldos").register(registry);
+        Gauge.builder("cache.size", entradas, Map::size)
+                .tag("cache", "saldos").register(registry);
+        log.info("[CACHE] Caché de saldos {} (máximo {} cuentas)", habilitada ? "habilitada" : "deshabilitada",
+                this.maxEntradas);
+    }
+
+    /**
+     * Devuelve la cuenta desde la caché o la carga con {@code cargar} (que puede devolver null).
+     */
+    public CuentaDTO obtener(String bic, Function<String, CuentaDTO> cargar) {
+        if (!habilitada) {
+            return cargar.apply(bic);
+        }
+        Entrada entrada = entradas.get(bic);
+        if (entrada != null) {
+            entrada.ultimoAcceso = System.nanoTime();
+            aciertos.increment();
+            return entrada.cuenta;
+        }
+        fallos.increment();
+        long version = versiones.getOrDefault(bic, 0L);
+        CuentaDTO cuenta = cargar.apply(bic);
+        if (cuenta != null) {
+            boolean[] instalada = new boolean[1];
+            entradas.compute(bic, (k, actual) -> {
+                if (actual != null || versiones.getOrDefault(bic, 0L) != version) {
+                    return actual;
+                }
+                instalada[0] = true;
+                return new Entrada(cuenta, version, System.nanoTime());
+            });
+            if (instalada[0]) {
+                desalojarSiExcede();
+            }
+        }
+        return cuenta;
+    }
+
+    /**
+     * Publica el estado confirmado de la cuenta. Debe llamarse desde el carril del BIC.
+     */
+    public void escribir(String bic, CuentaDTO cuenta) {
+        if (!habilitada) {
+            return;
+        }
+        long version = nuevaVersion(bic);
+        entradas.compute(bic, (k, actual) -> actual != null && actual.version > version
+                ? actual
+                : new Entrada(cuenta, version, System.nanoTime()));
+        escrituras.increment();
+        desalojarSiExcede();
+    }
+
+    /**
+     * Descarta la cuenta: la próxima lectura irá a la fuente. Las cargas que ya estaban
+     * en curso no se instalan.
+     */
+    public void invalidar(String bic) {
+        if (!habilitada) {
+            return;
+        }
+        nuevaVersion(bic);
+        entradas.remove(bic);
+    }
+
+    private long nuevaVersion(String bic) {
+        long version = reloj.incrementAndGet();
+        versiones.merge(bic, version, Math::max);
+        return version;
+    }
+
+    private void desalojarSiExcede() {
+        while (entradas.size() > maxEntradas) {
+            String[] candidato = new String[1];
+            long[] masAntiguo = {Long.MAX_VALUE};
+            Spliterator<Map.Entry<String, Entrada>> tramo = tramoAlAzar();
+            for (int i = 0; i < MUESTRA_DESALOJO; i++) {
+                boolean hay = tramo.tryAdvance(e -> {
+                    if (e.getValue().ultimoAcceso < masAntiguo[0]) {
+                        masAntiguo[0] = e.getValue().ultimoAcceso;
+                        candidato[0] = e.getKey();
+                    }
+                });
+                if (!hay) {
+                    break;
+                }
+            }
+            // Tramo vacío: la próxima vuelta sortea otro
+            if (candidato[0] != null && entradas.remove(candidato[0]) != null) {
+                desalojos.increment();
+            }
+        }
+    }
+
+    // Parte la tabla por mitades elegidas al azar hasta quedar con unas MUESTRA_DESALOJO
+    // entradas: O(log n), y sin el sesgo de muestrear siempre las primeras ranuras.
+    private Spliterator<Map.Entry<String, Entrada>> tramoAlAzar() {
+        Spliterator<Map.Entry<String, Entrada>> tramo = entradas.entrySet().spliterator();
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        while (tramo.estimateSize() > MUESTRA_DESALOJO) {
+            Spliterator<Map.Entry<String, Entrada>> mitad = tramo.trySplit();
+            if (mitad == null) {
+                break;
+            }
+            if (azar.nextBoolean()) {
+                tramo = mitad;
+            }
+        }
+        return tramo;
+    }
+
+    private static final class Entrada {
+        private final CuentaDTO cuenta;
+        private final long version;
+        // Escritura sin sincronizar a propósito: solo orienta el desalojo.
+        private long ultimoAcceso;
+
+        private Entrada(CuentaDTO cuenta, long version, long ultimoAcceso) {
+            this.cuenta = cuenta;
+            this.version = version;
+            this.ultimoAcceso = ultimoAcceso;
+        }
+    }
+}
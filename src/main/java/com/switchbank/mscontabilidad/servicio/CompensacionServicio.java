@@ -0,0 +1,207 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.ResultadoCompensacionDTO;
+import com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO;
+import com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO.PosicionBancariaDTO;
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import com.switchbank.mscontabilidad.modelo.CicloCompensacion;
+import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import com.switchbank.mscontabilidad.modelo.Movimiento;
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+import com.switchbank.mscontabilidad.repositorio.CicloCompensacionRepository;
+import com.switchbank.mscontabilidad.repositorio.CuentaTecnicaRepository;
+import com.switchbank.mscontabilidad.repositorio.MovimientoRepository;
+import com.switchbank.mscontabilidad.repositorio.RetencionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Motor de compensación: asienta el cierre de un ciclo de clearing en una sola pasada.
+ *
+ * 1. Carga todas las cuentas del ciclo en una consulta, bloqueadas en orden de BIC.
+ * 2. Valida todo antes de escribir: que el ciclo neteé a cero, que cada posición sea
+ *    coherente (neta = créditos - débitos) y que los fondos bloqueados cubran los débitos.
+ * 3. Inserta en batch los movimientos SETTLEMENT marcados con el cicloId, liquida las
+ *    retenciones capturadas, toma una instantánea de saldo por cuenta y registra el
+ *    ciclo, con lo que un reintento del mismo cicloId no vuelve a aplicarse.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CompensacionServicio {
+
+    private static final String APLICADO = "APLICADO";
+    private static final String YA_APLICADO = "YA_APLICADO";
+
+    private final CuentaTecnicaRepository cuentaRepo;
+    private final MovimientoRepository movimientoRepo;
+    private final CicloCompensacionRepository cicloRepo;
+    private final RetencionRepository retencionRepo;
+    private final ContabilidadServicio contabilidad;
+    private final FirmaIntegridad firma;
+    private final TransactionTemplate transaccion;
+    private final BulkheadBd bulkhead;
+    private final MetricasContabilidad metricas;
+    private final SaldoHistoricoServicio saldoHistorico;
+    private final FeedMovimientos feed;
+
+    public ResultadoCompensacionDTO aplicarCompensacion(SolicitudCompensacionDTO req) {
+        return metricas.medir(MetricasContabilidad.OP_COMPENSACION, MetricasContabilidad.VARIOS, () -> compensar(req));
+    }
+
+    private ResultadoCompensacionDTO compensar(SolicitudCompensacionDTO req) {
+        long inicio = System.nanoTime();
+        Map<String, PosicionBancariaDTO> posiciones = validarSolicitud(req);
+
+        // La compensación toca varias cuentas, por lo que no pertenece a un único carril:
+        // se aplican antes los asientos pendientes del diario y al final se invalida el estado caliente.
+        contabilidad.drenarCuentas(posiciones.keySet());
+
+        long[] tiempos = new long[2];
+        ResultadoCompensacionDTO resultado = bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> transaccion.execute(status -> {
+            // Reintento de un ciclo ya cerrado: se responde sin bloquear las cuentas.
+            CicloCompensacion cerrado = cicloRepo.findById(req.getCicloId()).orElse(null);
+            if (cerrado != null) {
+                return resultado(cerrado, YA_APLICADO);
+            }
+
+            List<CuentaTecnica> cuentas = cuentaRepo.findByBicInParaActualizar(posiciones.keySet());
+            tiempos[0] = System.nanoTime();
+
+            // Con las filas bloqueadas, un cierre concurrente del mismo ciclo ya confirmó o aún no empezó.
+            CicloCompensacion previo = cicloRepo.findById(req.getCicloId()).orElse(null);
+            if (previo != null) {
+                return resultado(previo, YA_APLICADO);
+            }
+
+            if (cuentas.size() != posiciones.size()) {
+                List<String> faltantes = new ArrayList<>(posiciones.keySet());
+                cuentas.forEach(c -> faltantes.remove(c.getBic()));
+                throw new RuntimeException("Cuenta no encontrada para BIC: " + String.join(", ", faltantes));
+            }
+
+            long montoCompensado = 0;
+            for (CuentaTecnica cuenta : cuentas) {
+                contabilidad.validarIntegridad(cuenta);
+                PosicionBancariaDTO pos = posiciones.get(cuenta.getBic());
+                if (cuenta.getFondosBloqueados() < Centavos.de(pos.getTotalDebitos())) {
+                    throw new RuntimeException("Fondos bloqueados insuficientes para compensar " + cuenta.getBic()
+                            + ": bloqueado " + Centavos.formatear(cuenta.getFondosBloqueados())
+                            + ", débitos " + pos.getTotalDebitos());
+                }
+                montoCompensado = Centavos.sumar(montoCompensado, Centavos.de(pos.getTotalDebitos()));
+            }
+            tiempos[1] = System.nanoTime();
+
+            LocalDateTime ahora = LocalDateTime.now();
+            List<Movimiento> movimientos = new ArrayList<>(cuentas.size());
+            for (CuentaTecnica cuenta : cuentas) {
+                PosicionBancariaDTO pos = posiciones.get(cuenta.getBic());
+
+                // Se liberan los débitos reservados y se aplica la posición neta
+                long debitos = Centavos.de(pos.getTotalDebitos());
+                cuenta.setFondosBloqueados(Centavos.restar(cuenta.getFondosBloqueados(), debitos));
+                cuenta.setSaldoDisponible(Centavos.sumar(cuenta.getSaldoDisponible(),
+                        Centavos.sumar(debitos, Centavos.de(pos.getPosicionNeta()))));
+                cuenta.setFirmaIntegridad(firma.firmar(cuenta));
+
+                Movimiento mov = new Movimiento();
+                mov.setCuenta(cuenta);
+                mov.setIdInstruccion(idInstruccionLiquidacion(req.getCicloId(), cuenta.getBic()));
+                mov.setCicloId(req.getCicloId());
+                mov.setTipo(TipoMovimiento.SETTLEMENT);
+                // Con signo: la conciliación necesita la dirección de la posición neta
+                mov.setMonto(pos.getPosicionNeta());
+                mov.setSaldoResultante(Centavos.aBigDecimal(cuenta.getSaldoDisponible()));
+                mov.setFechaRegistro(ahora);
+                movimientos.add(mov);
+            }
+            movimientoRepo.saveAll(movimientos);
+            feed.registrarTodos(movimientos);
+            saldoHistorico.registrarCompensacion(movimientos);
+            // Las retenciones capturadas quedan liquidadas por este ciclo
+            retencionRepo.liquidarCapturadas(cuentas.stream().map(CuentaTecnica::getIdCuenta).toList(),
+                    req.getCicloId());
+
+            CicloCompensacion ciclo = new CicloCompensacion();
+            ciclo.setCicloId(req.getCicloId());
+            ciclo.setPosiciones(cuentas.size());
+            ciclo.setMontoCompensado(Centavos.aBigDecimal(montoCompensado));
+            ciclo.setFechaAplicacion(ahora);
+            cicloRepo.save(ciclo);
+            return resultado(ciclo, APLICADO);
+        }));
+
+        if (APLICADO.equals(resultado.getEstado())) {
+            contabilidad.invalidarCuentasCalientes(posiciones.keySet());
+            metricas.posicionesCompensacion(posiciones.size());
+        }
+        long fin = System.nanoTime();
+        resultado.setDuracionMs((fin - inicio) / 1_000_000);
+        log.info("[COMPENSACION] Ciclo {} {}: {} posiciones en {} ms (carga {} ms, validación {} ms, escritura {} ms)",
+                req.getCicloId(), resultado.getEstado(), posiciones.size(), resultado.getDuracionMs(),
+                tiempos[0] > 0 ? (tiempos[0] - inicio) / 1_000_000 : 0,
+                tiempos[1] > 0 ? (tiempos[1] - tiempos[0]) / 1_000_000 : 0,
+                tiempos[1] > 0 ? (fin - tiempos[1]) / 1_000_000 : 0);
+        return resultado;
+    }
+
+    // Validaciones que no necesitan la BD: se rechaza el ciclo completo antes de bloquear nada.
+    private static Map<String, PosicionBancariaDTO> validarSolicitud(SolicitudCompensacionDTO req) {
+        if (req.getCicloId() == null) {
+            throw new RuntimeException("cicloId es obligatorio");
+        }
+        if (req.getPosiciones() == null || req.getPosiciones().isEmpty()) {
+            throw new RuntimeException("El ciclo " + req.getCicloId() + " no tiene posiciones");
+        }
+        Map<String, PosicionBancariaDTO> porBic = new HashMap<>();
+        BigDecimal neto = BigDecimal.ZERO;
+        for (PosicionBancariaDTO pos : req.getPosiciones()) {
+            if (pos.getBic() == null || pos.getTotalDebitos() == null || pos.getTotalCreditos() == null
+                    || pos.getPosicionNeta() == null) {
+                throw new RuntimeException("Posición incompleta en el ciclo " + req.getCicloId());
+            }
+            if (pos.getTotalDebitos().signum() < 0 || pos.getTotalCreditos().signum() < 0) {
+                throw new RuntimeException("Totales negativos en la posición de " + pos.getBic());
+            }
+            if (pos.getTotalCreditos().subtract(pos.getTotalDebitos()).compareTo(pos.getPosicionNeta()) != 0) {
+                throw new RuntimeException("Posición neta incoherente para " + pos.getBic()
+                        + ": créditos - débitos != " + pos.getPosicionNeta());
+            }
+            if (porBic.put(pos.getBic(), pos) != null) {
+                throw new RuntimeException("BIC repetido en el ciclo " + req.getCicloId() + ": " + pos.getBic());
+            }
+            neto = neto.add(pos.getPosicionNeta());
+        }
+        if (neto.signum() != 0) {
+            throw new RuntimeException("El ciclo " + req.getCicloId() + " no netea a cero: " + neto);
+        }
+        return porBic;
+    }
+
+    // Determinístico por (ciclo, BIC), así el movimiento también es único ante un reintento.
+    private static UUID idInstruccionLiquidacion(Integer cicloId, String bic) {
+        return UUID.nameUUIDFromBytes(("SETTLEMENT:" + cicloId + ":" + bic).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ResultadoCompensacionDTO resultado(CicloCompensacion ciclo, String estado) {
+        return ResultadoCompensacionDTO.builder()
+                .cicloId(ciclo.getCicloId())
+                .estado(estado)
+                .posiciones(ciclo.getPosiciones())
+                .montoCompensado(ciclo.getMontoCompensado())
+                .fechaAplicacion(ciclo.getFechaAplicacion())
+                .build();
+    }
+}
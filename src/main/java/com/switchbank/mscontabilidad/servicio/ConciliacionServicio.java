@@ -0,0 +1,241 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.MovimientoConciliacion;
+import com.switchbank.mscontabilidad.dto.ReporteConciliacionDTO;
+import com.switchbank.mscontabilidad.dto.ResultadoConciliacionDTO;
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import com.switchbank.mscontabilidad.modelo.Movimiento;
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+import com.switchbank.mscontabilidad.repositorio.CuentaTecnicaRepository;
+import com.switchbank.mscontabilidad.repositorio.MovimientoRepository;
+import com.switchbank.mscontabilidad.repositorio.RetencionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conciliación incremental de cuentas técnicas.
+ *
+ * Para cada cuenta se revisan solo los movimientos posteriores a su punto de control
+ * ({@code idUltimoMovimientoConciliado}) y se verifica:
+ * - continuidad: ningún movimiento (salvo SETTLEMENT, que libera fondos bloqueados) deja un
+ *   saldo resultante mayor al esperado, salvo por lo liberado de retenciones en el intervalo.
+ *   Las reservas sí pueden bajarlo, porque no generan movimiento.
+ * - saldo: la posición total actual (disponible + bloqueado) es igual a la conciliada más el
+ *   efecto de los movimientos nuevos.
+ * Si cuadra, se avanzan {@code ultimaConciliacion}, {@code saldoConciliado} y el punto de control,
+ * por lo que el costo de cada corrida es proporcional a la actividad nueva y no al histórico.
+ */
+@Slf4j
+@Service
+public class ConciliacionServicio {
+
+    private static final String APERTURA = "APERTURA";
+    private static final String CONCILIADA = "CONCILIADA";
+    private static final String DISCREPANCIA = "DISCREPANCIA";
+    private static final String ERROR = "ERROR";
+    private static final LocalDateTime INICIO_HISTORIA = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final CuentaTecnicaRepository cuentaRepo;
+    private final MovimientoRepository movimientoRepo;
+    private final RetencionRepository retencionRepo;
+    private final ContabilidadServicio contabilidad;
+    private final ArchivoMovimientos archivo;
+    private final TransactionTemplate transaccion;
+    private final ForkJoinPool pool;
+    private final boolean programada;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private volatile ReporteConciliacionDTO ultimoReporte;
+
+    public ConciliacionServicio(CuentaTecnicaRepository cuentaRepo,
+            MovimientoRepository movimientoRepo,
+            RetencionRepository retencionRepo,
+            ContabilidadServicio contabilidad,
+            ArchivoMovimientos archivo,
+            PlatformTransactionManager transactionManager,
+            @Value("${contabilidad.conciliacion.paralelismo:4}") int paralelismo,
+            @Value("${contabilidad.conciliacion.programada:true}") boolean programada) {
+        this.cuentaRepo = cuentaRepo;
+        this.movimientoRepo = movimientoRepo;
+        this.retencionRepo = retencionRepo;
+        this.contabilidad = contabilidad;
+        this.archivo = archivo;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        // Lectura consistente de cuenta y movimientos aunque una compensación confirme en medio
+        this.transaccion.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.pool = new ForkJoinPool(Math.max(1, paralelismo));
+        this.programada = programada;
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.conciliacion.intervalo-ms:300000}",
+            initialDelayString = "${contabilidad.conciliacion.intervalo-ms:300000}")
+    public void conciliacionProgramada() {
+        if (programada && !enCurso.get()) {
+            conciliar();
+        }
+    }
+
+    public ReporteConciliacionDTO conciliar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            throw new RuntimeException("Ya hay una conciliación en curso");
+        }
+        try {
+            LocalDateTime inicio = LocalDateTime.now();
+            long t0 = System.nanoTime();
+
+            List<String> bics = cuentaRepo.findAllBics();
+            List<ResultadoConciliacionDTO> resultados = pool.submit(() -> bics.parallelStream()
+                    .map(this::conciliarCuenta)
+                    .toList()).join();
+
+            ReporteConciliacionDTO reporte = ReporteConciliacionDTO.builder()
+                    .inicio(inicio)
+                    .duracionMs((System.nanoTime() - t0) / 1_000_000)
+                    .cuentas(resultados.size())
+                    .conciliadas((int) resultados.stream().filter(r -> !DISCREPANCIA.equals(r.getEstado())
+                            && !ERROR.equals(r.getEstado())).count())
+                    .conDiscrepancia((int) resultados.stream().filter(r -> DISCREPANCIA.equals(r.getEstado())).count())
+                    .conError((int) resultados.stream().filter(r -> ERROR.equals(r.getEstado())).count())
+                    .movimientosRevisados(resultados.stream().mapToLong(ResultadoConciliacionDTO::getMovimientosRevisados).sum())
+                    .resultados(resultados)
+                    .build();
+            ultimoReporte = reporte;
+
+            log.info("[CONCILIACION] {} cuentas, {} movimientos nuevos en {} ms ({} con discrepancia, {} con error)",
+                    reporte.getCuentas(), reporte.getMovimientosRevisados(), reporte.getDuracionMs(),
+                    reporte.getConDiscrepancia(), reporte.getConError());
+            resultados.stream()
+                    .filter(r -> DISCREPANCIA.equals(r.getEstado()))
+                    .forEach(r -> log.warn("[CONCILIACION] {}: {}", r.getCodigoBic(), r.getDiscrepancias()));
+            return reporte;
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    public ReporteConciliacionDTO obtenerUltimoReporte() {
+        if (ultimoReporte == null) {
+            throw new RuntimeException("Aún no se ha ejecutado ninguna conciliación");
+        }
+        return ultimoReporte;
+    }
+
+    private ResultadoConciliacionDTO conciliarCuenta(String bic) {
+        try {
+            return contabilidad.ejecutarEnCarril(bic, () -> transaccion.execute(status -> conciliarCuentaEnTransaccion(bic)));
+        } catch (RuntimeException e) {
+            log.error("[CONCILIACION] Error conciliando {}", bic, e);
+            return ResultadoConciliacionDTO.builder()
+                    .codigoBic(bic)
+                    .estado(ERROR)
+                    .fechaConciliacion(LocalDateTime.now())
+                    .discrepancias(List.of(String.valueOf(e.getMessage())))
+                    .build();
+        }
+    }
+
+    private ResultadoConciliacionDTO conciliarCuentaEnTransaccion(String bic) {
+        CuentaTecnica cuenta = cuentaRepo.findByBic(bic)
+                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + bic));
+        Long puntoControl = cuenta.getIdUltimoMovimientoConciliado();
+        boolean apertura = cuenta.getSaldoConciliado() == null;
+
+        List<MovimientoConciliacion> nuevos = movimientoRepo.findParaConciliacion(cuenta.getIdCuenta(),
+                puntoControl != null ? puntoControl : 0L);
+        // Si la conciliación se atrasó, el original puede estar ya en el histórico
+        Set<UUID> originalesDebito = archivo.originalesDebito(cuenta.getIdCuenta(), nuevos);
+
+        Movimiento control = puntoControl != null ? movimientoRepo.findById(puntoControl).orElse(null) : null;
+        BigDecimal anterior = control != null ? control.getSaldoResultante() : null;
+        BigDecimal efectos = BigDecimal.ZERO;
+        BigDecimal excedente = BigDecimal.ZERO;
+        List<String> saltos = new ArrayList<>();
+        List<String> discrepancias = new ArrayList<>();
+
+        for (MovimientoConciliacion mov : nuevos) {
+            BigDecimal efecto = efecto(mov, originalesDebito);
+            if (anterior != null && mov.tipo() != TipoMovimiento.SETTLEMENT) {
+                BigDecimal brecha = mov.saldoResultante().subtract(anterior.add(efecto));
+                if (brecha.signum() > 0) {
+                    excedente = excedente.add(brecha);
+                    saltos.add("DISCONTINUIDAD en movimiento " + mov.idMovimiento()
+                            + ": el saldo resultante excede en " + brecha + " al esperado");
+                }
+            }
+            efectos = efectos.add(efecto);
+            anterior = mov.saldoResultante();
+        }
+        // Liberar o expirar una retención sube el disponible sin movimiento: los saltos
+        // hacia arriba se aceptan hasta lo liberado en el intervalo.
+        if (excedente.signum() > 0) {
+            LocalDateTime desde = control != null ? control.getFechaRegistro() : INICIO_HISTORIA;
+            BigDecimal liberado = retencionRepo.sumarLiberadoDesde(cuenta.getIdCuenta(), desde);
+            if (excedente.compareTo(liberado) > 0) {
+                discrepancias.addAll(saltos);
+                discrepancias.add("Saltos por " + excedente + " y solo " + liberado + " liberado de retenciones");
+            }
+        }
+
+        BigDecimal saldoActual = Centavos.aBigDecimal(
+                Centavos.sumar(cuenta.getSaldoDisponible(), cuenta.getFondosBloqueados()));
+        BigDecimal saldoEsperado = apertura ? saldoActual : cuenta.getSaldoConciliado().add(efectos);
+        if (saldoEsperado.compareTo(saldoActual) != 0) {
+            discrepancias.add("SALDO NO CUADRA: esperado " + saldoEsperado + ", actual " + saldoActual);
+        }
+
+        Long ultimoId = nuevos.isEmpty() ? puntoControl : nuevos.get(nuevos.size() - 1).idMovimiento();
+        LocalDateTime ahora = LocalDateTime.now();
+        String estado = !discrepancias.isEmpty() ? DISCREPANCIA : apertura ? APERTURA : CONCILIADA;
+        if (discrepancias.isEmpty()) {
+            cuentaRepo.actualizarConciliacion(cuenta.getIdCuenta(), ahora, saldoActual, ultimoId);
+        }
+
+        return ResultadoConciliacionDTO.builder()
+                .codigoBic(bic)
+                .estado(estado)
+                .movimientosRevisados(nuevos.size())
+                .saldoEsperado(saldoEsperado)
+                .saldoActual(saldoActual)
+                .idUltimoMovimiento(ultimoId)
+                .fechaConciliacion(ahora)
+                .discrepancias(discrepancias)
+                .build();
+    }
+
+    /**
+     * Efecto del movimiento sobre la posición total (disponible + bloqueado). También lo usa
+     * la reconstrucción de saldos históricos. {@code originalesDebito} son los débitos de la
+     * misma cuenta ({@link ArchivoMovimientos#originalesDebito(UUID, Collection)}).
+     */
+    static BigDecimal efecto(MovimientoConciliacion mov, Set<UUID> originalesDebito) {
+        return switch (mov.tipo()) {
+            case DEBIT -> mov.monto().negate();
+            case CREDIT, RECHARGE -> mov.monto();
+            case REVERSAL -> originalesDebito.contains(mov.referenciaId()) ? mov.monto() : mov.monto().negate();
+            // Se registra con el signo de la posición neta
+            case SETTLEMENT -> mov.monto();
+        };
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdown();
+    }
+}
@@ -1,279 +1,1135 @@
 package com.switchbank.mscontabilidad.servicio;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.switchbank.mscontabilidad.dto.CrearCuentaRequest;
 import com.switchbank.mscontabilidad.dto.CuentaDTO;
 import com.switchbank.mscontabilidad.dto.MovimientoDTO;
+import com.switchbank.mscontabilidad.dto.PaginaMovimientosDTO;
 import com.switchbank.mscontabilidad.dto.RegistroMovimientoRequest;
+import com.switchbank.mscontabilidad.dto.ResultadoLoteDTO;
+import com.switchbank.mscontabilidad.dto.ResultadoMovimientoDTO;
 import com.switchbank.mscontabilidad.dto.ReturnRequestDTO;
+import com.switchbank.mscontabilidad.excepcion.SaldoInsuficienteException;
+import com.switchbank.mscontabilidad.modelo.Centavos;
 import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import com.switchbank.mscontabilidad.modelo.EstadoRetencion;
 import com.switchbank.mscontabilidad.modelo.Movimiento;
+import com.switchbank.mscontabilidad.modelo.RegistroIdempotencia;
+import com.switchbank.mscontabilidad.modelo.Retencion;
 import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
 import com.switchbank.mscontabilidad.repositorio.CuentaTecnicaRepository;
 import com.switchbank.mscontabilidad.repositorio.MovimientoRepository;
+import com.switchbank.mscontabilidad.repositorio.RetencionRepository;
 import com.switchbank.mscontabilidad.mapper.ContabilidadMapper;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.time.LocalDateTime;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ContabilidadServicio {
 
+    private static final String ESTADO_APLICADO = "APLICADO";
+    private static final String ESTADO_RECHAZADO = "RECHAZADO";
+    private static final int MAX_TAMANO_PAGINA = 10_000;
+    // Parámetros por consulta IN al resolver lotes
+    private static final int TAMANO_TRAMO_IN = 1_000;
+
+    // Antigüedad máxima de un movimiento revertible
+    public static final int VENTANA_REVERSO_HORAS = 48;
+    private static final String FUERA_DE_VENTANA = "La transacción original es mayor a "
+            + VENTANA_REVERSO_HORAS + " horas, no se puede revertir.";
+
     private final CuentaTecnicaRepository cuentaRepo;
     private final MovimientoRepository movimientoRepo;
     private final ContabilidadMapper mapper;
+    private final MotorContabilizacion motor;
+    private final TransactionTemplate transaccion;
+    private final EntityManager entityManager;
+    private final DiarioContable diario;
+    private final FirmaIntegridad firma;
+    private final IndiceIdempotencia idempotencia;
+    private final CacheSaldos cacheSaldos;
+    private final RetencionRepository retencionRepo;
+    private final RuedaExpiracion ruedaExpiracion;
+    private final PoliticaReintentos reintentos;
+    private final BulkheadBd bulkhead;
+    private final MetricasContabilidad metricas;
+    private final ArchivoMovimientos archivo;
+    private final FeedMovimientos feed;
+    private final ReplicaLectura replica;
+
+    // Estado confirmado de cada cuenta, mantenido por su carril contable.
+    private final Map<String, CuentaTecnica> cuentasCalientes = new ConcurrentHashMap<>();
+
+    // Asientos confirmados por el diario y aún no aplicados en BD (cada lista solo la toca su carril).
+    private final Map<String, List<DiarioContable.Anexo>> pendientesDiario = new ConcurrentHashMap<>();
+
+    @Value("${contabilidad.diario.drenado-lote:1000}")
+    private int loteDrenado;
+
+    @Value("${contabilidad.motor.estado-caliente:true}")
+    private boolean estadoCaliente;
+
+    @Value("${contabilidad.retenciones.ttl-segundos:300}")
+    private long ttlRetencion;
+
+    @Value("${contabilidad.retenciones.ttl-max-segundos:86400}")
+    private long ttlMaximoRetencion;
 
-    @Transactional
     public CuentaDTO crearCuenta(CrearCuentaRequest req) {
-        // Idempotencia: Si ya existe, retornar la existente
-        return cuentaRepo.findByBic(req.getCodigoBic())
-                .map(mapper::toDTO)
-                .orElseGet(() -> {
-                    CuentaTecnica cuenta = new CuentaTecnica(req.getCodigoBic());
-                    cuenta.setFirmaIntegridad(calcularHash(cuenta));
-                    return mapper.toDTO(cuentaRepo.save(cuenta));
-                });
+        return motor.ejecutar(req.getCodigoBic(), () -> {
+            CuentaDTO creada = transaccion.execute(status ->
+                    // Idempotencia: Si ya existe, retornar la existente
+                    cuentaRepo.findByBic(req.getCodigoBic())
+                            .map(mapper::toDTO)
+                            .orElseGet(() -> {
+                                CuentaTecnica cuenta = new CuentaTecnica(req.getCodigoBic());
+                                cuenta.setFirmaIntegridad(calcularHash(cuenta));
+                                return mapper.toDTO(cuentaRepo.save(cuenta));
+                            }));
+            cacheSaldos.invalidar(req.getCodigoBic());
+            return creada;
+        });
     }
 
-    @Transactional
     public CuentaDTO registrarMovimiento(RegistroMovimientoRequest req) {
-        CuentaTecnica cuenta = cuentaRepo.findByBic(req.getCodigoBic())
-                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + req.getCodigoBic()));
-
-        validarIntegridad(cuenta);
+        return metricas.medir(MetricasContabilidad.OP_REGISTRO, req.getCodigoBic(), () -> aplicarMovimiento(req));
+    }
 
-        TipoMovimiento tipo = TipoMovimiento.valueOf(req.getTipo());
+    private CuentaDTO aplicarMovimiento(RegistroMovimientoRequest req) {
+        if (diario.isHabilitado()) {
+            return registrarEnDiario(req);
+        }
+        String bic = req.getCodigoBic();
+        long monto = Centavos.de(req.getMonto());
+        return contabilizar(bic, cuenta -> idempotente(IndiceIdempotencia.OP_REGISTRO, bic, req.getIdInstruccion(), () -> {
+            TipoMovimiento tipo = TipoMovimiento.valueOf(req.getTipo());
 
-        if (tipo == TipoMovimiento.DEBIT) {
-            if (cuenta.getSaldoDisponible().compareTo(req.getMonto()) < 0) {
-                throw new RuntimeException("FONDOS INSUFICIENTES para el banco: " + req.getCodigoBic());
+            if (tipo == TipoMovimiento.DEBIT) {
+                if (cuenta.getSaldoDisponible() < monto) {
+                    throw new SaldoInsuficienteException("FONDOS INSUFICIENTES para el banco: " + req.getCodigoBic());
+                }
+                cuenta.setSaldoDisponible(Centavos.restar(cuenta.getSaldoDisponible(), monto));
+            } else {
+                cuenta.setSaldoDisponible(Centavos.sumar(cuenta.getSaldoDisponible(), monto));
             }
-            cuenta.setSaldoDisponible(cuenta.getSaldoDisponible().subtract(req.getMonto()));
-        } else {
-            cuenta.setSaldoDisponible(cuenta.getSaldoDisponible().add(req.getMonto()));
+
+            Movimiento mov = new Movimiento();
+            mov.setCuenta(cuenta);
+            mov.setIdInstruccion(req.getIdInstruccion());
+            mov.setTipo(tipo);
+            mov.setMonto(req.getMonto());
+            mov.setSaldoResultante(Centavos.aBigDecimal(cuenta.getSaldoDisponible()));
+            mov.setFechaRegistro(LocalDateTime.now());
+            movimientoRepo.save(mov);
+            feed.registrar(mov);
+
+            return respuesta(cuenta);
+        }));
+    }
+
+    /**
+     * Registra un lote de movimientos. Los ítems se agrupan por BIC y cada grupo se aplica
+     * en el carril de su cuenta con una sola transacción: inserts en batch y una única
+     * actualización de saldo por BIC. Un ítem rechazado no invalida al resto del lote.
+     */
+    public ResultadoLoteDTO registrarMovimientosLote(List<RegistroMovimientoRequest> lote) {
+        return metricas.medir(MetricasContabilidad.OP_LOTE, MetricasContabilidad.VARIOS, () -> aplicarLote(lote));
+    }
+
+    private ResultadoLoteDTO aplicarLote(List<RegistroMovimientoRequest> lote) {
+        long inicio = System.nanoTime();
+        metricas.tamanoLote(lote.size());
+
+        Map<String, List<Integer>> indicesPorBic = new LinkedHashMap<>();
+        for (int i = 0; i < lote.size(); i++) {
+            indicesPorBic.computeIfAbsent(lote.get(i).getCodigoBic(), k -> new ArrayList<>()).add(i);
         }
 
-        Movimiento mov = new Movimiento();
-        mov.setCuenta(cuenta);
-        mov.setIdInstruccion(req.getIdInstruccion());
-        mov.setTipo(tipo);
-        mov.setMonto(req.getMonto());
-        mov.setSaldoResultante(cuenta.getSaldoDisponible());
-        mov.setFechaRegistro(LocalDateTime.now());
-        movimientoRepo.save(mov);
+        ResultadoMovimientoDTO[] resultados = new ResultadoMovimientoDTO[lote.size()];
+        Map<String, CompletableFuture<List<ResultadoMovimientoDTO>>> pendientes = new LinkedHashMap<>();
+        indicesPorBic.forEach((bic, indices) -> pendientes.put(bic,
+                motor.enviar(bic, () -> aplicarGrupo(bic, indices, lote))));
 
-        cuenta.setFirmaIntegridad(calcularHash(cuenta));
-        CuentaTecnica saved = cuentaRepo.save(cuenta);
+        pendientes.forEach((bic, futuro) -> {
+            try {
+                futuro.join().forEach(r -> resultados[r.getIndice()] = r);
+            } catch (RuntimeException e) {
+                String mensaje = MotorContabilizacion.desenvolver(e).getMessage();
+                for (Integer i : indicesPorBic.get(bic)) {
+                    resultados[i] = rechazo(i, lote.get(i), mensaje);
+                }
+            }
+        });
+
+        long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+        int aplicados = (int) Arrays.stream(resultados).filter(r -> ESTADO_APLICADO.equals(r.getEstado())).count();
+        long porSegundo = duracionMs > 0 ? lote.size() * 1000L / duracionMs : lote.size() * 1000L;
+        log.info("[LOTE] {} movimientos ({} BIC) en {} ms -> {} mov/s", lote.size(), indicesPorBic.size(),
+                duracionMs, porSegundo);
 
-        return mapper.toDTO(saved);
+        return ResultadoLoteDTO.builder()
+                .total(lote.size())
+                .aplicados(aplicados)
+                .rechazados(lote.size() - aplicados)
+                .duracionMs(duracionMs)
+                .movimientosPorSegundo(porSegundo)
+                .resultados(Arrays.asList(resultados))
+                .build();
+    }
+
+    private List<ResultadoMovimientoDTO> aplicarGrupo(String bic, List<Integer> indices,
+            List<RegistroMovimientoRequest> lote) {
+        return contabilizar(bic, cuenta -> {
+            List<ResultadoMovimientoDTO> resultados = new ArrayList<>(indices.size());
+            List<Movimiento> movimientos = new ArrayList<>(indices.size());
+            List<RegistroIdempotencia> registros = new ArrayList<>(indices.size());
+            Map<UUID, CuentaDTO> aplicadasEnLote = new HashMap<>();
+            LocalDateTime ahora = LocalDateTime.now();
+
+            for (Integer i : indices) {
+                RegistroMovimientoRequest req = lote.get(i);
+                CuentaDTO previa = req.getIdInstruccion() == null ? null
+                        : aplicadasEnLote.get(req.getIdInstruccion());
+                if (previa == null) {
+                    previa = idempotencia.buscar(IndiceIdempotencia.OP_REGISTRO, bic, req.getIdInstruccion())
+                            .orElse(null);
+                }
+                if (previa != null) {
+                    resultados.add(ResultadoMovimientoDTO.builder()
+                            .indice(i)
+                            .idInstruccion(req.getIdInstruccion())
+                            .codigoBic(bic)
+                            .estado(ESTADO_APLICADO)
+                            .mensaje("DUPLICADO: instrucción aplicada previamente")
+                            .saldoResultante(previa.getSaldoDisponible())
+                            .build());
+                    continue;
+                }
+                TipoMovimiento tipo;
+                try {
+                    tipo = TipoMovimiento.valueOf(req.getTipo());
+                } catch (RuntimeException e) {
+                    resultados.add(rechazo(i, req, "Tipo de movimiento inválido: " + req.getTipo()));
+                    continue;
+                }
+                if (req.getMonto() == null || req.getMonto().signum() <= 0 || req.getIdInstruccion() == null) {
+                    resultados.add(rechazo(i, req, "Monto e idInstruccion son obligatorios"));
+                    continue;
+                }
+                long monto;
+                long saldo;
+                try {
+                    monto = Centavos.de(req.getMonto());
+                    if (tipo == TipoMovimiento.DEBIT) {
+                        if (cuenta.getSaldoDisponible() < monto) {
+                            metricas.saldoInsuficiente(MetricasContabilidad.OP_LOTE, bic);
+                            resultados.add(rechazo(i, req, "FONDOS INSUFICIENTES para el banco: " + bic));
+                            continue;
+                        }
+                        saldo = Centavos.restar(cuenta.getSaldoDisponible(), monto);
+                    } else {
+                        saldo = Centavos.sumar(cuenta.getSaldoDisponible(), monto);
+                    }
+                } catch (RuntimeException e) {
+                    resultados.add(rechazo(i, req, e.getMessage()));
+                    continue;
+                }
+                cuenta.setSaldoDisponible(saldo);
+                BigDecimal saldoResultante = Centavos.aBigDecimal(saldo);
+
+                Movimiento mov = new Movimiento();
+                mov.setCuenta(cuenta);
+                mov.setIdInstruccion(req.getIdInstruccion());
+                mov.setTipo(tipo);
+                mov.setMonto(req.getMonto());
+                mov.setSaldoResultante(saldoResultante);
+                mov.setFechaRegistro(ahora);
+                movimientos.add(mov);
+
+                CuentaDTO dto = respuesta(cuenta);
+                aplicadasEnLote.put(req.getIdInstruccion(), dto);
+                registros.add(idempotencia.nuevoRegistro(IndiceIdempotencia.OP_REGISTRO, bic,
+                        req.getIdInstruccion(), dto));
+
+                resultados.add(ResultadoMovimientoDTO.builder()
+                        .indice(i)
+                        .idInstruccion(req.getIdInstruccion())
+                        .codigoBic(bic)
+                        .estado(ESTADO_APLICADO)
+                        .saldoResultante(saldoResultante)
+                        .build());
+            }
+
+            movimientoRepo.saveAll(movimientos);
+            feed.registrarTodos(movimientos);
+            idempotencia.registrarTodos(registros);
+            return resultados;
+        });
+    }
+
+    private static ResultadoMovimientoDTO rechazo(int indice, RegistroMovimientoRequest req, String mensaje) {
+        return ResultadoMovimientoDTO.builder()
+                .indice(indice)
+                .idInstruccion(req.getIdInstruccion())
+                .codigoBic(req.getCodigoBic())
+                .estado(ESTADO_RECHAZADO)
+                .mensaje(mensaje)
+                .build();
     }
 
     public CuentaDTO obtenerCuenta(String bic) {
-        CuentaTecnica cuenta = cuentaRepo.findByBic(bic)
-                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada"));
-        return mapper.toDTO(cuenta);
+        CuentaDTO cuenta = cacheSaldos.obtener(bic, this::cargarCuenta);
+        if (cuenta == null) {
+            throw new RuntimeException("Cuenta no encontrada");
+        }
+        return cuenta;
     }
 
-    @Transactional(readOnly = true)
     public boolean verificarSaldo(String bic, BigDecimal monto) {
-        return cuentaRepo.findByBic(bic)
-                .map(cuenta -> cuenta.getSaldoDisponible().compareTo(monto) >= 0)
-                .orElse(false);
+        CuentaDTO cuenta = cacheSaldos.obtener(bic, this::cargarCuenta);
+        return cuenta != null && cuenta.getSaldoDisponible().compareTo(monto) >= 0;
     }
 
-    @Transactional
-    public CuentaDTO recargarSaldo(String bic, BigDecimal monto, UUID idInstruccion) {
-
-        if (!movimientoRepo.findByIdInstruccion(idInstruccion).isEmpty()) {
-            CuentaTecnica cuenta = cuentaRepo.findByBic(bic)
-                    .orElseThrow(() -> new RuntimeException("Cuenta no encontrada"));
-            return mapper.toDTO(cuenta);
+    // Fallo de caché: el estado caliente del carril es el último confirmado (y en modo
+    // diario, más nuevo que la BD); sin él se lee la fila.
+    private CuentaDTO cargarCuenta(String bic) {
+        CuentaTecnica caliente = cuentasCalientes.get(bic);
+        if (caliente != null) {
+            return mapper.toDTO(caliente);
         }
+        return bulkhead.ejecutar(bic,
+                () -> replica.enReplica(bic, () -> cuentaRepo.findByBic(bic).map(mapper::toDTO).orElse(null)));
+    }
 
-        CuentaTecnica cuenta = cuentaRepo.findByBic(bic)
-                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + bic));
-
-        validarIntegridad(cuenta);
+    public CuentaDTO recargarSaldo(String bic, BigDecimal monto, UUID idInstruccion) {
+        return metricas.medir(MetricasContabilidad.OP_RECARGA, bic, () -> recargar(bic, monto, idInstruccion));
+    }
 
-        cuenta.setSaldoDisponible(cuenta.getSaldoDisponible().add(monto));
+    private CuentaDTO recargar(String bic, BigDecimal monto, UUID idInstruccion) {
+        long centavos = Centavos.de(monto);
+        return contabilizar(bic, cuenta -> idempotente(IndiceIdempotencia.OP_RECARGA, bic, idInstruccion, () -> {
+            cuenta.setSaldoDisponible(Centavos.sumar(cuenta.getSaldoDisponible(), centavos));
 
-        Movimiento mov = new Movimiento();
-        mov.setCuenta(cuenta);
-        mov.setIdInstruccion(idInstruccion);
-        mov.setTipo(TipoMovimiento.RECHARGE);
-        mov.setMonto(monto);
-        mov.setSaldoResultante(cuenta.getSaldoDisponible());
-        mov.setFechaRegistro(LocalDateTime.now());
-        movimientoRepo.save(mov);
+            Movimiento mov = new Movimiento();
+            mov.setCuenta(cuenta);
+            mov.setIdInstruccion(idInstruccion);
+            mov.setTipo(TipoMovimiento.RECHARGE);
+            mov.setMonto(monto);
+            mov.setSaldoResultante(Centavos.aBigDecimal(cuenta.getSaldoDisponible()));
+            mov.setFechaRegistro(LocalDateTime.now());
+            movimientoRepo.save(mov);
+            feed.registrar(mov);
 
-        cuenta.setFirmaIntegridad(calcularHash(cuenta));
-        return mapper.toDTO(cuentaRepo.save(cuenta));
+            return respuesta(cuenta);
+        }));
     }
 
-    @Transactional
     public CuentaDTO revertirTransaccion(ReturnRequestDTO req) {
+        MetricasContabilidad.Medicion medicion = metricas.iniciar(MetricasContabilidad.OP_REVERSO, null);
+        try {
+            CuentaDTO respuesta = revertir(req, medicion);
+            medicion.exito();
+            return respuesta;
+        } catch (RuntimeException e) {
+            medicion.fallo(e);
+            throw e;
+        }
+    }
+
+    private CuentaDTO revertir(ReturnRequestDTO req, MetricasContabilidad.Medicion medicion) {
         String originalIdStr = req.getBody().getOriginalInstructionId();
         if (originalIdStr == null) {
             throw new RuntimeException("originalInstructionId es obligatorio");
         }
         UUID originalInstructionId = UUID.fromString(originalIdStr);
 
-        List<Movimiento> encontrados = movimientoRepo.findByIdInstruccion(originalInstructionId);
+        // Se resuelve una sola fila original (con su cuenta): su BIC elige el carril y la cuenta
+        // a revertir. Ante varios tramos gana el primero, igual que en el lote de devoluciones,
+        // así ambos caminos serializan la comprobación de reversión única en el mismo carril.
+        // Solo el nivel caliente: lo archivado ya está fuera de la ventana de reverso.
+        List<MovimientoDTO> encontrados = movimientoRepo.findDTOByIdInstruccion(originalInstructionId,
+                PageRequest.of(0, 1));
         if (encontrados.isEmpty()) {
+            if (archivo.archivado(originalInstructionId)) {
+                throw new RuntimeException(FUERA_DE_VENTANA);
+            }
             throw new RuntimeException("Transacción original no encontrada: " + originalInstructionId);
         }
-        Movimiento original = encontrados.get(0);
+        MovimientoDTO original = encontrados.get(0);
 
-        if (original.getFechaRegistro().isBefore(LocalDateTime.now().minusHours(48))) {
-            throw new RuntimeException("La transacción original es mayor a 48 horas, no se puede revertir.");
-        }
-        if (movimientoRepo.existsByTipoAndReferenciaId(TipoMovimiento.REVERSAL, originalInstructionId)) {
-            throw new RuntimeException("DUPLICADO: Esta transacción ya ha sido revertida anteriormente.");
-        }
+        String bic = original.getCodigoBicCuenta();
+        medicion.bic(bic);
+        String returnIdStr = req.getBody().getReturnInstructionId();
+        UUID returnInstructionId = returnIdStr != null ? UUID.fromString(returnIdStr) : null;
 
-        BigDecimal montoSolicitado = req.getBody().getReturnAmount().getValue();
-        if (montoSolicitado.compareTo(original.getMonto()) != 0) {
-            throw new RuntimeException("El monto a revertir (" + montoSolicitado + ") no coincide con el original ("
-                    + original.getMonto() + ")");
-        }
+        return contabilizar(bic, cuenta -> idempotente(IndiceIdempotencia.OP_REVERSO, bic, returnInstructionId, () -> {
+            if (original.getFechaRegistro().isBefore(LocalDateTime.now().minusHours(VENTANA_REVERSO_HORAS))) {
+                throw new RuntimeException(FUERA_DE_VENTANA);
+            }
+            if (movimientoRepo.existsByTipoAndReferenciaId(TipoMovimiento.REVERSAL, originalInstructionId)) {
+                throw new RuntimeException("DUPLICADO: Esta transacción ya ha sido revertida anteriormente.");
+            }
 
-        CuentaTecnica cuenta = original.getCuenta();
+            BigDecimal montoSolicitado = req.getBody().getReturnAmount().getValue();
+            if (montoSolicitado.compareTo(original.getMonto()) != 0) {
+                throw new RuntimeException("El monto a revertir (" + montoSolicitado
+                        + ") no coincide con el original (" + original.getMonto() + ")");
+            }
 
-        validarIntegridad(cuenta);
+            TipoMovimiento tipoOriginal = TipoMovimiento.valueOf(original.getTipo());
+            if (tipoOriginal == TipoMovimiento.REVERSAL) {
+                throw new RuntimeException("No se puede revertir una reversión.");
+            }
+
+            long monto = Centavos.de(montoSolicitado);
+            if (tipoOriginal == TipoMovimiento.DEBIT) {
+                cuenta.setSaldoDisponible(Centavos.sumar(cuenta.getSaldoDisponible(), monto));
+            } else {
+                if (cuenta.getSaldoDisponible() < monto) {
+                    throw new SaldoInsuficienteException("Fondos insuficientes para revertir el crédito.");
+                }
+                cuenta.setSaldoDisponible(Centavos.restar(cuenta.getSaldoDisponible(), monto));
+            }
+
+            Movimiento reverso = new Movimiento();
+            reverso.setCuenta(cuenta);
+
+            // Igual que en las devoluciones en bloque: un id ajeno ya usado se rechaza, no se sustituye
+            if (returnInstructionId != null && (returnInstructionId.equals(originalInstructionId)
+                    || !movimientoRepo.findByIdInstruccion(returnInstructionId).isEmpty()
+                    || archivo.archivado(returnInstructionId))) {
+                throw new RuntimeException("returnInstructionId ya usado por otro movimiento: " + returnInstructionId);
+            }
+            reverso.setIdInstruccion(returnInstructionId != null ? returnInstructionId : UUID.randomUUID());
 
-        TipoMovimiento tipoOriginal = original.getTipo();
-        if (tipoOriginal == TipoMovimiento.REVERSAL) {
-            throw new RuntimeException("No se puede revertir una reversión.");
+            reverso.setReferenciaId(originalInstructionId);
+            reverso.setTipo(TipoMovimiento.REVERSAL);
+            reverso.setMonto(montoSolicitado);
+            reverso.setSaldoResultante(Centavos.aBigDecimal(cuenta.getSaldoDisponible()));
+            reverso.setFechaRegistro(LocalDateTime.now());
+
+            movimientoRepo.save(reverso);
+            feed.registrar(reverso);
+
+            return respuesta(cuenta);
+        }));
+    }
+
+    /**
+     * Devoluciones pacs.004 en bloque, con resultado por ítem y las mismas reglas que el
+     * reverso individual (ventana de 48 h, monto igual al original, una sola reversión).
+     *
+     * Los originales se resuelven con una consulta por tramo antes de entrar a los carriles.
+     * Cada cuenta aplica sus devoluciones en orden, en su carril y en una sola transacción,
+     * donde también comprueba en bloque qué originales ya tienen reversión; las cuentas
+     * avanzan en paralelo.
+     */
+    public ResultadoLoteDTO revertirTransaccionesLote(List<ReturnRequestDTO> lote) {
+        return metricas.medir(MetricasContabilidad.OP_REVERSO_LOTE, MetricasContabilidad.VARIOS,
+                () -> revertirLote(lote));
+    }
+
+    private ResultadoLoteDTO revertirLote(List<ReturnRequestDTO> lote) {
+        long inicio = System.nanoTime();
+        metricas.tamanoLote(lote.size());
+        ResultadoMovimientoDTO[] resultados = new ResultadoMovimientoDTO[lote.size()];
+
+        List<Devolucion> devoluciones = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            try {
+                devoluciones.add(Devolucion.de(i, lote.get(i)));
+            } catch (RuntimeException e) {
+                resultados[i] = rechazoDevolucion(i, null, null, e.getMessage());
+            }
         }
 
-        if (tipoOriginal == TipoMovimiento.DEBIT) {
-            cuenta.setSaldoDisponible(cuenta.getSaldoDisponible().add(montoSolicitado));
-        } else {
-            if (cuenta.getSaldoDisponible().compareTo(montoSolicitado) < 0) {
-                throw new RuntimeException("Fondos insuficientes para revertir el crédito.");
+        Set<UUID> idsOriginales = new LinkedHashSet<>();
+        devoluciones.forEach(d -> idsOriginales.add(d.original()));
+        Map<UUID, MovimientoDTO> originales = bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> resolverOriginales(idsOriginales));
+        Set<UUID> archivados = bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> archivo.archivados(idsOriginales.stream()
+                .filter(id -> !originales.containsKey(id))
+                .toList()));
+
+        Map<String, List<Devolucion>> porBic = new LinkedHashMap<>();
+        for (Devolucion d : devoluciones) {
+            MovimientoDTO original = originales.get(d.original());
+            if (original == null) {
+                resultados[d.indice()] = rechazoDevolucion(d.indice(), d.idDevolucion(), null,
+                        archivados.contains(d.original()) ? FUERA_DE_VENTANA
+                                : "Transacción original no encontrada: " + d.original());
+                continue;
             }
-            cuenta.setSaldoDisponible(cuenta.getSaldoDisponible().subtract(montoSolicitado));
+            porBic.computeIfAbsent(original.getCodigoBicCuenta(), k -> new ArrayList<>()).add(d);
         }
 
-        Movimiento reverso = new Movimiento();
-        reverso.setCuenta(cuenta);
+        Map<String, CompletableFuture<List<ResultadoMovimientoDTO>>> pendientes = new LinkedHashMap<>();
+        porBic.forEach((bic, grupo) -> pendientes.put(bic,
+                motor.enviar(bic, () -> revertirGrupo(bic, grupo, originales))));
 
-        String returnIdStr = req.getBody().getReturnInstructionId();
-        UUID returnUuid = (returnIdStr != null) ? UUID.fromString(returnIdStr) : UUID.randomUUID();
+        pendientes.forEach((bic, futuro) -> {
+            try {
+                futuro.join().forEach(r -> resultados[r.getIndice()] = r);
+            } catch (RuntimeException e) {
+                String mensaje = MotorContabilizacion.desenvolver(e).getMessage();
+                for (Devolucion d : porBic.get(bic)) {
+                    resultados[d.indice()] = rechazoDevolucion(d.indice(), d.idDevolucion(), bic, mensaje);
+                }
+            }
+        });
+
+        long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+        int aplicados = (int) Arrays.stream(resultados).filter(r -> ESTADO_APLICADO.equals(r.getEstado())).count();
+        long porSegundo = duracionMs > 0 ? lote.size() * 1000L / duracionMs : lote.size() * 1000L;
+        log.info("[LOTE] {} devoluciones ({} BIC) en {} ms -> {} dev/s", lote.size(), porBic.size(),
+                duracionMs, porSegundo);
 
-        if (returnUuid.equals(originalInstructionId) || !movimientoRepo.findByIdInstruccion(returnUuid).isEmpty()) {
-            returnUuid = UUID.randomUUID();
+        return ResultadoLoteDTO.builder()
+                .total(lote.size())
+                .aplicados(aplicados)
+                .rechazados(lote.size() - aplicados)
+                .duracionMs(duracionMs)
+                .movimientosPorSegundo(porSegundo)
+                .resultados(Arrays.asList(resultados))
+                .build();
+    }
+
+    // Solo el nivel caliente, igual que el reverso individual
+    private Map<UUID, MovimientoDTO> resolverOriginales(Collection<UUID> ids) {
+        List<UUID> todos = new ArrayList<>(ids);
+        Map<UUID, MovimientoDTO> originales = new HashMap<>();
+        for (int i = 0; i < todos.size(); i += TAMANO_TRAMO_IN) {
+            movimientoRepo.findDTOByIdInstruccionIn(todos.subList(i, Math.min(i + TAMANO_TRAMO_IN, todos.size())))
+                    .forEach(m -> originales.putIfAbsent(m.getIdInstruccion(), m));
         }
-        reverso.setIdInstruccion(returnUuid);
+        return originales;
+    }
+
+    private List<ResultadoMovimientoDTO> revertirGrupo(String bic, List<Devolucion> grupo,
+            Map<UUID, MovimientoDTO> originales) {
+        return contabilizar(bic, cuenta -> {
+            // En el carril: ningún reverso de esta cuenta puede confirmarse en paralelo
+            Set<UUID> revertidos = new HashSet<>(movimientoRepo.findReferenciasRevertidas(
+                    grupo.stream().map(Devolucion::original).distinct().toList()));
+            List<UUID> idsDevolucion = grupo.stream().map(Devolucion::idDevolucion).filter(Objects::nonNull).toList();
+            Set<UUID> usados = new HashSet<>(archivo.archivados(idsDevolucion));
+            if (!idsDevolucion.isEmpty()) {
+                usados.addAll(movimientoRepo.findIdInstruccionExistentes(idsDevolucion));
+            }
 
-        reverso.setReferenciaId(originalInstructionId);
-        reverso.setTipo(TipoMovimiento.REVERSAL);
-        reverso.setMonto(montoSolicitado);
-        reverso.setSaldoResultante(cuenta.getSaldoDisponible());
-        reverso.setFechaRegistro(LocalDateTime.now());
+            List<ResultadoMovimientoDTO> resultados = new ArrayList<>(grupo.size());
+            List<Movimiento> reversos = new ArrayList<>(grupo.size());
+            List<RegistroIdempotencia> registros = new ArrayList<>(grupo.size());
+            Map<UUID, CuentaDTO> aplicadasEnLote = new HashMap<>();
+            LocalDateTime ahora = LocalDateTime.now();
+            LocalDateTime limite = ahora.minusHours(VENTANA_REVERSO_HORAS);
 
-        movimientoRepo.save(reverso);
+            for (Devolucion d : grupo) {
+                UUID idDevolucion = d.idDevolucion();
+                CuentaDTO previa = idDevolucion == null ? null : aplicadasEnLote.get(idDevolucion);
+                if (previa == null) {
+                    previa = idempotencia.buscar(IndiceIdempotencia.OP_REVERSO, bic, idDevolucion).orElse(null);
+                }
+                if (previa != null) {
+                    resultados.add(ResultadoMovimientoDTO.builder()
+                            .indice(d.indice())
+                            .idInstruccion(idDevolucion)
+                            .codigoBic(bic)
+                            .estado(ESTADO_APLICADO)
+                            .mensaje("DUPLICADO: devolución aplicada previamente")
+                            .saldoResultante(previa.getSaldoDisponible())
+                            .build());
+                    continue;
+                }
 
-        cuenta.setFirmaIntegridad(calcularHash(cuenta));
-        return mapper.toDTO(cuentaRepo.save(cuenta));
+                MovimientoDTO original = originales.get(d.original());
+                String motivo = null;
+                if (original.getFechaRegistro().isBefore(limite)) {
+                    motivo = FUERA_DE_VENTANA;
+                } else if (revertidos.contains(d.original())) {
+                    motivo = "DUPLICADO: Esta transacción ya ha sido revertida anteriormente.";
+                } else if (d.monto().compareTo(original.getMonto()) != 0) {
+                    motivo = "El monto a revertir (" + d.monto() + ") no coincide con el original ("
+                            + original.getMonto() + ")";
+                } else if (TipoMovimiento.REVERSAL.name().equals(original.getTipo())) {
+                    motivo = "No se puede revertir una reversión.";
+                } else if (idDevolucion != null && (idDevolucion.equals(d.original()) || usados.contains(idDevolucion))) {
+                    motivo = "returnInstructionId ya usado por otro movimiento: " + idDevolucion;
+                }
+                if (motivo != null) {
+                    resultados.add(rechazoDevolucion(d.indice(), idDevolucion, bic, motivo));
+                    continue;
+                }
+
+                long saldo;
+                try {
+                    long monto = Centavos.de(d.monto());
+                    if (TipoMovimiento.DEBIT.name().equals(original.getTipo())) {
+                        saldo = Centavos.sumar(cuenta.getSaldoDisponible(), monto);
+                    } else {
+                        if (cuenta.getSaldoDisponible() < monto) {
+                            metricas.saldoInsuficiente(MetricasContabilidad.OP_REVERSO_LOTE, bic);
+                            resultados.add(rechazoDevolucion(d.indice(), idDevolucion, bic,
+                                    "Fondos insuficientes para revertir el crédito."));
+                            continue;
+                        }
+                        saldo = Centavos.restar(cuenta.getSaldoDisponible(), monto);
+                    }
+                } catch (RuntimeException e) {
+                    resultados.add(rechazoDevolucion(d.indice(), idDevolucion, bic, e.getMessage()));
+                    continue;
+                }
+                cuenta.setSaldoDisponible(saldo);
+                BigDecimal saldoResultante = Centavos.aBigDecimal(saldo);
+
+                Movimiento reverso = new Movimiento();
+                reverso.setCuenta(cuenta);
+                reverso.setIdInstruccion(idDevolucion != null ? idDevolucion : UUID.randomUUID());
+                reverso.setReferenciaId(d.original());
+                reverso.setTipo(TipoMovimiento.REVERSAL);
+                reverso.setMonto(d.monto());
+                reverso.setSaldoResultante(saldoResultante);
+                reverso.setFechaRegistro(ahora);
+                reversos.add(reverso);
+                revertidos.add(d.original());
+
+                if (idDevolucion != null) {
+                    CuentaDTO dto = respuesta(cuenta);
+                    aplicadasEnLote.put(idDevolucion, dto);
+                    registros.add(idempotencia.nuevoRegistro(IndiceIdempotencia.OP_REVERSO, bic, idDevolucion, dto));
+                }
+                resultados.add(ResultadoMovimientoDTO.builder()
+                        .indice(d.indice())
+                        .idInstruccion(reverso.getIdInstruccion())
+                        .codigoBic(bic)
+                        .estado(ESTADO_APLICADO)
+                        .saldoResultante(saldoResultante)
+                        .build());
+            }
+
+            movimientoRepo.saveAll(reversos);
+            feed.registrarTodos(reversos);
+            idempotencia.registrarTodos(registros);
+            return resultados;
+        });
+    }
+
+    private static ResultadoMovimientoDTO rechazoDevolucion(int indice, UUID idDevolucion, String bic, String mensaje) {
+        return ResultadoMovimientoDTO.builder()
+                .indice(indice)
+                .idInstruccion(idDevolucion)
+                .codigoBic(bic)
+                .estado(ESTADO_RECHAZADO)
+                .mensaje(mensaje)
+                .build();
+    }
+
+    /**
+     * Ítem de un lote de devoluciones ya validado en su forma.
+     */
+    private record Devolucion(int indice, UUID original, UUID idDevolucion, BigDecimal monto) {
+
+        static Devolucion de(int indice, ReturnRequestDTO req) {
+            ReturnRequestDTO.Body body = req.getBody();
+            if (body == null || body.getOriginalInstructionId() == null) {
+                throw new RuntimeException("originalInstructionId es obligatorio");
+            }
+            if (body.getReturnAmount() == null || body.getReturnAmount().getValue() == null) {
+                throw new RuntimeException("returnAmount es obligatorio");
+            }
+            return new Devolucion(indice,
+                    uuid(body.getOriginalInstructionId()),
+                    body.getReturnInstructionId() != null ? uuid(body.getReturnInstructionId()) : null,
+                    body.getReturnAmount().getValue());
+        }
+
+        private static UUID uuid(String valor) {
+            try {
+                return UUID.fromString(valor);
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Identificador de instrucción inválido: " + valor);
+            }
+        }
     }
 
     @Transactional(readOnly = true)
     public List<MovimientoDTO> obtenerMovimientosPorRango(LocalDateTime start, LocalDateTime end) {
-        List<Movimiento> movimientos = movimientoRepo.findByFechaRegistroBetween(start, end);
-        return mapper.toDTOList(movimientos);
+        return replica.enReplica(() -> archivo.rango(start, end));
+    }
+
+    /**
+     * Recorre el rango con un cursor del servidor por nivel (caliente e histórico), entregando
+     * cada movimiento al consumidor sin materializar la lista completa.
+     */
+    @Transactional(readOnly = true)
+    public long transmitirMovimientosPorRango(LocalDateTime start, LocalDateTime end,
+            Consumer<MovimientoDTO> consumidor) {
+        return replica.enReplica(() -> archivo.recorrerRango(start, end, consumidor));
+    }
+
+    @Transactional(readOnly = true)
+    public PaginaMovimientosDTO obtenerPaginaMovimientos(LocalDateTime start, LocalDateTime end,
+            LocalDateTime despuesFecha, Long despuesId, int limite) {
+        int tamano = Math.max(1, Math.min(limite, MAX_TAMANO_PAGINA));
+        List<MovimientoDTO> filas = replica.enReplica(() -> archivo.rangoDespuesDe(start, end,
+                despuesFecha != null ? despuesFecha : start,
+                despuesId != null ? despuesId : Long.MIN_VALUE,
+                tamano + 1));
+
+        boolean hayMas = filas.size() > tamano;
+        List<MovimientoDTO> pagina = hayMas ? filas.subList(0, tamano) : filas;
+        MovimientoDTO ultimo = pagina.isEmpty() ? null : pagina.get(pagina.size() - 1);
+        return PaginaMovimientosDTO.builder()
+                .movimientos(pagina)
+                .hayMas(hayMas)
+                .siguienteFecha(ultimo != null ? ultimo.getFechaRegistro() : null)
+                .siguienteId(ultimo != null ? ultimo.getId() : null)
+                .build();
     }
 
-    @Transactional
     public CuentaDTO reservarFondos(RegistroMovimientoRequest req) {
-        CuentaTecnica cuenta = cuentaRepo.findByBic(req.getCodigoBic())
-                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + req.getCodigoBic()));
+        return reservarFondos(req, null);
+    }
 
-        validarIntegridad(cuenta);
+    /**
+     * Bloquea fondos y registra la retención correspondiente, que expira tras
+     * {@code ttlSegundos} (o el TTL por defecto) si no se captura ni libera antes.
+     */
+    public CuentaDTO reservarFondos(RegistroMovimientoRequest req, Long ttlSegundos) {
+        return metricas.medir(MetricasContabilidad.OP_RESERVA, req.getCodigoBic(), () -> reservar(req, ttlSegundos));
+    }
 
-        if (cuenta.getSaldoDisponible().compareTo(req.getMonto()) < 0) {
-            throw new RuntimeException("FONDOS INSUFICIENTES para reservar: " + req.getCodigoBic());
+    private CuentaDTO reservar(RegistroMovimientoRequest req, Long ttlSegundos) {
+        String bic = req.getCodigoBic();
+        long ttl = ttlSegundos != null ? ttlSegundos : ttlRetencion;
+        if (ttl <= 0 || ttl > ttlMaximoRetencion) {
+            throw new RuntimeException("TTL de retención fuera de rango (1-" + ttlMaximoRetencion + " s): " + ttl);
+        }
+        if (req.getMonto() == null || req.getMonto().signum() <= 0) {
+            throw new RuntimeException("El monto a reservar debe ser positivo");
         }
+        long monto = Centavos.de(req.getMonto());
+        // Sin idInstruccion (clientes anteriores) la retención igual existe y expira
+        UUID idRetencion = req.getIdInstruccion() != null ? req.getIdInstruccion() : UUID.randomUUID();
 
-        cuenta.setSaldoDisponible(cuenta.getSaldoDisponible().subtract(req.getMonto()));
-        cuenta.setFondosBloqueados(cuenta.getFondosBloqueados().add(req.getMonto()));
+        return contabilizar(bic, cuenta -> idempotente(IndiceIdempotencia.OP_RESERVA, bic, req.getIdInstruccion(), () -> {
+            if (cuenta.getSaldoDisponible() < monto) {
+                throw new SaldoInsuficienteException("FONDOS INSUFICIENTES para reservar: " + req.getCodigoBic());
+            }
+
+            cuenta.setSaldoDisponible(Centavos.restar(cuenta.getSaldoDisponible(), monto));
+            cuenta.setFondosBloqueados(Centavos.sumar(cuenta.getFondosBloqueados(), monto));
+
+            LocalDateTime ahora = LocalDateTime.now();
+            Retencion retencion = new Retencion();
+            retencion.setIdInstruccion(idRetencion);
+            retencion.setIdCuenta(cuenta.getIdCuenta());
+            retencion.setBic(bic);
+            retencion.setMonto(req.getMonto());
+            retencion.setEstado(EstadoRetencion.ACTIVA);
+            retencion.setFechaCreacion(ahora);
+            retencion.setFechaExpiracion(ahora.plusSeconds(ttl));
+            retencionRepo.save(retencion);
+            // Si la transacción no confirma, el vencimiento no encontrará la retención y se ignora
+            ruedaExpiracion.programar(idRetencion, bic, retencion.getFechaExpiracion());
 
+            return respuesta(cuenta);
+        }));
+    }
+
+    /**
+     * Ejecuta una mutación sobre la cuenta del BIC dentro de su carril contable.
+     * La operación trabaja sobre una copia del estado confirmado; al terminar se persiste
+     * con una actualización condicional por versión y, solo si la transacción confirma, la
+     * copia pasa a ser el nuevo estado caliente. Si otro escritor cambió la fila, se recarga
+     * y se reintenta según la {@link PoliticaReintentos}: el reintento se reencola en el
+     * carril tras la espera, sin ocuparlo mientras tanto.
+     *
+     * El permiso del bulkhead se toma antes de encolar, así el carril nunca espera por él.
+     * Lo que ya corre en el carril (lotes, reversos en bloque, vencimientos) no lo pide: cada
+     * carril ejecuta una tarea a la vez, lo que ya acota sus conexiones.
+     */
+    <T> T contabilizar(String bic, Function<CuentaTecnica, T> operacion) {
+        if (motor.enCarril(bic)) {
+            return reintentos.ejecutar(bic, () -> escribir(bic, operacion), () -> descartarCaliente(bic));
+        }
+        return bulkhead.ejecutar(bic, () -> motor.ejecutarEncadenada(bic, () -> reintentos.ejecutarReprogramando(bic,
+                () -> escribir(bic, operacion), () -> descartarCaliente(bic))));
+    }
+
+    // Un intento: cada uno drena lo pendiente, porque un reintento reencolado puede correr
+    // después de otras tareas del carril.
+    private <T> T escribir(String bic, Function<CuentaTecnica, T> operacion) {
+        drenarPendientes(bic);
+        CuentaTecnica[] trabajo = new CuentaTecnica[1];
+        T resultado = transaccion.execute(status -> {
+            CuentaTecnica confirmada = cuentaConfirmada(bic);
+            CuentaTecnica cuenta = copiar(confirmada);
+            trabajo[0] = cuenta;
+            T res = operacion.apply(cuenta);
+            persistirCuenta(cuenta, confirmada);
+            return res;
+        });
+        if (estadoCaliente) {
+            cuentasCalientes.put(bic, trabajo[0]);
+        }
+        cacheSaldos.escribir(bic, mapper.toDTO(trabajo[0]));
+        replica.registrarEscritura(bic);
+        return resultado;
+    }
+
+    private void descartarCaliente(String bic) {
+        cuentasCalientes.remove(bic);
+        cacheSaldos.invalidar(bic);
+    }
+
+    /**
+     * Si la instrucción ya se aplicó devuelve su respuesta original; si no, ejecuta la
+     * operación y guarda su respuesta en la misma transacción. Debe llamarse en el carril del BIC.
+     */
+    private CuentaDTO idempotente(String operacion, String bic, UUID idInstruccion, Supplier<CuentaDTO> ejecutar) {
+        Optional<CuentaDTO> previa = idempotencia.buscar(operacion, bic, idInstruccion);
+        if (previa.isPresent()) {
+            return previa.get();
+        }
+        CuentaDTO respuesta = ejecutar.get();
+        idempotencia.registrar(operacion, bic, idInstruccion, respuesta);
+        return respuesta;
+    }
+
+    // Firma el estado resultante antes de mapearlo, para que la respuesta lleve la firma vigente.
+    private CuentaDTO respuesta(CuentaTecnica cuenta) {
         cuenta.setFirmaIntegridad(calcularHash(cuenta));
-        return mapper.toDTO(cuentaRepo.save(cuenta));
+        return mapper.toDTO(cuenta);
     }
 
-    @Transactional
-    public void aplicarCompensacion(com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO req) {
-        for (com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO.PosicionBancariaDTO pos : req.getPosiciones()) {
-            CuentaTecnica cuenta = cuentaRepo.findByBic(pos.getBic())
-                    .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + pos.getBic()));
+    private CuentaTecnica cuentaConfirmada(String bic) {
+        CuentaTecnica caliente = estadoCaliente ? cuentasCalientes.get(bic) : null;
+        if (caliente != null) {
+            return caliente;
+        }
+        CuentaTecnica cuenta = cuentaRepo.findByBic(bic)
+                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + bic));
+        // El carril es el dueño del estado: la entidad no debe quedar gestionada por JPA.
+        entityManager.detach(cuenta);
+        validarIntegridad(cuenta);
+        return cuenta;
+    }
 
-            validarIntegridad(cuenta);
+    private void persistirCuenta(CuentaTecnica cuenta, CuentaTecnica confirmada) {
+        boolean cambioSaldo = cuenta.getSaldoDisponible() != confirmada.getSaldoDisponible()
+                || cuenta.getFondosBloqueados() != confirmada.getFondosBloqueados();
+        if (!cambioSaldo) {
+            return;
+        }
+        cuenta.setFirmaIntegridad(calcularHash(cuenta));
+        int filas = cuentaRepo.actualizarSaldos(cuenta.getIdCuenta(),
+                cuenta.getSaldoDisponible(), cuenta.getFondosBloqueados(), cuenta.getFirmaIntegridad(),
+                confirmada.getVersion());
+        if (filas == 0) {
+            throw new OptimisticLockingFailureException(
+                    "La cuenta " + cuenta.getBic() + " fue modificada por otro escritor");
+        }
+        cuenta.setVersion(confirmada.getVersion() + 1);
+    }
 
-            BigDecimal totalDebitos = pos.getTotalDebitos();
+    /**
+     * Ejecuta una lectura en el carril del BIC tras drenar sus asientos pendientes,
+     * de modo que ninguna mutación de esa cuenta ocurra en medio.
+     */
+    <T> T ejecutarEnCarril(String bic, Supplier<T> operacion) {
+        return motor.ejecutar(bic, () -> {
+            drenarPendientes(bic);
+            return operacion.get();
+        });
+    }
 
-            // Release blocks and add back to available (reverting the reservation)
-            cuenta.setFondosBloqueados(cuenta.getFondosBloqueados().subtract(totalDebitos));
-            cuenta.setSaldoDisponible(cuenta.getSaldoDisponible().add(totalDebitos));
+    /**
+     * Aplica en BD los asientos del diario pendientes de esas cuentas, en sus carriles y en paralelo.
+     */
+    void drenarCuentas(Collection<String> bics) {
+        if (!diario.isHabilitado()) {
+            return;
+        }
+        CompletableFuture.allOf(bics.stream()
+                .map(bic -> motor.enviar(bic, () -> {
+                    drenarPendientes(bic);
+                    return null;
+                }))
+                .toArray(CompletableFuture[]::new)).join();
+    }
 
-            // Apply Net Position
-            cuenta.setSaldoDisponible(cuenta.getSaldoDisponible().add(pos.getPosicionNeta()));
+    // Tras escribir fuera de los carriles (compensación), el estado caliente de esas cuentas ya no vale.
+    // Se descarta en el acto para que ninguna lectura lo reinstale en la caché de saldos; el
+    // carril solo vuelve a publicarlo tras confirmar contra la fila ya compensada.
+    void invalidarCuentasCalientes(Collection<String> bics) {
+        replica.registrarEscrituras(bics);
+        for (String bic : bics) {
+            cuentasCalientes.remove(bic);
+            cacheSaldos.invalidar(bic);
+        }
+        bics.forEach(bic -> motor.enviar(bic, () -> {
+            drenarPendientes(bic);
+            return cuentasCalientes.remove(bic);
+        }));
+    }
 
-            Movimiento mov = new Movimiento();
-            mov.setCuenta(cuenta);
-            mov.setTipo(TipoMovimiento.SETTLEMENT);
-            mov.setMonto(pos.getPosicionNeta().abs());
-            mov.setSaldoResultante(cuenta.getSaldoDisponible());
-            mov.setFechaRegistro(LocalDateTime.now());
+    /**
+     * Modo diario: el asiento se valida contra el estado caliente del carril, se anexa al
+     * diario local y se confirma al cliente cuando su grupo fue sincronizado a disco.
+     * La aplicación en BD la hace luego el drenado en bloque.
+     */
+    private CuentaDTO registrarEnDiario(RegistroMovimientoRequest req) {
+        String bic = req.getCodigoBic();
+        TipoMovimiento tipo = TipoMovimiento.valueOf(req.getTipo());
+        long monto = Centavos.de(req.getMonto());
 
-            movimientoRepo.save(mov);
+        CompletableFuture<CuentaDTO> confirmacion = motor.ejecutar(bic, () -> {
+            Optional<CuentaDTO> previa = idempotencia.buscar(IndiceIdempotencia.OP_REGISTRO, bic,
+                    req.getIdInstruccion());
+            if (previa.isPresent()) {
+                return CompletableFuture.completedFuture(previa.get());
+            }
+            CuentaTecnica confirmada = cuentasCalientes.get(bic);
+            if (confirmada == null) {
+                drenarPendientes(bic);
+                confirmada = transaccion.execute(status -> cuentaConfirmada(bic));
+            }
+            CuentaTecnica cuenta = copiar(confirmada);
 
+            if (tipo == TipoMovimiento.DEBIT) {
+                if (cuenta.getSaldoDisponible() < monto) {
+                    throw new SaldoInsuficienteException("FONDOS INSUFICIENTES para el banco: " + bic);
+                }
+                cuenta.setSaldoDisponible(Centavos.restar(cuenta.getSaldoDisponible(), monto));
+            } else {
+                cuenta.setSaldoDisponible(Centavos.sumar(cuenta.getSaldoDisponible(), monto));
+            }
             cuenta.setFirmaIntegridad(calcularHash(cuenta));
-            cuentaRepo.save(cuenta);
+
+            DiarioContable.Anexo anexo = diario.anexar(EntradaDiario.nueva(bic, req.getIdInstruccion(), tipo,
+                    monto, LocalDateTime.now()));
+            pendientesDiario.computeIfAbsent(bic, k -> new ArrayList<>()).add(anexo);
+            cuentasCalientes.put(bic, cuenta);
+
+            CuentaDTO dto = mapper.toDTO(cuenta);
+            cacheSaldos.escribir(bic, dto);
+            // El reintento se resuelve en memoria hasta que el drenado persista el registro.
+            idempotencia.recordarPendiente(IndiceIdempotencia.OP_REGISTRO, bic, req.getIdInstruccion(), dto);
+            return anexo.durable().whenComplete((v, e) -> {
+                if (e != null) {
+                    idempotencia.olvidar(IndiceIdempotencia.OP_REGISTRO, bic, req.getIdInstruccion());
+                    cacheSaldos.invalidar(bic);
+                }
+            }).thenApply(v -> dto);
+        });
+
+        try {
+            return confirmacion.join();
+        } catch (CompletionException e) {
+            throw MotorContabilizacion.desenvolver(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.diario.drenado-ms:50}")
+    public void drenarDiario() {
+        if (!diario.isHabilitado()) {
+            return;
+        }
+        List<CompletableFuture<Object>> drenados = new ArrayList<>();
+        pendientesDiario.forEach((bic, pendientes) -> {
+            if (!pendientes.isEmpty()) {
+                drenados.add(motor.enviar(bic, () -> {
+                    drenarPendientes(bic);
+                    return null;
+                }).exceptionally(e -> {
+                    log.error("[DIARIO] Error drenando asientos de {}: {}", bic, e.getMessage());
+                    return null;
+                }));
+            }
+        });
+        CompletableFuture.allOf(drenados.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Al arrancar, aplica en BD la cola del diario que no alcanzó a drenarse.
+     * Los asientos que ya existen en BD (por cuenta e idInstruccion) se descartan.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void reproducirDiario() {
+        if (!diario.isHabilitado()) {
+            return;
+        }
+        if (!motor.isHabilitado() || !estadoCaliente) {
+            throw new IllegalStateException(
+                    "El diario contable requiere el motor single-writer con estado caliente habilitado");
+        }
+        List<EntradaDiario> recuperadas = diario.pendientesDeRecuperacion();
+        Map<String, List<EntradaDiario>> porBic = new LinkedHashMap<>();
+        recuperadas.forEach(e -> porBic.computeIfAbsent(e.bic(), k -> new ArrayList<>()).add(e));
+
+        porBic.forEach((bic, entradas) -> motor.ejecutar(bic, () -> {
+            List<DiarioContable.Anexo> pendientes = pendientesDiario.computeIfAbsent(bic, k -> new ArrayList<>());
+            entradas.forEach(e -> pendientes.add(new DiarioContable.Anexo(e, CompletableFuture.completedFuture(null))));
+            drenarPendientes(bic);
+            return null;
+        }));
+        if (!recuperadas.isEmpty()) {
+            log.info("[DIARIO] Reproducidos {} asientos de {} cuentas", recuperadas.size(), porBic.size());
+        }
+    }
+
+    // Debe ejecutarse en el carril del BIC.
+    private void drenarPendientes(String bic) {
+        List<DiarioContable.Anexo> pendientes = pendientesDiario.get(bic);
+        while (pendientes != null && !pendientes.isEmpty()) {
+            List<DiarioContable.Anexo> tramo = new ArrayList<>(
+                    pendientes.subList(0, Math.min(loteDrenado, pendientes.size())));
+            // Solo se aplica en BD lo que ya es durable en el diario. Los grupos se sincronizan
+            // en orden y un fallo deja el diario inactivo, así que lo fallido es una cola.
+            int durables = 0;
+            try {
+                for (DiarioContable.Anexo anexo : tramo) {
+                    anexo.durable().join();
+                    durables++;
+                }
+            } catch (CompletionException e) {
+                if (durables > 0) {
+                    aplicarTramo(bic, pendientes, tramo.subList(0, durables));
+                }
+                // Asientos nunca confirmados al cliente: se descartan (el diario ya no los
+                // reproduce) junto con el estado caliente que los incluía.
+                diario.descartar(pendientes.stream().map(DiarioContable.Anexo::entrada).toList());
+                log.error("[DIARIO] Descartados {} asientos no durables de {}", pendientes.size(), bic);
+                pendientes.clear();
+                cuentasCalientes.remove(bic);
+                cacheSaldos.invalidar(bic);
+                return;
+            }
+            aplicarTramo(bic, pendientes, tramo);
         }
     }
 
-    private void validarIntegridad(CuentaTecnica cuenta) {
-        String hashCalculado = calcularHash(cuenta);
-        if (!hashCalculado.equals(cuenta.getFirmaIntegridad())) {
+    private void aplicarTramo(String bic, List<DiarioContable.Anexo> pendientes, List<DiarioContable.Anexo> tramo) {
+        List<EntradaDiario> entradas = tramo.stream().map(DiarioContable.Anexo::entrada).toList();
+        CuentaTecnica resultante = transaccion.execute(status -> aplicarEntradas(bic, entradas));
+        replica.registrarEscritura(bic);
+        pendientes.subList(0, tramo.size()).clear();
+        diario.confirmarAplicadas(entradas);
+        if (pendientes.isEmpty()) {
+            cuentasCalientes.put(bic, resultante);
+        }
+    }
+
+    private CuentaTecnica aplicarEntradas(String bic, List<EntradaDiario> entradas) {
+        CuentaTecnica cuenta = cuentaRepo.findByBicParaActualizar(bic)
+                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + bic));
+        validarIntegridad(cuenta);
+
+        Set<UUID> yaAplicadas = entradas.stream().anyMatch(EntradaDiario::reproducida)
+                ? new HashSet<>(movimientoRepo.findIdInstruccionExistentesEnCuenta(cuenta.getIdCuenta(),
+                        entradas.stream().map(EntradaDiario::idInstruccion).toList()))
+                : Set.of();
+
+        List<Movimiento> movimientos = new ArrayList<>(entradas.size());
+        List<RegistroIdempotencia> registros = new ArrayList<>(entradas.size());
+        for (EntradaDiario entrada : entradas) {
+            if (entrada.reproducida() && yaAplicadas.contains(entrada.idInstruccion())) {
+                continue;
+            }
+            cuenta.setSaldoDisponible(Centavos.sumar(cuenta.getSaldoDisponible(), entrada.delta()));
+            if (cuenta.getSaldoDisponible() < 0) {
+                log.warn("[DIARIO] Saldo negativo en {} al aplicar {}", bic, entrada.idInstruccion());
+            }
+            Movimiento mov = new Movimiento();
+            mov.setCuenta(cuenta);
+            mov.setIdInstruccion(entrada.idInstruccion());
+            mov.setTipo(entrada.tipo());
+            mov.setMonto(Centavos.aBigDecimal(entrada.monto()));
+            mov.setSaldoResultante(Centavos.aBigDecimal(cuenta.getSaldoDisponible()));
+            mov.setFechaRegistro(entrada.fechaRegistro());
+            movimientos.add(mov);
+            registros.add(idempotencia.nuevoRegistro(IndiceIdempotencia.OP_REGISTRO, bic, entrada.idInstruccion(),
+                    respuesta(cuenta)));
+        }
+        movimientoRepo.saveAll(movimientos);
+        feed.registrarTodos(movimientos);
+        idempotencia.registrarTodos(registros);
+
+        cuenta.setFirmaIntegridad(calcularHash(cuenta));
+        return cuenta;
+    }
+
+    private static CuentaTecnica copiar(CuentaTecnica origen) {
+        CuentaTecnica copia = new CuentaTecnica();
+        copia.setIdCuenta(origen.getIdCuenta());
+        copia.setBic(origen.getBic());
+        copia.setSaldoDisponible(origen.getSaldoDisponible());
+        copia.setFondosBloqueados(origen.getFondosBloqueados());
+        copia.setFirmaIntegridad(origen.getFirmaIntegridad());
+        copia.setUltimaConciliacion(origen.getUltimaConciliacion());
+        copia.setSaldoConciliado(origen.getSaldoConciliado());
+        copia.setIdUltimoMovimientoConciliado(origen.getIdUltimoMovimientoConciliado());
+        copia.setVersion(origen.getVersion());
+        return copia;
+    }
+
+    void validarIntegridad(CuentaTecnica cuenta) {
+        metricas.validar(() -> verificarFirma(cuenta));
+    }
+
+    private void verificarFirma(CuentaTecnica cuenta) {
+        if (!firma.verificar(cuenta)) {
             if (cuenta.getFirmaIntegridad().startsWith("INITIAL_HASH")) {
                 // Auto-repair seed data
-                cuenta.setFirmaIntegridad(hashCalculado);
-                cuentaRepo.save(cuenta);
+                cuenta.setFirmaIntegridad(calcularHash(cuenta));
+                cuentaRepo.actualizarFirma(cuenta.getIdCuenta(), cuenta.getFirmaIntegridad());
             } else {
                 throw new RuntimeException(
                         "ALERTA DE SEGURIDAD: La cuenta " + cuenta.getBic() + " ha sido alterada manualmente.");
             }
+        } else if (firma.requiereRefirma(cuenta.getFirmaIntegridad())) {
+            // Firma válida con una clave anterior: se re-firma con la clave activa (rotación)
+            cuenta.setFirmaIntegridad(calcularHash(cuenta));
+            cuentaRepo.actualizarFirma(cuenta.getIdCuenta(), cuenta.getFirmaIntegridad());
         }
     }
 
     private String calcularHash(CuentaTecnica c) {
-        try {
-            String secretKey = "SECRET_KEY_INTERNAL_LEDGER_V3";
-            String saldoFormateado = c.getSaldoDisponible()
-                    .setScale(2, java.math.RoundingMode.HALF_UP)
-                    .toString();
-            String bloqueadoFormateado = c.getFondosBloqueados()
-                    .setScale(2, java.math.RoundingMode.HALF_UP)
-                    .toString();
-
-            String data = saldoFormateado + bloqueadoFormateado + c.getBic() + secretKey;
-
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculando hash", e);
-        }
+        return metricas.firmar(() -> firma.firmar(c));
     }
 
 }
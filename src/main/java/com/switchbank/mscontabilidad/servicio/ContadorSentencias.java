@@ -0,0 +1,64 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cuenta las sentencias SQL que Hibernate prepara para la operación en curso (una por
+ * ida y vuelta a BD; un batch de inserts cuenta una vez). Se registra como
+ * {@code hibernate.session_factory.statement_inspector}; el contador vive en el hilo que
+ * mide y el motor contable lo propaga a los carriles con {@link #propagar}.
+ */
+public class ContadorSentencias implements StatementInspector {
+
+    private static final ThreadLocal<AtomicLong> ACTUAL = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        AtomicLong contador = ACTUAL.get();
+        if (contador != null) {
+            contador.incrementAndGet();
+        }
+        return sql;
+    }
+
+    /**
+     * Empieza a contar en este hilo. Devuelve null si ya había una medición en curso
+     * (la operación anidada suma a la exterior).
+     */
+    static AtomicLong iniciar() {
+        if (ACTUAL.get() != null) {
+            return null;
+        }
+        AtomicLong contador = new AtomicLong();
+        ACTUAL.set(contador);
+        return contador;
+    }
+
+    static void terminar() {
+        ACTUAL.remove();
+    }
+
+    // Lo que se ejecute en otro hilo suma al contador de quien lo encargó.
+    static <T> Supplier<T> propagar(Supplier<T> operacion) {
+        AtomicLong contador = ACTUAL.get();
+        if (contador == null) {
+            return operacion;
+        }
+        return () -> {
+            AtomicLong previo = ACTUAL.get();
+            ACTUAL.set(contador);
+            try {
+                return operacion.get();
+            } finally {
+                if (previo != null) {
+                    ACTUAL.set(previo);
+                } else {
+                    ACTUAL.remove();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,291 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Control de admisión por BIC: decide al entrar la petición si se atiende o se rechaza
+ * enseguida, antes de que ocupe un carril del motor, permisos del bulkhead o conexiones.
+ *
+ * Cada partición (un BIC, o {@link MetricasContabilidad#VARIOS} para lo que no se atribuye
+ * a una sola cuenta) tiene:
+ * <ul>
+ * <li>Una cubeta de fichas con {@code tasa-por-bic} solicitudes por segundo sostenidas y
+ * ráfagas de hasta {@code rafaga}.</li>
+ * <li>Un límite de peticiones en curso que se ajusta por gradiente de latencia: se compara
+ * la latencia media de cada ventana con un promedio largo de la misma partición; mientras
+ * no supere {@code tolerancia} veces ese promedio el límite crece, y si la supera se
+ * reduce en proporción (hasta la mitad por ventana). Un 503 del bulkhead lo reduce de
+ * inmediato.</li>
+ * </ul>
+ *
+ * La latencia es la de la petición completa: en los caminos de escritura incluye la cola
+ * del carril single-writer, que el tiempo medido en el bulkhead no ve. Un banco que inunda
+ * ve crecer su propia latencia y se le recorta el límite; los demás conservan el suyo.
+ *
+ * Solo los primeros {@code max-bics} BIC tienen partición propia; el resto comparte
+ * {@link MetricasContabilidad#OTROS}, así un cliente no puede crear particiones a voluntad.
+ */
+@Slf4j
+@Component
+public class ControlAdmision {
+
+    public static final String MOTIVO_TASA = "tasa";
+    public static final String MOTIVO_CONCURRENCIA = "concurrencia";
+
+    private static final Permiso SIN_CONTROL = new Permiso(null, 0, 0, null, 0);
+    // Peso de cada ventana en el promedio largo: baja rápido, sube en unas 100 ventanas
+    private static final double ALFA_BAJADA = 0.1;
+    private static final double ALFA_SUBIDA = 0.01;
+    // Fracción del límite calculado que se aplica en cada ventana
+    private static final double SUAVIZADO = 0.2;
+    private static final double RECORTE_SOBRECARGA = 0.9;
+    private static final int MIN_MUESTRAS_VENTANA = 5;
+
+    private final boolean habilitada;
+    private final double fichasPorNano;
+    private final double rafaga;
+    private final double limiteInicial;
+    private final double limiteMin;
+    private final double limiteMax;
+    private final double tolerancia;
+    private final long ventanaNanos;
+    private final int maxBics;
+    private final Map<String, Particion> particiones = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+    private final MetricasContabilidad metricas;
+
+    public ControlAdmision(MeterRegistry registry, MetricasContabilidad metricas,
+            @Value("${contabilidad.admision.habilitada:true}") boolean habilitada,
+            @Value("${contabilidad.admision.tasa-por-bic:1000}") double tasaPorBic,
+            @Value("${contabilidad.admision.rafaga:2000}") double rafaga,
+            @Value("${contabilidad.admision.limite-inicial:20}") int limiteInicial,
+            @Value("${contabilidad.admision.limite-min:2}") int limiteMin,
+            @Value("${contabilidad.admision.limite-max:200}") int limiteMax,
+            @Value("${contabilidad.admision.tolerancia:1.5}") double tolerancia,
+            @Value("${contabilidad.admision.ventana-ms:250}") long ventanaMs,
+            @Value("${contabilidad.admision.max-bics:1000}") int maxBics) {
+        if (habilitada && (limiteMin < 1 || limiteMin > limiteMax)) {
+            throw new IllegalStateException("contabilidad.admision.limite-min debe estar entre 1 y limite-max ("
+                    + limiteMax + ")");
+        }
+        if (habilitada && tolerancia < 1.0) {
+            throw new IllegalStateException("contabilidad.admision.tolerancia debe ser al menos 1.0");
+        }
+        this.registry = registry;
+        this.metricas = metricas;
+        this.habilitada = habilitada;
+        this.fichasPorNano = Math.max(0, tasaPorBic) / TimeUnit.SECONDS.toNanos(1);
+        this.rafaga = Math.max(1, rafaga);
+        this.limiteMin = limiteMin;
+        this.limiteMax = limiteMax;
+        this.limiteInicial = Math.max(limiteMin, Math.min(limiteMax, limiteInicial));
+        this.tolerancia = tolerancia;
+        this.ventanaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ventanaMs));
+        this.maxBics = Math.max(0, maxBics);
+        Gauge.builder("contabilidad.admision.particiones", particiones, Map::size).register(registry);
+        if (habilitada) {
+            log.info("[ADMISION] Control por BIC habilitado: {} sol/s (ráfaga {}), concurrencia {} en [{}, {}]",
+                    tasaPorBic > 0 ? tasaPorBic : "sin límite", (long) this.rafaga, (long) this.limiteInicial,
+                    limiteMin, limiteMax);
+        }
+    }
+
+    public boolean habilitada() {
+        return habilitada;
+    }
+
+    /**
+     * Intenta admitir una petición de la partición ({@code null} = varias cuentas). Si se
+     * admite, el permiso debe liberarse al terminar la petición.
+     */
+    public Permiso admitir(String bic) {
+        if (!habilitada) {
+            return SIN_CONTROL;
+        }
+        Particion particion = particion(bic == null ? MetricasContabilidad.VARIOS : bic);
+        long ahora = System.nanoTime();
+        long esperaFicha = particion.tomarFicha(ahora);
+        if (esperaFicha > 0) {
+            return rechazo(particion, MOTIVO_TASA, esperaFicha);
+        }
+        int enCurso = particion.entrar();
+        if (enCurso < 0) {
+            // Se libera un lugar en cuanto termina una petición en curso
+            return rechazo(particion, MOTIVO_CONCURRENCIA, 0);
+        }
+        return new Permiso(particion, ahora, enCurso, null, 0);
+    }
+
+    private Permiso rechazo(Particion particion, String motivo, long esperaNanos) {
+        registry.counter("contabilidad.admision.rechazos", "bic", etiqueta(particion.clave), "motivo", motivo)
+                .increment();
+        // Retry-After va en segundos enteros: al menos 1
+        long segundos = Math.max(1, (esperaNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        return new Permiso(particion, 0, 0, motivo, segundos);
+    }
+
+    private Particion particion(String clave) {
+        Particion particion = particiones.get(clave);
+        if (particion != null) {
+            return particion;
+        }
+        if (!MetricasContabilidad.VARIOS.equals(clave) && particiones.size() >= maxBics) {
+            clave = MetricasContabilidad.OTROS;
+        }
+        return particiones.computeIfAbsent(clave, Particion::new);
+    }
+
+    private String etiqueta(String clave) {
+        return MetricasContabilidad.VARIOS.equals(clave) ? clave : metricas.etiquetaBic(clave);
+    }
+
+    /**
+     * Resultado de {@link #admitir}. Rechazado, indica el motivo y en cuántos segundos
+     * conviene reintentar.
+     */
+    public static final class Permiso {
+        private final Particion particion;
+        private final long inicio;
+        private final int enCursoAlEntrar;
+        private final String motivo;
+        private final long reintentarEnSegundos;
+
+        private Permiso(Particion particion, long inicio, int enCursoAlEntrar, String motivo,
+                long reintentarEnSegundos) {
+            this.particion = particion;
+            this.inicio = inicio;
+            this.enCursoAlEntrar = enCursoAlEntrar;
+            this.motivo = motivo;
+            this.reintentarEnSegundos = reintentarEnSegundos;
+        }
+
+        public boolean admitido() {
+            return motivo == null;
+        }
+
+        public String motivo() {
+            return motivo;
+        }
+
+        public long reintentarEnSegundos() {
+            return reintentarEnSegundos;
+        }
+
+        /**
+         * Termina la petición admitida; {@code sobrecarga} si la rechazó el bulkhead de BD.
+         */
+        public void liberar(boolean sobrecarga) {
+            if (particion != null && admitido()) {
+                particion.salir(System.nanoTime() - inicio, enCursoAlEntrar, sobrecarga);
+            }
+        }
+    }
+
+    private final class Particion {
+        private final String clave;
+        private final AtomicInteger enCurso = new AtomicInteger();
+        private volatile double limite = limiteInicial;
+
+        // Cubeta de fichas (bajo el monitor de la partición)
+        private double fichas = rafaga;
+        private long ultimaRecarga = System.nanoTime();
+
+        // Ventana de latencias y promedio largo (bajo el monitor de la partición)
+        private long inicioVentana = System.nanoTime();
+        private double sumaVentana;
+        private int muestrasVentana;
+        private int maxEnCursoVentana;
+        private boolean recortadaEnVentana;
+        private double latenciaLarga;
+
+        private Particion(String clave) {
+            this.clave = clave;
+        }
+
+        /**
+         * @return 0 si tomó una ficha; si no, nanosegundos hasta la próxima.
+         */
+        synchronized long tomarFicha(long ahora) {
+            if (fichasPorNano == 0) {
+                return 0;
+            }
+            fichas = Math.min(rafaga, fichas + (ahora - ultimaRecarga) * fichasPorNano);
+            ultimaRecarga = ahora;
+            if (fichas >= 1) {
+                fichas -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) ((1 - fichas) / fichasPorNano));
+        }
+
+        /**
+         * @return peticiones en curso al entrar, o -1 si el límite está completo.
+         */
+        int entrar() {
+            while (true) {
+                int actual = enCurso.get();
+                if (actual >= (int) limite) {
+                    return -1;
+                }
+                if (enCurso.compareAndSet(actual, actual + 1)) {
+                    return actual + 1;
+                }
+            }
+        }
+
+        void salir(long latencia, int enCursoAlEntrar, boolean sobrecarga) {
+            enCurso.decrementAndGet();
+            synchronized (this) {
+                // Un recorte por ventana: una ráfaga de 503 no lo lleva de golpe al mínimo
+                if (sobrecarga && !recortadaEnVentana) {
+                    limite = Math.max(limiteMin, limite * RECORTE_SOBRECARGA);
+                    recortadaEnVentana = true;
+                }
+                sumaVentana += latencia;
+                muestrasVentana++;
+                maxEnCursoVentana = Math.max(maxEnCursoVentana, enCursoAlEntrar);
+                long ahora = System.nanoTime();
+                if (muestrasVentana >= MIN_MUESTRAS_VENTANA && ahora - inicioVentana >= ventanaNanos) {
+                    ajustar(sumaVentana / muestrasVentana);
+                    inicioVentana = ahora;
+                    sumaVentana = 0;
+                    muestrasVentana = 0;
+                    maxEnCursoVentana = 0;
+                    recortadaEnVentana = false;
+                }
+            }
+        }
+
+        // Bajo el monitor de la partición
+        private void ajustar(double latenciaCorta) {
+            // El promedio largo estima la latencia sin cola: sigue enseguida las mejoras y
+            // despacio los empeoramientos; una sobrecarga sostenida (por encima de la tolerancia)
+            // lo mueve diez veces más lento para no volverse la latencia normal
+            if (latenciaLarga == 0) {
+                latenciaLarga = latenciaCorta;
+            } else {
+                double alfa = latenciaCorta < latenciaLarga ? ALFA_BAJADA
+                        : latenciaCorta > tolerancia * latenciaLarga ? ALFA_SUBIDA / 10 : ALFA_SUBIDA;
+                latenciaLarga += (latenciaCorta - latenciaLarga) * alfa;
+            }
+            // Con menos de la mitad del límite en uso la latencia no dice nada del límite
+            double actual = limite;
+            if (maxEnCursoVentana < actual / 2) {
+                return;
+            }
+            double gradiente = Math.max(0.5, Math.min(1.0, tolerancia * latenciaLarga / latenciaCorta));
+            double calculado = actual * gradiente + Math.sqrt(actual);
+            double nuevo = actual * (1 - SUAVIZADO) + calculado * SUAVIZADO;
+            limite = Math.max(limiteMin, Math.min(limiteMax, nuevo));
+        }
+    }
+}
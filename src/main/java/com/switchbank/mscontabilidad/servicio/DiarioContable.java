@@ -0,0 +1,388 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Diario de escritura anticipada (WAL) sobre un archivo mapeado en memoria.
+ *
+ * Cada asiento se anexa con su CRC y se confirma por "group commit": un hilo
+ * sincroniza el archivo cada {@code grupo-micros} o al acumular
+ * {@code grupo-max-entradas}, y recién entonces se completa la confirmación.
+ *
+ * Formato del archivo:
+ * cabecera (64 bytes): magic, versión, generación, posición aplicada (checkpoint).
+ * asiento: largo(int) | crc(int) | generación(int) | secuencia(long) | carga útil.
+ * Al quedar todo aplicado el archivo se recicla incrementando la generación, de modo
+ * que los asientos viejos dejan de ser válidos en la lectura.
+ *
+ * Un fallo de sincronización es fatal: el archivo se trunca en la última posición
+ * sincronizada (para no reproducir al arrancar asientos que se informaron como fallidos),
+ * se rechazan todos los asientos en espera y el diario deja de aceptar nuevos.
+ */
+@Slf4j
+@Component
+public class DiarioContable {
+
+    private static final int MAGIC = 0x4C444752; // "LDGR"
+    private static final int VERSION = 1;
+    private static final int CABECERA = 64;
+    private static final int CABECERA_ASIENTO = 20;
+    private static final int ESCALA_MONTO = 2;
+    private static final int OFFSET_GENERACION = 8;
+    private static final int OFFSET_CHECKPOINT = 16;
+
+    public record Anexo(EntradaDiario entrada, CompletableFuture<Void> durable) {
+    }
+
+    private final boolean habilitado;
+    private final Path ruta;
+    private final int capacidad;
+    private final long grupoNanos;
+    private final int grupoMaxEntradas;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hayTrabajo = lock.newCondition();
+    private final ConcurrentSkipListSet<Long> sinAplicar = new ConcurrentSkipListSet<>();
+
+    private FileChannel canal;
+    private MappedByteBuffer buffer;
+    private Thread hiloSincronizacion;
+    private volatile boolean activo;
+
+    // Protegidos por lock
+    private int generacion;
+    private int posicionEscritura;
+    private int posicionSincronizada = CABECERA;
+    private long siguienteSecuencia = 1;
+    private boolean sincronizando;
+    private List<CompletableFuture<Void>> esperando = new ArrayList<>();
+    private List<EntradaDiario> recuperadas = List.of();
+
+    public DiarioContable(
+            @Value("${contabilidad.diario.habilitado:false}") boolean habilitado,
+            @Value("${contabilidad.diario.ruta:./data/diario-contable.wal}") String ruta,
+            @Value("${contabilidad.diario.capacidad-mb:64}") int capacidadMb,
+            @Value("${contabilidad.diario.grupo-micros:500}") long grupoMicros,
+            @Value("${contabilidad.diario.grupo-max-entradas:256}") int grupoMaxEntradas) {
+        this.habilitado = habilitado;
+        this.ruta = Path.of(ruta);
+        this.capacidad = Math.min(capacidadMb, 1024) * 1024 * 1024;
+        this.grupoNanos = TimeUnit.MICROSECONDS.toNanos(grupoMicros);
+        this.grupoMaxEntradas = grupoMaxEntradas;
+    }
+
+    @PostConstruct
+    public void abrir() throws IOException {
+        if (!habilitado) {
+            return;
+        }
+        if (ruta.getParent() != null) {
+            Files.createDirectories(ruta.getParent());
+        }
+        canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = canal.map(FileChannel.MapMode.READ_WRITE, 0, capacidad);
+
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(OFFSET_GENERACION, 1);
+            buffer.putLong(OFFSET_CHECKPOINT, CABECERA);
+            buffer.force(0, CABECERA);
+        }
+        generacion = buffer.getInt(OFFSET_GENERACION);
+        int checkpoint = (int) buffer.getLong(OFFSET_CHECKPOINT);
+        recuperadas = leerDesde(checkpoint);
+        recuperadas.forEach(e -> sinAplicar.add(e.posicion()));
+        posicionEscritura = recuperadas.isEmpty() ? checkpoint : finDe(recuperadas.get(recuperadas.size() - 1));
+        posicionSincronizada = posicionEscritura;
+        siguienteSecuencia = recuperadas.isEmpty() ? 1 : recuperadas.get(recuperadas.size() - 1).secuencia() + 1;
+
+        activo = true;
+        hiloSincronizacion = new Thread(this::bucleSincronizacion, "diario-contable-fsync");
+        hiloSincronizacion.setDaemon(true);
+        hiloSincronizacion.start();
+        log.info("[DIARIO] Abierto {} (generación {}, {} asientos por reproducir)", ruta, generacion,
+                recuperadas.size());
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Asientos que estaban en el diario al arrancar y que pueden no estar aún en BD.
+     */
+    public List<EntradaDiario> pendientesDeRecuperacion() {
+        return recuperadas;
+    }
+
+    /**
+     * Anexa el asiento al diario. La escritura en memoria es inmediata; la confirmación
+     * {@link Anexo#durable()} se completa cuando el grupo que lo contiene fue sincronizado a disco.
+     */
+    public Anexo anexar(EntradaDiario entrada) {
+        byte[] bic = entrada.bic().getBytes(StandardCharsets.UTF_8);
+        int largo = 2 + bic.length + 16 + 1 + 8 + 1 + 8 + 4;
+        int total = CABECERA_ASIENTO + largo;
+
+        lock.lock();
+        try {
+            if (!activo) {
+                throw new RuntimeException("El diario contable no está disponible");
+            }
+            if (posicionEscritura + total > capacidad) {
+                reciclarSiAplicado();
+                if (posicionEscritura + total > capacidad) {
+                    throw new RuntimeException("DIARIO LLENO: esperando que el drenado a BD libere espacio");
+                }
+            }
+            int posicion = posicionEscritura;
+            long secuencia = siguienteSecuencia++;
+
+            ByteBuffer b = buffer.slice(posicion, total);
+            b.putInt(largo);
+            b.putInt(0);
+            b.putInt(generacion);
+            b.putLong(secuencia);
+            b.putShort((short) bic.length);
+            b.put(bic);
+            b.putLong(entrada.idInstruccion().getMostSignificantBits());
+            b.putLong(entrada.idInstruccion().getLeastSignificantBits());
+            b.put((byte) entrada.tipo().ordinal());
+            // Monto como (unscaled, escala): los asientos en centavos se escriben con escala 2
+            b.putLong(entrada.monto());
+            b.put((byte) ESCALA_MONTO);
+            b.putLong(entrada.fechaRegistro().toEpochSecond(ZoneOffset.UTC));
+            b.putInt(entrada.fechaRegistro().getNano());
+            buffer.putInt(posicion + 4, crc(posicion, largo));
+
+            posicionEscritura = posicion + total;
+            sinAplicar.add((long) posicion);
+
+            CompletableFuture<Void> durable = new CompletableFuture<>();
+            esperando.add(durable);
+            if (esperando.size() == 1 || esperando.size() >= grupoMaxEntradas) {
+                hayTrabajo.signal();
+            }
+            return new Anexo(entrada.ubicada(posicion, secuencia, false), durable);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marca los asientos como aplicados en BD y avanza el checkpoint del archivo.
+     */
+    public void confirmarAplicadas(List<EntradaDiario> entradas) {
+        entradas.forEach(e -> sinAplicar.remove(e.posicion()));
+        lock.lock();
+        try {
+            long checkpoint = sinAplicar.isEmpty() ? posicionEscritura : sinAplicar.first();
+            buffer.putLong(OFFSET_CHECKPOINT, checkpoint);
+            if (posicionEscritura > capacidad / 2) {
+                reciclarSiAplicado();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Olvida asientos que no llegaron a ser durables, para que no retengan el checkpoint.
+     */
+    public void descartar(List<EntradaDiario> entradas) {
+        entradas.forEach(e -> sinAplicar.remove(e.posicion()));
+    }
+
+    private void reciclarSiAplicado() {
+        if (!sinAplicar.isEmpty() || !esperando.isEmpty() || sincronizando) {
+            return;
+        }
+        generacion++;
+        posicionEscritura = CABECERA;
+        posicionSincronizada = CABECERA;
+        buffer.putInt(OFFSET_GENERACION, generacion);
+        buffer.putLong(OFFSET_CHECKPOINT, CABECERA);
+        buffer.force(0, CABECERA);
+        log.debug("[DIARIO] Reciclado, generación {}", generacion);
+    }
+
+    private void bucleSincronizacion() {
+        while (activo) {
+            List<CompletableFuture<Void>> grupo;
+            int desde;
+            int hasta;
+            lock.lock();
+            try {
+                while (activo && esperando.isEmpty()) {
+                    hayTrabajo.awaitUninterruptibly();
+                }
+                long limite = System.nanoTime() + grupoNanos;
+                while (activo && esperando.size() < grupoMaxEntradas) {
+                    long restante = limite - System.nanoTime();
+                    if (restante <= 0) {
+                        break;
+                    }
+                    hayTrabajo.awaitNanos(restante);
+                }
+                if (esperando.isEmpty()) {
+                    continue;
+                }
+                grupo = esperando;
+                esperando = new ArrayList<>();
+                desde = posicionSincronizada;
+                hasta = posicionEscritura;
+                sincronizando = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            sincronizar(grupo, desde, hasta);
+        }
+    }
+
+    private void sincronizar(List<CompletableFuture<Void>> grupo, int desde, int hasta) {
+        try {
+            buffer.force(desde, hasta - desde);
+        } catch (UncheckedIOException e) {
+            log.error("[DIARIO] Fallo al sincronizar el diario contable; queda inactivo", e);
+            fallar(grupo, desde, new RuntimeException("Fallo al sincronizar el diario contable", e));
+            return;
+        }
+        lock.lock();
+        try {
+            sincronizando = false;
+            posicionSincronizada = hasta;
+        } finally {
+            lock.unlock();
+        }
+        grupo.forEach(f -> f.complete(null));
+    }
+
+    // Nada desde la última posición sincronizada llegó a confirmarse: se trunca ahí.
+    private void fallar(List<CompletableFuture<Void>> grupo, int desde, RuntimeException error) {
+        List<CompletableFuture<Void>> restantes;
+        lock.lock();
+        try {
+            activo = false;
+            sincronizando = false;
+            restantes = esperando;
+            esperando = new ArrayList<>();
+            buffer.putInt(desde, 0);
+            try {
+                buffer.force(desde, Integer.BYTES);
+            } catch (UncheckedIOException e) {
+                log.error("[DIARIO] No se pudo truncar el diario en {}", desde, e);
+            }
+            hayTrabajo.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        grupo.forEach(f -> f.completeExceptionally(error));
+        restantes.forEach(f -> f.completeExceptionally(error));
+    }
+
+    private List<EntradaDiario> leerDesde(int desde) {
+        List<EntradaDiario> entradas = new ArrayList<>();
+        int posicion = desde;
+        while (posicion + CABECERA_ASIENTO <= capacidad) {
+            int largo = buffer.getInt(posicion);
+            if (largo <= 0 || posicion + CABECERA_ASIENTO + largo > capacidad) {
+                break;
+            }
+            if (buffer.getInt(posicion + 8) != generacion || buffer.getInt(posicion + 4) != crc(posicion, largo)) {
+                break;
+            }
+            entradas.add(decodificar(posicion));
+            posicion += CABECERA_ASIENTO + largo;
+        }
+        return entradas;
+    }
+
+    private EntradaDiario decodificar(int posicion) {
+        ByteBuffer b = buffer.slice(posicion + 12, buffer.getInt(posicion) + 8);
+        long secuencia = b.getLong();
+        byte[] bic = new byte[b.getShort()];
+        b.get(bic);
+        UUID idInstruccion = new UUID(b.getLong(), b.getLong());
+        TipoMovimiento tipo = TipoMovimiento.values()[b.get()];
+        long unscaled = b.getLong();
+        byte escala = b.get();
+        long monto = escala == ESCALA_MONTO ? unscaled : Centavos.de(BigDecimal.valueOf(unscaled, escala));
+        LocalDateTime fecha = LocalDateTime.ofEpochSecond(b.getLong(), b.getInt(), ZoneOffset.UTC);
+        return new EntradaDiario(posicion, secuencia, new String(bic, StandardCharsets.UTF_8), idInstruccion, tipo,
+                monto, fecha, true);
+    }
+
+    private int finDe(EntradaDiario entrada) {
+        int posicion = (int) entrada.posicion();
+        return posicion + CABECERA_ASIENTO + buffer.getInt(posicion);
+    }
+
+    // CRC sobre generación + secuencia + carga útil
+    private int crc(int posicion, int largo) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(posicion + 8, 12 + largo));
+        return (int) crc.getValue();
+    }
+
+    @PreDestroy
+    public void cerrar() throws IOException {
+        if (!habilitado || canal == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            activo = false;
+            hayTrabajo.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            hiloSincronizacion.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        buffer.force();
+        List<CompletableFuture<Void>> restantes;
+        lock.lock();
+        try {
+            restantes = esperando;
+            esperando = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        restantes.forEach(f -> f.complete(null));
+        canal.close();
+    }
+}
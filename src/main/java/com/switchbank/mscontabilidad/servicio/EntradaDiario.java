@@ -0,0 +1,36 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Asiento aceptado en el diario de escritura anticipada y pendiente de aplicar en BD.
+ * {@code posicion} y {@code secuencia} los asigna {@link DiarioContable} al anexarlo;
+ * {@code monto} va en centavos.
+ */
+public record EntradaDiario(
+        long posicion,
+        long secuencia,
+        String bic,
+        UUID idInstruccion,
+        TipoMovimiento tipo,
+        long monto,
+        LocalDateTime fechaRegistro,
+        boolean reproducida) {
+
+    public static EntradaDiario nueva(String bic, UUID idInstruccion, TipoMovimiento tipo, long monto,
+            LocalDateTime fechaRegistro) {
+        return new EntradaDiario(-1, -1, bic, idInstruccion, tipo, monto, fechaRegistro, false);
+    }
+
+    EntradaDiario ubicada(long posicion, long secuencia, boolean reproducida) {
+        return new EntradaDiario(posicion, secuencia, bic, idInstruccion, tipo, monto, fechaRegistro, reproducida);
+    }
+
+    /** Variación que el asiento produce sobre el saldo disponible. */
+    public long delta() {
+        return tipo == TipoMovimiento.DEBIT ? -monto : monto;
+    }
+}
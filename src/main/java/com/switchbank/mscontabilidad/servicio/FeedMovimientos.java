@@ -0,0 +1,291 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.EventoMovimientoDTO;
+import com.switchbank.mscontabilidad.dto.PaginaFeedDTO;
+import com.switchbank.mscontabilidad.excepcion.CapacidadAgotadaException;
+import com.switchbank.mscontabilidad.modelo.EventoMovimiento;
+import com.switchbank.mscontabilidad.modelo.Movimiento;
+import com.switchbank.mscontabilidad.repositorio.EventoMovimientoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Feed ordenado de movimientos para consumidores externos (outbox transaccional).
+ *
+ * Cada camino que inserta un {@link Movimiento} registra su {@link EventoMovimiento} en la
+ * misma transacción. Un publicador de un solo hilo asigna después la secuencia a los eventos
+ * ya confirmados, en orden de {@code idEvento}: un evento que confirma tarde recibe una
+ * secuencia mayor que todo lo ya publicado, así que leer "después del offset N" nunca salta
+ * un evento. Los movimientos de una misma cuenta se publican en el orden en que se confirmaron.
+ *
+ * Los consumidores leen por long-poll o por SSE en lotes de hasta {@code max-lote}. En SSE el
+ * lote siguiente se consulta recién cuando el anterior se escribió en el socket: un consumidor
+ * lento frena su propia lectura sin acumular eventos en memoria.
+ */
+@Slf4j
+@Service
+public class FeedMovimientos {
+
+    private final EventoMovimientoRepository eventoRepo;
+    private final BulkheadBd bulkhead;
+    private final MetricasContabilidad metricas;
+    private final TransactionTemplate transaccion;
+    private final TransactionTemplate lectura;
+    private final boolean habilitado;
+    private final int lotePublicacion;
+    private final int maxLote;
+    private final long esperaMaxMs;
+    private final long duracionSuscripcionMs;
+    private final int retencionHoras;
+    private final Semaphore suscriptores;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    // Última secuencia publicada por este nodo; -1 hasta la primera pasada del publicador
+    private final AtomicLong ultimaPublicada = new AtomicLong(-1);
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition publicados = cerrojo.newCondition();
+    // Reciben cada lote ya confirmado, en orden de secuencia, desde el hilo del publicador
+    private final List<Consumer<List<EventoMovimiento>>> oyentes = new CopyOnWriteArrayList<>();
+
+    public FeedMovimientos(EventoMovimientoRepository eventoRepo,
+            BulkheadBd bulkhead,
+            MetricasContabilidad metricas,
+            PlatformTransactionManager transactionManager,
+            @Value("${contabilidad.feed.habilitado:true}") boolean habilitado,
+            @Value("${contabilidad.feed.lote-publicacion:5000}") int lotePublicacion,
+            @Value("${contabilidad.feed.max-lote:1000}") int maxLote,
+            @Value("${contabilidad.feed.espera-max-ms:30000}") long esperaMaxMs,
+            @Value("${contabilidad.feed.duracion-suscripcion-ms:300000}") long duracionSuscripcionMs,
+            @Value("${contabilidad.feed.max-suscriptores:32}") int maxSuscriptores,
+            @Value("${contabilidad.feed.retencion-horas:168}") int retencionHoras) {
+        this.eventoRepo = eventoRepo;
+        this.bulkhead = bulkhead;
+        this.metricas = metricas;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.habilitado = habilitado;
+        this.lotePublicacion = Math.max(1, lotePublicacion);
+        this.maxLote = Math.max(1, maxLote);
+        this.esperaMaxMs = Math.max(0, esperaMaxMs);
+        this.duracionSuscripcionMs = Math.max(1_000, duracionSuscripcionMs);
+        this.suscriptores = new Semaphore(Math.max(1, maxSuscriptores));
+        this.retencionHoras = retencionHoras;
+    }
+
+    /**
+     * Encola los eventos de movimientos recién persistidos; corre en la transacción del llamador.
+     */
+    void registrarTodos(Collection<Movimiento> movimientos) {
+        if (habilitado && !movimientos.isEmpty()) {
+            eventoRepo.saveAll(movimientos.stream().map(EventoMovimiento::new).toList());
+        }
+    }
+
+    void registrar(Movimiento movimiento) {
+        registrarTodos(List.of(movimiento));
+    }
+
+    public void alPublicar(Consumer<List<EventoMovimiento>> oyente) {
+        oyentes.add(oyente);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.feed.publicacion-ms:50}")
+    public void publicacionProgramada() {
+        if (habilitado) {
+            publicar();
+        }
+    }
+
+    /**
+     * Asigna secuencia a los eventos confirmados pendientes, un lote por transacción.
+     *
+     * @return eventos publicados
+     */
+    public int publicar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            Publicacion lote;
+            do {
+                lote = transaccion.execute(status -> publicarLote());
+                total += lote.eventos().size();
+                if (!lote.eventos().isEmpty()) {
+                    List<EventoMovimiento> eventos = lote.eventos();
+                    oyentes.forEach(oyente -> oyente.accept(eventos));
+                }
+                avisar(lote.ultima());
+            } while (lote.eventos().size() == lotePublicacion);
+
+            if (total > 0) {
+                metricas.eventosPublicados(total);
+            }
+            return total;
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    private Publicacion publicarLote() {
+        // Se relee en cada lote: si otra réplica publicó, la secuencia sigue desde la suya
+        // (y si ambas chocan, la restricción única revierte una de las dos).
+        long ultima = eventoRepo.findUltimaSecuencia();
+        List<EventoMovimiento> pendientes = eventoRepo.findPendientes(PageRequest.of(0, lotePublicacion));
+        LocalDateTime ahora = LocalDateTime.now();
+        for (EventoMovimiento evento : pendientes) {
+            evento.setSecuencia(++ultima);
+            evento.setFechaPublicacion(ahora);
+        }
+        return new Publicacion(pendientes, ultima);
+    }
+
+    private void avisar(long ultima) {
+        long anterior = ultimaPublicada.getAndUpdate(actual -> Math.max(actual, ultima));
+        if (ultima > anterior) {
+            cerrojo.lock();
+            try {
+                publicados.signalAll();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.feed.purga-ms:3600000}",
+            initialDelayString = "${contabilidad.feed.purga-ms:3600000}")
+    public void purgaProgramada() {
+        if (!habilitado) {
+            return;
+        }
+        LocalDateTime corte = LocalDateTime.now().minusHours(retencionHoras);
+        Integer eliminados = transaccion.execute(status -> eventoRepo.eliminarPublicadosAntesDe(corte,
+                eventoRepo.findUltimaSecuencia()));
+        if (eliminados != null && eliminados > 0) {
+            log.info("[FEED] {} eventos publicados antes de {} eliminados", eliminados, corte);
+        }
+    }
+
+    /**
+     * Eventos con secuencia mayor que {@code despues}. Si no hay ninguno espera hasta
+     * {@code esperaMs} a que se publique alguno (long-poll), sin ocupar conexión mientras tanto.
+     */
+    public PaginaFeedDTO leer(long despues, int limite, long esperaMs) {
+        if (!habilitado) {
+            throw new RuntimeException("El feed de movimientos está deshabilitado");
+        }
+        if (despues < 0) {
+            throw new RuntimeException("El offset no puede ser negativo: " + despues);
+        }
+        int tamano = Math.max(1, Math.min(limite, maxLote));
+        PaginaFeedDTO pagina = consultar(despues, tamano);
+        if (pagina.getEventos().isEmpty() && esperaMs > 0) {
+            // Se relee también al vencer la espera: el publicador puede estar en otra réplica
+            esperar(despues, Math.min(esperaMs, esperaMaxMs));
+            pagina = consultar(despues, tamano);
+        }
+        return pagina;
+    }
+
+    /**
+     * Reserva un suscriptor SSE y devuelve el envío a ejecutar en su propio hilo. Cada página se
+     * entrega a {@code destino} (vacía como latido cuando no hubo eventos en la espera); el
+     * envío termina al cumplirse {@code duracion-suscripcion-ms} o cuando {@code destino} falla.
+     *
+     * @throws CapacidadAgotadaException si ya hay {@code max-suscriptores} conectados
+     */
+    public Runnable suscribir(long despues, int limite, Consumer<PaginaFeedDTO> destino) {
+        if (!habilitado) {
+            throw new RuntimeException("El feed de movimientos está deshabilitado");
+        }
+        if (!suscriptores.tryAcquire()) {
+            throw new CapacidadAgotadaException("Máximo de suscriptores del feed alcanzado; reintente o use long-poll");
+        }
+        return () -> {
+            try {
+                long fin = System.currentTimeMillis() + duracionSuscripcionMs;
+                long cursor = despues;
+                long restante;
+                while ((restante = fin - System.currentTimeMillis()) > 0) {
+                    PaginaFeedDTO pagina = leer(cursor, limite, espera(cursor, restante));
+                    destino.accept(pagina);
+                    cursor = pagina.getSiguienteOffset();
+                }
+            } finally {
+                suscriptores.release();
+            }
+        };
+    }
+
+    // Sin espera mientras el consumidor esté atrasado; si no, hasta la espera máxima o el fin
+    private long espera(long cursor, long restante) {
+        return ultimaPublicada.get() > cursor ? 0 : Math.min(esperaMaxMs, restante);
+    }
+
+    public long getDuracionSuscripcionMs() {
+        return duracionSuscripcionMs;
+    }
+
+    private PaginaFeedDTO consultar(long despues, int tamano) {
+        return bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> lectura.execute(status -> {
+            List<EventoMovimientoDTO> filas = eventoRepo.findDTODespuesDe(despues, PageRequest.of(0, tamano + 1));
+            if (!filas.isEmpty() && filas.get(0).getSecuencia() > despues + 1) {
+                throw new RuntimeException("El offset " + despues + " ya fue depurado del feed; la secuencia más "
+                        + "antigua disponible es " + filas.get(0).getSecuencia());
+            }
+            boolean hayMas = filas.size() > tamano;
+            List<EventoMovimientoDTO> eventos = hayMas ? filas.subList(0, tamano) : filas;
+            long siguiente = eventos.isEmpty() ? despues : eventos.get(eventos.size() - 1).getSecuencia();
+            long ultima = ultimaPublicada.get();
+            return PaginaFeedDTO.builder()
+                    .eventos(eventos)
+                    .siguienteOffset(siguiente)
+                    .ultimaSecuencia(ultima >= 0 ? Math.max(ultima, siguiente) : eventoRepo.findUltimaSecuencia())
+                    .hayMas(hayMas)
+                    .build();
+        }));
+    }
+
+    // Hasta que este nodo publique algo después de {@code despues} o venza la espera
+    private void esperar(long despues, long esperaMs) {
+        long restante = TimeUnit.MILLISECONDS.toNanos(esperaMs);
+        cerrojo.lock();
+        try {
+            while (ultimaPublicada.get() <= despues) {
+                if (restante <= 0) {
+                    return;
+                }
+                restante = publicados.awaitNanos(restante);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    private record Publicacion(List<EventoMovimiento> eventos, long ultima) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom concurrente sobre claves de 128 bits. Un "no" es definitivo; un "sí"
+ * puede ser falso positivo con la probabilidad configurada. Nunca se borran claves.
+ */
+final class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final long totalBits;
+    private final int funciones;
+
+    FiltroBloom(long capacidad, double probabilidadFalsoPositivo) {
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-capacidad * Math.log(probabilidadFalsoPositivo) / (ln2 * ln2));
+        this.totalBits = Math.max(64, (m + 63) / 64 * 64);
+        this.funciones = Math.max(1, (int) Math.round((double) totalBits / capacidad * ln2));
+        this.bits = new AtomicLongArray((int) (totalBits / 64));
+    }
+
+    void agregar(long h1, long h2) {
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * h2, totalBits);
+            int palabra = (int) (bit >>> 6);
+            long mascara = 1L << bit;
+            if ((bits.get(palabra) & mascara) == 0) {
+                bits.getAndAccumulate(palabra, mascara, (a, b) -> a | b);
+            }
+        }
+    }
+
+    boolean podriaContener(long h1, long h2) {
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * h2, totalBits);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long tamanoBytes() {
+        return totalBits / 8;
+    }
+}
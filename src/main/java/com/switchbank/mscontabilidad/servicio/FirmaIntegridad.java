@@ -0,0 +1,211 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Firma de integridad de las cuentas técnicas: HMAC-SHA256 versionado.
+ *
+ * Formato: {@code v<version>:<base64>}. La clave de cada versión se carga de
+ * configuración ({@code contabilidad.firma.claves=1:<base64>,2:<base64>}) y se firma
+ * siempre con {@code contabilidad.firma.version-activa}; las versiones anteriores se
+ * siguen aceptando al validar, lo que permite rotar la clave sin detener el servicio.
+ * No hay clave por defecto: sin {@code contabilidad.firma.claves} el servicio no arranca.
+ *
+ * Cada hilo reutiliza sus instancias de {@link Mac} y sus buffers, y la codificación
+ * canónica (bic, saldoDisponible, fondosBloqueados) se escribe como bytes fijos
+ * (longitud + BIC ASCII + centavos en long, tal como los guarda la cuenta), sin Strings
+ * ni BigDecimal intermedios.
+ */
+@Slf4j
+@Component
+public class FirmaIntegridad {
+
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final int MAX_VERSION = 255;
+    private static final int LARGO_BASE64 = 44; // 32 bytes de HMAC en Base64
+    private static final int MIN_BYTES_CLAVE = 32;
+
+    private final byte[][] claves = new byte[MAX_VERSION + 1][];
+    private final int versionActiva;
+    private final boolean aceptarLegado;
+    private final byte[] prefijoActivo;
+
+    private final ThreadLocal<Contexto> contexto = ThreadLocal.withInitial(Contexto::new);
+
+    public FirmaIntegridad(
+            @Value("${contabilidad.firma.claves:}") String claves,
+            @Value("${contabilidad.firma.version-activa:1}") int versionActiva,
+            @Value("${contabilidad.firma.aceptar-legado:false}") boolean aceptarLegado) {
+        if (claves == null || claves.isBlank()) {
+            throw new IllegalStateException("Falta contabilidad.firma.claves (CONTABILIDAD_FIRMA_CLAVES): "
+                    + "se requiere al menos una clave HMAC version:claveBase64");
+        }
+        for (String par : claves.split(",")) {
+            String[] partes = par.trim().split(":", 2);
+            if (partes.length != 2) {
+                throw new IllegalStateException("Formato de contabilidad.firma.claves inválido, se espera version:claveBase64");
+            }
+            int version = Integer.parseInt(partes[0].trim());
+            if (version < 1 || version > MAX_VERSION) {
+                throw new IllegalStateException("Versión de clave de firma fuera de rango: " + version);
+            }
+            byte[] clave = Base64.getDecoder().decode(partes[1].trim());
+            if (clave.length < MIN_BYTES_CLAVE) {
+                throw new IllegalStateException("La clave de firma v" + version + " debe tener al menos "
+                        + MIN_BYTES_CLAVE + " bytes");
+            }
+            this.claves[version] = clave;
+        }
+        if (this.claves[versionActiva] == null) {
+            throw new IllegalStateException("No hay clave configurada para la versión activa de firma: " + versionActiva);
+        }
+        this.versionActiva = versionActiva;
+        this.aceptarLegado = aceptarLegado;
+        this.prefijoActivo = ("v" + versionActiva + ":").getBytes(StandardCharsets.US_ASCII);
+        log.info("[FIRMA] HMAC-SHA256 con clave activa v{} (legado {})", versionActiva,
+                aceptarLegado ? "aceptado" : "rechazado");
+    }
+
+    /**
+     * Firma el estado actual de la cuenta con la clave activa.
+     */
+    public String firmar(CuentaTecnica cuenta) {
+        Contexto ctx = contexto.get();
+        int largo = calcular(ctx, versionActiva, cuenta);
+        System.arraycopy(prefijoActivo, 0, ctx.salida, 0, prefijoActivo.length);
+        System.arraycopy(ctx.base64, 0, ctx.salida, prefijoActivo.length, largo);
+        return new String(ctx.salida, 0, prefijoActivo.length + largo, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Verifica la firma almacenada en la cuenta con la versión de clave que indica su prefijo.
+     */
+    public boolean verificar(CuentaTecnica cuenta) {
+        String firma = cuenta.getFirmaIntegridad();
+        if (firma == null) {
+            return false;
+        }
+        int version = versionDe(firma);
+        if (version < 0) {
+            return aceptarLegado && firmaLegada(cuenta).equals(firma);
+        }
+        if (claves[version] == null) {
+            return false;
+        }
+        Contexto ctx = contexto.get();
+        int largo = calcular(ctx, version, cuenta);
+        int inicio = firma.indexOf(':') + 1;
+        if (firma.length() - inicio != largo) {
+            return false;
+        }
+        int diferencia = 0;
+        for (int i = 0; i < largo; i++) {
+            diferencia |= firma.charAt(inicio + i) ^ ctx.base64[i];
+        }
+        return diferencia == 0;
+    }
+
+    /**
+     * Indica si la firma (ya verificada) fue hecha con una clave distinta de la activa.
+     */
+    public boolean requiereRefirma(String firma) {
+        return versionDe(firma) != versionActiva;
+    }
+
+    private int calcular(Contexto ctx, int version, CuentaTecnica cuenta) {
+        byte[] datos = ctx.datos;
+        String bic = cuenta.getBic();
+        int n = bic.length();
+        if (n + 17 > datos.length) {
+            throw new RuntimeException("BIC demasiado largo para la firma de integridad: " + bic);
+        }
+        int p = 0;
+        datos[p++] = (byte) n;
+        for (int i = 0; i < n; i++) {
+            datos[p++] = (byte) bic.charAt(i);
+        }
+        p = escribirLong(datos, p, cuenta.getSaldoDisponible());
+        p = escribirLong(datos, p, cuenta.getFondosBloqueados());
+
+        try {
+            Mac mac = ctx.mac(version, claves[version]);
+            mac.update(datos, 0, p);
+            mac.doFinal(ctx.digest, 0);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error calculando firma de integridad", e);
+        }
+        return Base64.getEncoder().encode(ctx.digest, ctx.base64);
+    }
+
+    private static int escribirLong(byte[] destino, int p, long valor) {
+        for (int i = 7; i >= 0; i--) {
+            destino[p++] = (byte) (valor >>> (i * 8));
+        }
+        return p;
+    }
+
+    private static int versionDe(String firma) {
+        if (firma.length() < 3 || firma.charAt(0) != 'v') {
+            return -1;
+        }
+        int version = 0;
+        for (int i = 1; i < firma.length(); i++) {
+            char c = firma.charAt(i);
+            if (c == ':') {
+                return i > 1 && version <= MAX_VERSION ? version : -1;
+            }
+            if (c < '0' || c > '9' || i > 3) {
+                return -1;
+            }
+            version = version * 10 + (c - '0');
+        }
+        return -1;
+    }
+
+    /**
+     * Firma del esquema anterior (SHA-256 con secreto embebido). Solo se usa para aceptar
+     * cuentas aún no migradas; al siguiente cambio de saldo se re-firman con HMAC.
+     */
+    private static String firmaLegada(CuentaTecnica c) {
+        try {
+            String secretKey = "SECRET_KEY_INTERNAL_LEDGER_V3";
+            String saldoFormateado = Centavos.aBigDecimal(c.getSaldoDisponible()).toString();
+            String bloqueadoFormateado = Centavos.aBigDecimal(c.getFondosBloqueados()).toString();
+            String data = saldoFormateado + bloqueadoFormateado + c.getBic() + secretKey;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error calculando hash", e);
+        }
+    }
+
+    private static final class Contexto {
+        private final Mac[] macs = new Mac[MAX_VERSION + 1];
+        private final byte[] datos = new byte[64];
+        private final byte[] digest = new byte[32];
+        private final byte[] base64 = new byte[LARGO_BASE64];
+        private final byte[] salida = new byte[LARGO_BASE64 + 8];
+
+        private Mac mac(int version, byte[] clave) throws GeneralSecurityException {
+            Mac mac = macs[version];
+            if (mac == null) {
+                mac = Mac.getInstance(ALGORITMO);
+                mac.init(new SecretKeySpec(clave, ALGORITMO));
+                macs[version] = mac;
+            }
+            return mac;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.switchbank.mscontabilidad.dto.CuentaDTO;
+import com.switchbank.mscontabilidad.modelo.RegistroIdempotencia;
+import com.switchbank.mscontabilidad.repositorio.RegistroIdempotenciaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Índice de idempotencia de las instrucciones mutantes.
+ *
+ * La respuesta original de cada instrucción se guarda en {@code RegistroIdempotencia}
+ * (único por idInstruccion + operación + BIC) y un reintento la recibe tal cual.
+ * Para que una instrucción nueva no pague una consulta a BD, delante del registro hay un
+ * filtro de Bloom con todas las claves conocidas y un LRU acotado con las respuestas
+ * recientes: solo un "quizás" del filtro que no esté en el LRU llega a la base.
+ *
+ * Las llamadas deben hacerse desde el carril contable del BIC y dentro de su transacción;
+ * el filtro y el LRU se actualizan solo cuando la transacción confirma.
+ */
+@Slf4j
+@Component
+public class IndiceIdempotencia {
+
+    public static final String OP_REGISTRO = "REGISTRO";
+    public static final String OP_RECARGA = "RECARGA";
+    public static final String OP_RESERVA = "RESERVA";
+    public static final String OP_REVERSO = "REVERSO";
+
+    // Restricción única del registro (V2__esquema_ledger.sql)
+    private static final String RESTRICCION_UNICA = "uk_idempotencia_instruccion";
+
+    private final RegistroIdempotenciaRepository repo;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate lectura;
+    private final FiltroBloom filtro;
+    private final Map<String, String> recientes;
+
+    // Hasta cargar el filtro desde BD, todo "quizás" existe.
+    private volatile boolean cargado;
+
+    private final AtomicLong aciertosRecientes = new AtomicLong();
+    private final AtomicLong descartesFiltro = new AtomicLong();
+    private final AtomicLong consultasBd = new AtomicLong();
+
+    public IndiceIdempotencia(RegistroIdempotenciaRepository repo, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${contabilidad.idempotencia.bloom-capacidad:5000000}") long capacidad,
+            @Value("${contabilidad.idempotencia.bloom-falsos-positivos:0.01}") double falsosPositivos,
+            @Value("${contabilidad.idempotencia.recientes:100000}") int maxRecientes) {
+        this.repo = repo;
+        this.objectMapper = objectMapper;
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.filtro = new FiltroBloom(capacidad, falsosPositivos);
+        this.recientes = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> mayor) {
+                return size() > maxRecientes;
+            }
+        });
+        log.info("[IDEMPOTENCIA] Filtro de Bloom de {} KB para {} claves, LRU de {} respuestas",
+                filtro.tamanoBytes() / 1024, capacidad, maxRecientes);
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void cargar() {
+        long inicio = System.nanoTime();
+        long total = lectura.execute(status -> {
+            long n = 0;
+            try (Stream<Object[]> claves = repo.streamClaves()) {
+                for (Object[] fila : (Iterable<Object[]>) claves::iterator) {
+                    agregarAlFiltro((UUID) fila[0], (String) fila[1], (String) fila[2]);
+                    n++;
+                }
+            }
+            return n;
+        });
+        cargado = true;
+        log.info("[IDEMPOTENCIA] {} instrucciones cargadas en {} ms", total, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Devuelve la respuesta original si la instrucción ya fue aplicada.
+     */
+    public Optional<CuentaDTO> buscar(String operacion, String bic, UUID idInstruccion) {
+        if (idInstruccion == null) {
+            return Optional.empty();
+        }
+        String clave = clave(operacion, bic, idInstruccion);
+        String json = recientes.get(clave);
+        if (json != null) {
+            aciertosRecientes.incrementAndGet();
+            return Optional.of(leer(json));
+        }
+        if (cargado && !filtro.podriaContener(h1(operacion, bic, idInstruccion), h2(operacion, bic, idInstruccion))) {
+            descartesFiltro.incrementAndGet();
+            return Optional.empty();
+        }
+        consultasBd.incrementAndGet();
+        return repo.findRespuesta(idInstruccion, operacion, bic).map(respuesta -> {
+            recientes.put(clave, respuesta);
+            return leer(respuesta);
+        });
+    }
+
+    /**
+     * Guarda la respuesta de una instrucción recién aplicada, en la transacción en curso.
+     */
+    public void registrar(String operacion, String bic, UUID idInstruccion, CuentaDTO respuesta) {
+        if (idInstruccion != null) {
+            registrarTodos(List.of(new RegistroIdempotencia(idInstruccion, operacion, bic, escribir(respuesta))));
+        }
+    }
+
+    public RegistroIdempotencia nuevoRegistro(String operacion, String bic, UUID idInstruccion, CuentaDTO respuesta) {
+        return new RegistroIdempotencia(idInstruccion, operacion, bic, escribir(respuesta));
+    }
+
+    public void registrarTodos(List<RegistroIdempotencia> registros) {
+        if (registros.isEmpty()) {
+            return;
+        }
+        try {
+            repo.saveAll(registros);
+            repo.flush();
+        } catch (DataIntegrityViolationException e) {
+            // El flush incluye todo el contexto de persistencia: otras violaciones (p. ej.
+            // idInstruccion repetido en Retencion) no son conflictos y se propagan tal cual.
+            if (!violaRestriccionUnica(e)) {
+                throw e;
+            }
+            // Otro nodo aplicó la misma instrucción: se marca en el filtro para que el
+            // reintento consulte la BD y devuelva la respuesta que ese nodo guardó.
+            registros.forEach(r -> agregarAlFiltro(r.getIdInstruccion(), r.getOperacion(), r.getBic()));
+            throw new OptimisticLockingFailureException("Instrucción ya registrada por otro escritor", e);
+        }
+        List<RegistroIdempotencia> confirmados = new ArrayList<>(registros);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordar(confirmados);
+            }
+        });
+    }
+
+    /**
+     * Para asientos aceptados por el diario antes de existir en BD: el reintento se
+     * resuelve desde memoria hasta que el drenado persista el registro.
+     */
+    public void recordarPendiente(String operacion, String bic, UUID idInstruccion, CuentaDTO respuesta) {
+        recordar(List.of(nuevoRegistro(operacion, bic, idInstruccion, respuesta)));
+    }
+
+    // Un asiento del diario que nunca llegó a ser durable no debe responder reintentos.
+    public void olvidar(String operacion, String bic, UUID idInstruccion) {
+        if (idInstruccion != null) {
+            recientes.remove(clave(operacion, bic, idInstruccion));
+        }
+    }
+
+    public Map<String, Long> estadisticas() {
+        return Map.of(
+                "aciertosRecientes", aciertosRecientes.get(),
+                "descartesFiltro", descartesFiltro.get(),
+                "consultasBd", consultasBd.get());
+    }
+
+    private void recordar(List<RegistroIdempotencia> registros) {
+        for (RegistroIdempotencia r : registros) {
+            agregarAlFiltro(r.getIdInstruccion(), r.getOperacion(), r.getBic());
+            recientes.put(clave(r.getOperacion(), r.getBic(), r.getIdInstruccion()), r.getRespuesta());
+        }
+    }
+
+    private static boolean violaRestriccionUnica(DataIntegrityViolationException e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ConstraintViolationException cve) {
+                // Postgres la informa en minúsculas; H2 en mayúsculas y con sufijo del índice
+                return cve.getConstraintName() != null
+                        && cve.getConstraintName().toLowerCase(Locale.ROOT).contains(RESTRICCION_UNICA);
+            }
+        }
+        return false;
+    }
+
+    private void agregarAlFiltro(UUID id, String operacion, String bic) {
+        filtro.agregar(h1(operacion, bic, id), h2(operacion, bic, id));
+    }
+
+    private static String clave(String operacion, String bic, UUID id) {
+        return operacion + ':' + bic + ':' + id;
+    }
+
+    private static long h1(String operacion, String bic, UUID id) {
+        return mezclar(id.getMostSignificantBits() ^ (31L * operacion.hashCode() + bic.hashCode()));
+    }
+
+    // Impar, para que el doble hashing recorra todas las posiciones del filtro.
+    private static long h2(String operacion, String bic, UUID id) {
+        return mezclar(id.getLeastSignificantBits() + bic.hashCode()) | 1L;
+    }
+
+    private static long mezclar(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    private CuentaDTO leer(String json) {
+        try {
+            return objectMapper.readValue(json, CuentaDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Respuesta idempotente ilegible", e);
+        }
+    }
+
+    private String escribir(CuentaDTO respuesta) {
+        try {
+            return objectMapper.writeValueAsString(respuesta);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("No se pudo serializar la respuesta idempotente", e);
+        }
+    }
+}
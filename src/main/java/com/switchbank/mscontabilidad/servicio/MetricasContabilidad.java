@@ -0,0 +1,218 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.excepcion.CapacidadAgotadaException;
+import com.switchbank.mscontabilidad.excepcion.ConflictoConcurrenciaException;
+import com.switchbank.mscontabilidad.excepcion.SaldoInsuficienteException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Métricas del camino caliente del ledger.
+ *
+ * <ul>
+ * <li>{@code contabilidad.operacion}: latencia por operación, BIC y resultado, con buckets
+ * fijos para que Prometheus calcule percentiles.</li>
+ * <li>{@code contabilidad.bd.sentencias}: idas y vueltas a BD por operación.</li>
+ * <li>{@code contabilidad.integridad}: tiempo de firma y validación de integridad.</li>
+ * <li>{@code contabilidad.saldo.insuficiente}: rechazos por fondos insuficientes.</li>
+ * <li>{@code contabilidad.lote.tamano} y {@code contabilidad.compensacion.posiciones}.</li>
+ * <li>{@code contabilidad.archivo.movimientos}: movimientos trasladados al histórico.</li>
+ * <li>{@code contabilidad.feed.publicados}: eventos publicados en el feed de movimientos.</li>
+ * </ul>
+ *
+ * La etiqueta {@code bic} está acotada: solo los primeros {@code max-bics} BIC con una
+ * operación exitosa llevan su propio valor; el resto (y cualquier BIC inexistente) se
+ * agrupa en {@link #OTROS}, así un cliente no puede crear series a voluntad.
+ */
+@Slf4j
+@Component
+public class MetricasContabilidad {
+
+    public static final String OP_REGISTRO = "registro";
+    public static final String OP_LOTE = "lote";
+    public static final String OP_RECARGA = "recarga";
+    public static final String OP_RESERVA = "reserva";
+    public static final String OP_REVERSO = "reverso";
+    public static final String OP_REVERSO_LOTE = "reverso_lote";
+    public static final String OP_COMPENSACION = "compensacion";
+    public static final String OP_CAPTURA = "captura";
+    public static final String OP_LIBERACION = "liberacion";
+
+    public static final String OTROS = "OTROS";
+    // Operaciones que abarcan varias cuentas
+    public static final String VARIOS = "*";
+
+    private static final Duration[] BUCKETS_LATENCIA = {
+            Duration.ofMillis(1), Duration.ofMillis(2), Duration.ofMillis(5), Duration.ofMillis(10),
+            Duration.ofMillis(25), Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250),
+            Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2500), Duration.ofSeconds(5) };
+
+    private final MeterRegistry registry;
+    private final int maxBics;
+    private final Set<String> bicsEtiquetados = ConcurrentHashMap.newKeySet();
+    private final Map<String, DistributionSummary> sentenciasPorOp = new ConcurrentHashMap<>();
+    private final Timer firma;
+    private final Timer validacion;
+    private final DistributionSummary tamanoLote;
+    private final DistributionSummary posicionesCompensacion;
+
+    public MetricasContabilidad(MeterRegistry registry,
+            @Value("${contabilidad.metricas.max-bics:50}") int maxBics) {
+        this.registry = registry;
+        this.maxBics = Math.max(0, maxBics);
+        this.firma = Timer.builder("contabilidad.integridad").tag("fase", "firma").register(registry);
+        this.validacion = Timer.builder("contabilidad.integridad").tag("fase", "validacion").register(registry);
+        this.tamanoLote = DistributionSummary.builder("contabilidad.lote.tamano")
+                .baseUnit("movimientos")
+                .serviceLevelObjectives(1, 10, 100, 1_000, 10_000, 100_000)
+                .register(registry);
+        this.posicionesCompensacion = DistributionSummary.builder("contabilidad.compensacion.posiciones")
+                .baseUnit("posiciones")
+                .serviceLevelObjectives(2, 10, 50, 100, 500, 1_000, 5_000)
+                .register(registry);
+    }
+
+    public <T> T medir(String operacion, String bic, Supplier<T> accion) {
+        Medicion medicion = iniciar(operacion, bic);
+        try {
+            T resultado = accion.get();
+            medicion.exito();
+            return resultado;
+        } catch (RuntimeException e) {
+            medicion.fallo(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Para operaciones cuyo BIC se conoce recién dentro de la medición.
+     */
+    public Medicion iniciar(String operacion, String bic) {
+        return new Medicion(operacion, bic);
+    }
+
+    public String firmar(Supplier<String> firmar) {
+        return firma.record(firmar);
+    }
+
+    public void validar(Runnable validar) {
+        validacion.record(validar);
+    }
+
+    public void saldoInsuficiente(String operacion, String bic) {
+        registry.counter("contabilidad.saldo.insuficiente", "op", operacion, "bic", etiquetaBic(bic)).increment();
+    }
+
+    public void tamanoLote(int movimientos) {
+        tamanoLote.record(movimientos);
+    }
+
+    public void posicionesCompensacion(int posiciones) {
+        posicionesCompensacion.record(posiciones);
+    }
+
+    public void movimientosArchivados(int movimientos) {
+        registry.counter("contabilidad.archivo.movimientos").increment(movimientos);
+    }
+
+    public void eventosPublicados(int eventos) {
+        registry.counter("contabilidad.feed.publicados").increment(eventos);
+    }
+
+    /**
+     * Eventos de contención (conflicto, reintento, aborto) de {@link PoliticaReintentos}.
+     */
+    public void contencion(String evento, String bic) {
+        registry.counter("contabilidad.contencion", "evento", evento, "bic", etiquetaBic(bic)).increment();
+    }
+
+    public String etiquetaBic(String bic) {
+        if (bic == null || VARIOS.equals(bic)) {
+            return VARIOS;
+        }
+        return bicsEtiquetados.contains(bic) ? bic : OTROS;
+    }
+
+    private void admitir(String bic) {
+        if (bic != null && !VARIOS.equals(bic) && bicsEtiquetados.size() < maxBics && bicsEtiquetados.add(bic)) {
+            if (bicsEtiquetados.size() == maxBics) {
+                log.info("[METRICAS] Límite de {} BIC etiquetados alcanzado; los nuevos se agrupan en {}", maxBics,
+                        OTROS);
+            }
+        }
+    }
+
+    private static String resultado(RuntimeException e) {
+        if (e instanceof SaldoInsuficienteException) {
+            return "saldo_insuficiente";
+        }
+        if (e instanceof ConflictoConcurrenciaException) {
+            return "conflicto";
+        }
+        if (e instanceof CapacidadAgotadaException) {
+            return "capacidad_agotada";
+        }
+        return "rechazado";
+    }
+
+    public final class Medicion {
+        private final String operacion;
+        private final long inicio = System.nanoTime();
+        private final AtomicLong sentencias = ContadorSentencias.iniciar();
+        private String bic;
+
+        private Medicion(String operacion, String bic) {
+            this.operacion = operacion;
+            this.bic = bic;
+        }
+
+        public void bic(String bic) {
+            this.bic = bic;
+        }
+
+        public void exito() {
+            admitir(bic);
+            terminar("ok");
+        }
+
+        public void fallo(RuntimeException e) {
+            if (e instanceof SaldoInsuficienteException) {
+                saldoInsuficiente(operacion, bic);
+            }
+            terminar(resultado(e));
+        }
+
+        private void terminar(String resultado) {
+            long duracion = System.nanoTime() - inicio;
+            Timer.builder("contabilidad.operacion")
+                    .tag("op", operacion)
+                    .tag("bic", etiquetaBic(bic))
+                    .tag("resultado", resultado)
+                    .serviceLevelObjectives(BUCKETS_LATENCIA)
+                    .register(registry)
+                    .record(duracion, TimeUnit.NANOSECONDS);
+            if (sentencias != null) {
+                ContadorSentencias.terminar();
+                sentenciasPorOp.computeIfAbsent(operacion, op -> DistributionSummary
+                        .builder("contabilidad.bd.sentencias")
+                        .baseUnit("sentencias")
+                        .tag("op", op)
+                        .serviceLevelObjectives(1, 2, 4, 8, 16, 32, 64, 128)
+                        .register(registry))
+                        .record(sentencias.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Motor de contabilización "single-writer": toda mutación de una misma cuenta
+ * (BIC) se ejecuta en un único carril (hilo) en orden de llegada.
+ * Los BIC se reparten entre carriles por hash, así dos débitos concurrentes
+ * sobre el mismo banco nunca compiten por la fila y bancos distintos escalan
+ * en paralelo con el número de carriles.
+ */
+@Slf4j
+@Component
+public class MotorContabilizacion {
+
+    // Estados de una operación encolada con ejecutar()
+    private static final int ENCOLADA = 0;
+    private static final int EN_CURSO = 1;
+    private static final int CANCELADA = 2;
+
+    private final boolean habilitado;
+    private final long timeoutMs;
+    private final ExecutorService[] carriles;
+    // Solo espera y reencola: lo reprogramado corre siempre en su carril
+    private final ScheduledExecutorService programador;
+    private final ThreadLocal<Integer> carrilActual = new ThreadLocal<>();
+
+    public MotorContabilizacion(
+            @Value("${contabilidad.motor.habilitado:true}") boolean habilitado,
+            @Value("${contabilidad.motor.carriles:0}") int carriles,
+            @Value("${contabilidad.motor.timeout-ms:10000}") long timeoutMs) {
+        this.habilitado = habilitado;
+        this.timeoutMs = timeoutMs;
+        int total = carriles > 0 ? carriles : Runtime.getRuntime().availableProcessors();
+        this.carriles = new ExecutorService[total];
+        for (int i = 0; i < total; i++) {
+            final int indice = i;
+            this.carriles[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(() -> {
+                    carrilActual.set(indice);
+                    r.run();
+                }, "carril-contable-" + indice);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        this.programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "carril-contable-programador");
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("[MOTOR] Contabilización single-writer {} con {} carriles",
+                habilitado ? "habilitada" : "deshabilitada", total);
+    }
+
+    /**
+     * Ejecuta la operación en el carril del BIC y espera su resultado.
+     * Si ya estamos dentro de ese carril (llamada anidada) se ejecuta directamente.
+     *
+     * El timeout solo cubre la espera en cola: si vence antes de que la operación empiece,
+     * se cancela y no llega a ejecutarse. Una vez empezada se espera su resultado, porque
+     * responder un error mientras la operación confirma dejaría al cliente reintentando algo
+     * ya aplicado.
+     */
+    public <T> T ejecutar(String bic, Supplier<T> operacion) {
+        if (!habilitado || bic == null || enCarril(bic)) {
+            return operacion.get();
+        }
+        AtomicInteger estado = new AtomicInteger(ENCOLADA);
+        CompletableFuture<T> futuro = CompletableFuture.supplyAsync(ContadorSentencias.propagar(() -> {
+            if (!estado.compareAndSet(ENCOLADA, EN_CURSO)) {
+                return null; // Cancelada: quien la encoló ya respondió el timeout
+            }
+            return operacion.get();
+        }), carriles[indiceCarril(bic)]);
+        return esperar(bic, estado, futuro);
+    }
+
+    /**
+     * Como {@link #ejecutar}, para operaciones cuya primera parte corre en el carril y que
+     * pueden continuar reencoladas con {@link #enviarTras}: el resultado es el del futuro que
+     * devuelven. Cuenta como empezada desde que corre la primera parte. No debe llamarse desde
+     * el carril del BIC, que quedaría esperándose a sí mismo.
+     */
+    public <T> T ejecutarEncadenada(String bic, Supplier<CompletableFuture<T>> operacion) {
+        if (enCarril(bic)) {
+            throw new IllegalStateException("Operación encadenada invocada desde el carril del BIC: " + bic);
+        }
+        if (!habilitado || bic == null) {
+            try {
+                return operacion.get().join();
+            } catch (CompletionException e) {
+                throw desenvolver(e);
+            }
+        }
+        AtomicInteger estado = new AtomicInteger(ENCOLADA);
+        CompletableFuture<T> futuro = CompletableFuture.supplyAsync(ContadorSentencias.propagar(() -> {
+            if (!estado.compareAndSet(ENCOLADA, EN_CURSO)) {
+                return CompletableFuture.<T>completedFuture(null);
+            }
+            return operacion.get();
+        }), carriles[indiceCarril(bic)]).thenCompose(Function.identity());
+        return esperar(bic, estado, futuro);
+    }
+
+    private <T> T esperar(String bic, AtomicInteger estado, CompletableFuture<T> futuro) {
+        try {
+            try {
+                return futuro.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (estado.compareAndSet(ENCOLADA, CANCELADA)) {
+                    throw new RuntimeException("Tiempo de espera agotado en la cola del carril contable del BIC: "
+                            + bic + " (la operación no se aplicó)");
+                }
+                return futuro.get();
+            }
+        } catch (ExecutionException e) {
+            throw desenvolver(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (estado.compareAndSet(ENCOLADA, CANCELADA)) {
+                throw new RuntimeException("Operación contable interrumpida para BIC: " + bic
+                        + " (la operación no se aplicó)");
+            }
+            throw new RuntimeException("Operación contable interrumpida para BIC: " + bic
+                    + " (la operación ya estaba en curso; consultar su resultado)");
+        }
+    }
+
+    /**
+     * Encola la operación en el carril del BIC sin esperar su resultado.
+     */
+    public <T> CompletableFuture<T> enviar(String bic, Supplier<T> operacion) {
+        if (!habilitado || bic == null) {
+            try {
+                return CompletableFuture.completedFuture(operacion.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(ContadorSentencias.propagar(operacion), carriles[indiceCarril(bic)]);
+    }
+
+    /**
+     * Encola la operación en el carril del BIC pasados {@code esperaMs}. Mientras tanto el
+     * carril sigue con el resto de su cola: una espera (p. ej. el backoff de un reintento)
+     * no detiene a los demás BIC que comparten carril.
+     */
+    public <T> CompletableFuture<T> enviarTras(String bic, long esperaMs, Supplier<T> operacion) {
+        Supplier<T> tarea = ContadorSentencias.propagar(operacion);
+        if (!habilitado || bic == null) {
+            return CompletableFuture.supplyAsync(tarea,
+                    CompletableFuture.delayedExecutor(esperaMs, TimeUnit.MILLISECONDS));
+        }
+        ExecutorService carril = carriles[indiceCarril(bic)];
+        CompletableFuture<T> futuro = new CompletableFuture<>();
+        try {
+            programador.schedule(() -> {
+                try {
+                    carril.execute(() -> {
+                        try {
+                            futuro.complete(tarea.get());
+                        } catch (Throwable e) {
+                            futuro.completeExceptionally(e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    futuro.completeExceptionally(e); // Carril detenido: no dejar al llamador esperando
+                }
+            }, esperaMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            futuro.completeExceptionally(e);
+        }
+        return futuro;
+    }
+
+    /**
+     * Indica si el hilo actual es el carril del BIC.
+     */
+    public boolean enCarril(String bic) {
+        return habilitado && bic != null && Integer.valueOf(indiceCarril(bic)).equals(carrilActual.get());
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    public static RuntimeException desenvolver(Throwable causa) {
+        while ((causa instanceof CompletionException || causa instanceof ExecutionException)
+                && causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+        if (causa instanceof RuntimeException re) {
+            return re;
+        }
+        return new RuntimeException(causa);
+    }
+
+    private int indiceCarril(String bic) {
+        return Math.floorMod(bic.hashCode(), carriles.length);
+    }
+
+    @PreDestroy
+    public void detener() {
+        // Los reintentos ya programados se reencolan antes de cerrar los carriles
+        programador.shutdown();
+        try {
+            programador.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ExecutorService carril : carriles) {
+            carril.shutdown();
+        }
+        for (ExecutorService carril : carriles) {
+            try {
+                if (!carril.awaitTermination(5, TimeUnit.SECONDS)) {
+                    carril.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                carril.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.CierreCicloDTO;
+import com.switchbank.mscontabilidad.dto.EventoMovimientoDTO;
+import com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO;
+import com.switchbank.mscontabilidad.dto.SolicitudCompensacionDTO.PosicionBancariaDTO;
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import com.switchbank.mscontabilidad.modelo.CierreCiclo;
+import com.switchbank.mscontabilidad.modelo.EventoMovimiento;
+import com.switchbank.mscontabilidad.modelo.PosicionCiclo;
+import com.switchbank.mscontabilidad.modelo.TipoMovimiento;
+import com.switchbank.mscontabilidad.repositorio.CierreCicloRepository;
+import com.switchbank.mscontabilidad.repositorio.EventoMovimientoRepository;
+import com.switchbank.mscontabilidad.repositorio.PosicionCicloRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Neteo multilateral de los ciclos de clearing dentro del ledger.
+ *
+ * Mantiene por BIC los débitos y créditos del ciclo abierto, al estilo del cálculo que hacía
+ * Compensación sobre {@code /range}: DEBIT suma a débitos, CREDIT a créditos, y un reverso
+ * suma al lado contrario del original en la misma cuenta (devolver un débito acredita).
+ * RECHARGE y SETTLEMENT no son parte del clearing.
+ *
+ * Los acumuladores se actualizan con cada lote que publica {@link FeedMovimientos}, así un
+ * ciclo es exactamente un rango de secuencias del feed: el cierre corta en la última
+ * secuencia acumulada y las posiciones salen de los acumuladores, en O(participantes). Al
+ * arrancar, tras un error o al detectar un salto de secuencia (eventos que publicó otra
+ * réplica) se reconstruyen leyendo solo los eventos del ciclo abierto.
+ */
+@Slf4j
+@Service
+public class NeteoCiclos {
+
+    private static final String ABIERTO = "ABIERTO";
+    private static final String CERRADO = "CERRADO";
+    private static final String YA_CERRADO = "YA_CERRADO";
+    private static final int LOTE_RECONSTRUCCION = 10_000;
+
+    private final EventoMovimientoRepository eventoRepo;
+    private final CierreCicloRepository cierreRepo;
+    private final PosicionCicloRepository posicionRepo;
+    private final ArchivoMovimientos archivo;
+    private final FeedMovimientos feed;
+    private final CompensacionServicio compensacion;
+    private final BulkheadBd bulkhead;
+    private final TransactionTemplate transaccion;
+    private final TransactionTemplate lectura;
+
+    // Estado del ciclo abierto; solo se toca con el cerrojo tomado
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Map<String, Acumulador> acumuladores = new TreeMap<>();
+    private long secuenciaDesde;
+    // -1: sin cargar (arranque o error), se reconstruye en el próximo uso
+    private long secuenciaAcumulada = -1;
+
+    public NeteoCiclos(EventoMovimientoRepository eventoRepo,
+            CierreCicloRepository cierreRepo,
+            PosicionCicloRepository posicionRepo,
+            ArchivoMovimientos archivo,
+            FeedMovimientos feed,
+            CompensacionServicio compensacion,
+            BulkheadBd bulkhead,
+            PlatformTransactionManager transactionManager) {
+        this.eventoRepo = eventoRepo;
+        this.cierreRepo = cierreRepo;
+        this.posicionRepo = posicionRepo;
+        this.archivo = archivo;
+        this.feed = feed;
+        this.compensacion = compensacion;
+        this.bulkhead = bulkhead;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        feed.alPublicar(this::acumular);
+    }
+
+    /**
+     * Suma un lote recién publicado; corre en el hilo del publicador, después de confirmar.
+     */
+    void acumular(List<EventoMovimiento> publicados) {
+        cerrojo.lock();
+        try {
+            if (secuenciaAcumulada < 0) {
+                // La reconstrucción lee lo ya publicado, este lote incluido
+                cargar();
+                return;
+            }
+            List<EventoMovimiento> nuevos = publicados.stream()
+                    .filter(e -> e.getSecuencia() > secuenciaAcumulada)
+                    .toList();
+            if (nuevos.isEmpty()) {
+                return;
+            }
+            if (nuevos.get(0).getSecuencia() != secuenciaAcumulada + 1) {
+                // Otra réplica publicó secuencias intermedias que este listener no ve
+                cargar();
+                return;
+            }
+            Map<String, Set<UUID>> originalesDebito = originalesDebito(nuevos.stream()
+                    .filter(e -> e.getTipo() == TipoMovimiento.REVERSAL)
+                    .map(EventoMovimiento::getReferenciaId));
+            for (EventoMovimiento e : nuevos) {
+                sumar(e.getBic(), e.getTipo(), e.getMonto(), e.getReferenciaId(), originalesDebito);
+                secuenciaAcumulada = e.getSecuencia();
+            }
+        } catch (RuntimeException e) {
+            // Sin este lote los acumuladores ya no son exactos: se reconstruyen en el próximo uso
+            log.error("[NETEO] Error acumulando el lote publicado; se reconstruirá el ciclo abierto: {}",
+                    e.getMessage());
+            secuenciaAcumulada = -1;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public CierreCicloDTO cicloAbierto() {
+        cerrojo.lock();
+        try {
+            asegurarCargado();
+            List<PosicionBancariaDTO> posiciones = posicionesAbiertas();
+            return CierreCicloDTO.builder()
+                    .estado(ABIERTO)
+                    .secuenciaDesde(secuenciaDesde)
+                    .secuenciaHasta(secuenciaAcumulada)
+                    .posiciones(posiciones)
+                    .neto(neto(posiciones))
+                    .build();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public CierreCicloDTO consultar(Integer cicloId) {
+        return lectura.execute(status -> cierreRepo.findById(cicloId)
+                .map(cierre -> dto(cierre, YA_CERRADO))
+                .orElseThrow(() -> new RuntimeException("Ciclo no cerrado: " + cicloId)));
+    }
+
+    /**
+     * Corta el ciclo abierto y registra sus posiciones bajo {@code cicloId}; lo publicado a
+     * partir de ahí pertenece al ciclo siguiente. Con {@code aplicar} además se asientan con
+     * {@link CompensacionServicio#aplicarCompensacion}, idempotente por cicloId: si el asiento
+     * falla, el corte queda hecho y repetir la llamada reintenta solo el asiento.
+     */
+    public CierreCicloDTO cerrar(Integer cicloId, boolean aplicar) {
+        if (cicloId == null) {
+            throw new RuntimeException("cicloId es obligatorio");
+        }
+        if (!feed.isHabilitado()) {
+            throw new RuntimeException("El neteo de ciclos requiere el feed de movimientos (contabilidad.feed.habilitado)");
+        }
+        // Lo confirmado antes del cierre entra al corte (salvo que una pasada ya esté en curso)
+        feed.publicar();
+
+        CierreCicloDTO cierre;
+        cerrojo.lock();
+        try {
+            cierre = bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> cortar(cicloId));
+        } finally {
+            cerrojo.unlock();
+        }
+        log.info("[NETEO] Ciclo {} {}: {} participantes, secuencias ({}, {}], neto {}", cicloId, cierre.getEstado(),
+                cierre.getPosiciones().size(), cierre.getSecuenciaDesde(), cierre.getSecuenciaHasta(),
+                cierre.getNeto());
+
+        if (aplicar && !cierre.getPosiciones().isEmpty()) {
+            cierre.setCompensacion(compensacion.aplicarCompensacion(solicitud(cierre)));
+        }
+        return cierre;
+    }
+
+    private CierreCicloDTO cortar(Integer cicloId) {
+        CierreCiclo previo = lectura.execute(status -> cierreRepo.findById(cicloId).orElse(null));
+        if (previo != null) {
+            return lectura.execute(status -> dto(previo, YA_CERRADO));
+        }
+        asegurarCargado();
+        // Lo publicado por otra réplica no pasa por acumular(): el corte debe incluirlo
+        if (lectura.execute(status -> eventoRepo.findUltimaSecuencia()) > secuenciaAcumulada) {
+            cargar();
+        }
+
+        CierreCiclo cierre = new CierreCiclo();
+        cierre.setCicloId(cicloId);
+        cierre.setSecuenciaDesde(secuenciaDesde);
+        cierre.setSecuenciaHasta(secuenciaAcumulada);
+        cierre.setFechaCierre(LocalDateTime.now());
+        List<PosicionCiclo> posiciones = new ArrayList<>(acumuladores.size());
+        long neto = 0;
+        for (Map.Entry<String, Acumulador> entrada : acumuladores.entrySet()) {
+            Acumulador acc = entrada.getValue();
+            PosicionCiclo pos = new PosicionCiclo();
+            pos.setCicloId(cicloId);
+            pos.setBic(entrada.getKey());
+            pos.setTotalDebitos(Centavos.aBigDecimal(acc.debitos));
+            pos.setTotalCreditos(Centavos.aBigDecimal(acc.creditos));
+            pos.setPosicionNeta(Centavos.aBigDecimal(Centavos.restar(acc.creditos, acc.debitos)));
+            posiciones.add(pos);
+            neto = Centavos.sumar(neto, Centavos.restar(acc.creditos, acc.debitos));
+        }
+        cierre.setParticipantes(posiciones.size());
+        cierre.setNeto(Centavos.aBigDecimal(neto));
+
+        transaccion.executeWithoutResult(status -> {
+            cierreRepo.save(cierre);
+            posicionRepo.saveAll(posiciones);
+        });
+        // Solo con el cierre confirmado empieza el ciclo siguiente
+        acumuladores.clear();
+        secuenciaDesde = secuenciaAcumulada;
+
+        return CierreCicloDTO.builder()
+                .cicloId(cicloId)
+                .estado(CERRADO)
+                .secuenciaDesde(cierre.getSecuenciaDesde())
+                .secuenciaHasta(cierre.getSecuenciaHasta())
+                .fechaCierre(cierre.getFechaCierre())
+                .posiciones(posiciones.stream().map(NeteoCiclos::posicion).toList())
+                .neto(cierre.getNeto())
+                .build();
+    }
+
+    private void asegurarCargado() {
+        if (secuenciaAcumulada < 0) {
+            cargar();
+        }
+    }
+
+    /**
+     * Reconstruye los acumuladores con los eventos publicados después del último corte.
+     */
+    private void cargar() {
+        long t0 = System.nanoTime();
+        acumuladores.clear();
+        long desde = lectura.execute(status -> cierreRepo.findFirstByOrderBySecuenciaHastaDesc()
+                .map(CierreCiclo::getSecuenciaHasta)
+                .orElse(0L));
+        long cursor = desde;
+        List<EventoMovimientoDTO> pagina;
+        do {
+            long despues = cursor;
+            pagina = lectura.execute(status -> eventoRepo.findDTODespuesDe(despues, PageRequest.of(0, LOTE_RECONSTRUCCION)));
+            if (cursor == desde && desde > 0 && !pagina.isEmpty() && pagina.get(0).getSecuencia() > desde + 1) {
+                throw new RuntimeException("Eventos del ciclo abierto ya depurados del feed (desde la secuencia "
+                        + desde + "); revise contabilidad.feed.retencion-horas");
+            }
+            Map<String, Set<UUID>> originalesDebito = originalesDebito(pagina.stream()
+                    .filter(e -> TipoMovimiento.REVERSAL.name().equals(e.getTipo()))
+                    .map(EventoMovimientoDTO::getReferenciaId));
+            for (EventoMovimientoDTO e : pagina) {
+                sumar(e.getCodigoBic(), TipoMovimiento.valueOf(e.getTipo()), e.getMonto(), e.getReferenciaId(),
+                        originalesDebito);
+                cursor = e.getSecuencia();
+            }
+        } while (pagina.size() == LOTE_RECONSTRUCCION);
+        secuenciaDesde = desde;
+        secuenciaAcumulada = cursor;
+        log.info("[NETEO] Ciclo abierto reconstruido: secuencias ({}, {}], {} participantes en {} ms", desde, cursor,
+                acumuladores.size(), (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    // Por BIC: los dos tramos de una instrucción comparten idInstruccion y solo uno es débito
+    private Map<String, Set<UUID>> originalesDebito(Stream<UUID> referencias) {
+        Collection<UUID> ids = referencias.filter(Objects::nonNull).collect(Collectors.toSet());
+        return ids.isEmpty() ? Map.of() : lectura.execute(status -> archivo.originalesDebitoPorBic(ids));
+    }
+
+    private void sumar(String bic, TipoMovimiento tipo, BigDecimal monto, UUID referencia,
+            Map<String, Set<UUID>> originalesDebito) {
+        switch (tipo) {
+            case DEBIT -> acumulador(bic).debitar(Centavos.de(monto));
+            case CREDIT -> acumulador(bic).acreditar(Centavos.de(monto));
+            case REVERSAL -> {
+                if (originalesDebito.getOrDefault(bic, Set.of()).contains(referencia)) {
+                    acumulador(bic).acreditar(Centavos.de(monto));
+                } else {
+                    acumulador(bic).debitar(Centavos.de(monto));
+                }
+            }
+            default -> {
+                // RECHARGE y SETTLEMENT quedan fuera del clearing
+            }
+        }
+    }
+
+    private Acumulador acumulador(String bic) {
+        return acumuladores.computeIfAbsent(bic, k -> new Acumulador());
+    }
+
+    private List<PosicionBancariaDTO> posicionesAbiertas() {
+        List<PosicionBancariaDTO> posiciones = new ArrayList<>(acumuladores.size());
+        acumuladores.forEach((bic, acc) -> posiciones.add(posicion(bic, acc.debitos, acc.creditos)));
+        return posiciones;
+    }
+
+    private CierreCicloDTO dto(CierreCiclo cierre, String estado) {
+        return CierreCicloDTO.builder()
+                .cicloId(cierre.getCicloId())
+                .estado(estado)
+                .secuenciaDesde(cierre.getSecuenciaDesde())
+                .secuenciaHasta(cierre.getSecuenciaHasta())
+                .fechaCierre(cierre.getFechaCierre())
+                .posiciones(posicionRepo.findByCicloIdOrderByBic(cierre.getCicloId()).stream()
+                        .map(NeteoCiclos::posicion)
+                        .toList())
+                .neto(cierre.getNeto())
+                .build();
+    }
+
+    private static PosicionBancariaDTO posicion(PosicionCiclo pos) {
+        PosicionBancariaDTO dto = new PosicionBancariaDTO();
+        dto.setBic(pos.getBic());
+        dto.setTotalDebitos(pos.getTotalDebitos());
+        dto.setTotalCreditos(pos.getTotalCreditos());
+        dto.setPosicionNeta(pos.getPosicionNeta());
+        return dto;
+    }
+
+    private static PosicionBancariaDTO posicion(String bic, long debitos, long creditos) {
+        PosicionBancariaDTO dto = new PosicionBancariaDTO();
+        dto.setBic(bic);
+        dto.setTotalDebitos(Centavos.aBigDecimal(debitos));
+        dto.setTotalCreditos(Centavos.aBigDecimal(creditos));
+        dto.setPosicionNeta(Centavos.aBigDecimal(Centavos.restar(creditos, debitos)));
+        return dto;
+    }
+
+    private static BigDecimal neto(List<PosicionBancariaDTO> posiciones) {
+        return posiciones.stream().map(PosicionBancariaDTO::getPosicionNeta).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static SolicitudCompensacionDTO solicitud(CierreCicloDTO cierre) {
+        SolicitudCompensacionDTO req = new SolicitudCompensacionDTO();
+        req.setCicloId(cierre.getCicloId());
+        req.setPosiciones(cierre.getPosiciones());
+        return req;
+    }
+
+    private static final class Acumulador {
+        private long debitos;
+        private long creditos;
+
+        void debitar(long centavos) {
+            debitos = Centavos.sumar(debitos, centavos);
+        }
+
+        void acreditar(long centavos) {
+            creditos = Centavos.sumar(creditos, centavos);
+        }
+    }
+}
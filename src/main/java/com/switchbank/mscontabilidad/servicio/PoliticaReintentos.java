@@ -0,0 +1,176 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.ContencionCuentaDTO;
+import com.switchbank.mscontabilidad.excepcion.ConflictoConcurrenciaException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Reintento acotado de las mutaciones que pierden una carrera de concurrencia
+ * (versión optimista vencida o bloqueo no obtenido), con espera exponencial y jitter
+ * completo entre intentos para que los escritores en conflicto no vuelvan a chocar
+ * al mismo tiempo. En el carril contable la espera no duerme el hilo: el siguiente intento
+ * se reencola en el carril pasada la espera, y mientras tanto el carril atiende a los demás
+ * BIC que comparten ese hilo.
+ *
+ * Lleva además contadores de contención por BIC: operaciones, conflictos, reintentos
+ * y abortos (en Micrometer como {@code contabilidad.contencion}, con la etiqueta de BIC
+ * acotada por {@link MetricasContabilidad}). Una cuenta con tasa de abortos sostenida es candidata a otra estrategia
+ * (bloqueo pesimista, diario) en lugar del camino optimista. Solo los primeros
+ * {@code max-bics} BIC tienen contadores propios; el resto comparte
+ * {@link MetricasContabilidad#OTROS}, así un BIC inventado no agrega entradas a voluntad.
+ */
+@Slf4j
+@Component
+public class PoliticaReintentos {
+
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaxMs;
+    private final int maxBics;
+    private final MetricasContabilidad metricas;
+    private final MotorContabilizacion motor;
+    private final Map<String, Contadores> porBic = new ConcurrentHashMap<>();
+
+    public PoliticaReintentos(@Value("${contabilidad.reintentos.max-intentos:4}") int maxIntentos,
+            @Value("${contabilidad.reintentos.espera-base-ms:2}") long esperaBaseMs,
+            @Value("${contabilidad.reintentos.espera-max-ms:50}") long esperaMaxMs,
+            @Value("${contabilidad.reintentos.max-bics:1000}") int maxBics,
+            MetricasContabilidad metricas,
+            MotorContabilizacion motor) {
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaBaseMs = Math.max(0, esperaBaseMs);
+        this.esperaMaxMs = Math.max(this.esperaBaseMs, esperaMaxMs);
+        this.maxBics = Math.max(0, maxBics);
+        this.metricas = metricas;
+        this.motor = motor;
+    }
+
+    /**
+     * Ejecuta {@code intento} hasta que no falle por concurrencia o se agoten los intentos.
+     * {@code trasConflicto} descarta el estado que quedó obsoleto antes de reintentar.
+     * Dentro de un carril (operaciones anidadas en lotes o vencimientos) se reintenta sin
+     * espera: dormir ahí detendría a los demás BIC del carril.
+     */
+    public <T> T ejecutar(String bic, Supplier<T> intento, Runnable trasConflicto) {
+        Contadores contadores = contadores(bic);
+        contadores.operaciones.increment();
+        for (int n = 1;; n++) {
+            try {
+                return intento.get();
+            } catch (ConcurrencyFailureException e) {
+                conflicto(bic, n, e, contadores, trasConflicto);
+                if (!motor.enCarril(bic)) {
+                    esperar(n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Variante para una operación que ya corre en el carril del BIC: tras un conflicto el
+     * siguiente intento se reencola en el carril pasada la espera. El futuro se completa con
+     * el primer intento que no falle por concurrencia, o con el error al agotarlos.
+     */
+    public <T> CompletableFuture<T> ejecutarReprogramando(String bic, Supplier<T> intento, Runnable trasConflicto) {
+        Contadores contadores = contadores(bic);
+        contadores.operaciones.increment();
+        return intentar(bic, 1, intento, trasConflicto, contadores);
+    }
+
+    private <T> CompletableFuture<T> intentar(String bic, int n, Supplier<T> intento, Runnable trasConflicto,
+            Contadores contadores) {
+        try {
+            return CompletableFuture.completedFuture(intento.get());
+        } catch (ConcurrencyFailureException e) {
+            conflicto(bic, n, e, contadores, trasConflicto);
+            return motor.enviarTras(bic, espera(n), () -> intentar(bic, n + 1, intento, trasConflicto, contadores))
+                    .thenCompose(Function.identity());
+        }
+    }
+
+    // Registra el conflicto y, si no quedan intentos, aborta; si quedan, cuenta el reintento.
+    private void conflicto(String bic, int n, ConcurrencyFailureException e, Contadores contadores,
+            Runnable trasConflicto) {
+        contadores.conflictos.increment();
+        metricas.contencion("conflicto", bic);
+        trasConflicto.run();
+        if (n >= maxIntentos) {
+            contadores.abortos.increment();
+            metricas.contencion("aborto", bic);
+            log.warn("[CONTENCION] {} abortada tras {} intentos: {}", bic, n, e.getMessage());
+            throw new ConflictoConcurrenciaException("Conflicto de concurrencia persistente en la cuenta: " + bic);
+        }
+        contadores.reintentos.increment();
+        metricas.contencion("reintento", bic);
+    }
+
+    public List<ContencionCuentaDTO> estadisticas() {
+        return porBic.entrySet().stream()
+                .map(e -> e.getValue().toDTO(e.getKey()))
+                .sorted(Comparator.comparingLong(ContencionCuentaDTO::getConflictos).reversed())
+                .toList();
+    }
+
+    // Jitter completo: espera uniforme en [0, min(max, base * 2^(n-1))].
+    private long espera(int intento) {
+        long tope = Math.min(esperaMaxMs, esperaBaseMs << Math.min(intento - 1, 20));
+        return tope <= 0 ? 0 : ThreadLocalRandom.current().nextLong(tope + 1);
+    }
+
+    private void esperar(int intento) {
+        long ms = espera(intento);
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Reintento interrumpido en la cuenta", e);
+        }
+    }
+
+    private Contadores contadores(String bic) {
+        Contadores contadores = porBic.get(bic);
+        if (contadores != null) {
+            return contadores;
+        }
+        String clave = porBic.size() >= maxBics ? MetricasContabilidad.OTROS : bic;
+        return porBic.computeIfAbsent(clave, k -> new Contadores());
+    }
+
+    private static final class Contadores {
+        private final LongAdder operaciones = new LongAdder();
+        private final LongAdder conflictos = new LongAdder();
+        private final LongAdder reintentos = new LongAdder();
+        private final LongAdder abortos = new LongAdder();
+
+        private ContencionCuentaDTO toDTO(String bic) {
+            long ops = operaciones.sum();
+            long conf = conflictos.sum();
+            long abo = abortos.sum();
+            return ContencionCuentaDTO.builder()
+                    .codigoBic(bic)
+                    .operaciones(ops)
+                    .conflictos(conf)
+                    .reintentos(reintentos.sum())
+                    .abortos(abo)
+                    .tasaConflictos(ops > 0 ? (double) conf / ops : 0)
+                    .tasaAbortos(ops > 0 ? (double) abo / ops : 0)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decide, al tomar la conexión, si una transacción de solo lectura va a la réplica.
+ *
+ * Solo son candidatas las lecturas marcadas con {@link #enReplica}, que corren en una
+ * transacción de solo lectura (la del llamador si ya existe; dentro de una de escritura
+ * quedan en la primaria). Las demás lecturas (idempotencia, retenciones, feed, neteo)
+ * deciden escrituras y siguen en la primaria.
+ *
+ * La réplica se usa mientras su retraso, medido por la sonda de latidos, no supere
+ * {@code retraso-max-ms}; si lo supera o la sonda falla, todo vuelve a la primaria.
+ * Para leer lo propio, una lectura con BIC va a la primaria si esa cuenta se escribió hace
+ * menos de {@code ventana-escritura-ms} o si la réplica aún no aplicó un latido posterior
+ * a la escritura (el latido confirma después, así que la réplica que lo ve ya tiene la
+ * escritura).
+ */
+@Slf4j
+@Component
+public class ReplicaLectura {
+
+    private static final ThreadLocal<Contexto> CONTEXTO = new ThreadLocal<>();
+    private static final Contexto SIN_BIC = new Contexto(null);
+
+    private final boolean habilitada;
+    private final long retrasoMaxMs;
+    private final long ventanaEscrituraMs;
+    private final long sondaVigenteMs;
+    private final Map<String, Long> ultimaEscritura = new ConcurrentHashMap<>();
+    // El gestor de transacciones depende del DataSource enrutado, que depende de este componente
+    private final ObjectProvider<PlatformTransactionManager> transacciones;
+    private volatile TransactionTemplate lectura;
+    private final Counter haciaReplica;
+    private final Counter haciaPrimaria;
+
+    // Último latido de la primaria visible en la réplica y cuándo lo vio la sonda
+    private volatile long latidoAplicado = Long.MIN_VALUE;
+    private volatile long retrasoMs = Long.MAX_VALUE;
+    private volatile long ultimaSonda;
+    private volatile boolean sana;
+
+    public ReplicaLectura(MeterRegistry registry,
+            ObjectProvider<PlatformTransactionManager> transacciones,
+            @Value("${contabilidad.replica.habilitada:false}") boolean habilitada,
+            @Value("${contabilidad.replica.retraso-max-ms:2000}") long retrasoMaxMs,
+            @Value("${contabilidad.replica.ventana-escritura-ms:1000}") long ventanaEscrituraMs,
+            @Value("${contabilidad.replica.intervalo-sonda-ms:500}") long intervaloSondaMs) {
+        if (habilitada && retrasoMaxMs <= intervaloSondaMs) {
+            throw new IllegalStateException("contabilidad.replica.retraso-max-ms debe superar el intervalo de la sonda ("
+                    + intervaloSondaMs + " ms)");
+        }
+        this.transacciones = transacciones;
+        this.habilitada = habilitada;
+        this.retrasoMaxMs = retrasoMaxMs;
+        this.ventanaEscrituraMs = Math.max(0, ventanaEscrituraMs);
+        // Sin una sonda reciente no se sabe cuán atrasada está
+        this.sondaVigenteMs = 3 * intervaloSondaMs;
+        this.haciaReplica = Counter.builder("contabilidad.replica.lecturas").tag("destino", "replica").register(registry);
+        this.haciaPrimaria = Counter.builder("contabilidad.replica.lecturas").tag("destino", "primaria").register(registry);
+        Gauge.builder("contabilidad.replica.retraso", this, r -> r.retrasoMs == Long.MAX_VALUE ? -1 : r.retrasoMs)
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    /**
+     * Ejecuta una lectura tolerante al retraso en una transacción de solo lectura, que
+     * puede ir a la réplica.
+     */
+    public <T> T enReplica(Supplier<T> lectura) {
+        return conContexto(SIN_BIC, lectura);
+    }
+
+    /**
+     * Como {@link #enReplica(Supplier)}, pero lee la cuenta del BIC: tras escribirla, sus
+     * lecturas van a la primaria hasta que la réplica la alcance.
+     */
+    public <T> T enReplica(String bic, Supplier<T> lectura) {
+        return conContexto(new Contexto(bic), lectura);
+    }
+
+    /**
+     * Anota la escritura confirmada de la cuenta. Debe llamarse tras el commit.
+     */
+    public void registrarEscritura(String bic) {
+        if (habilitada) {
+            ultimaEscritura.put(bic, System.currentTimeMillis());
+        }
+    }
+
+    public void registrarEscrituras(Collection<String> bics) {
+        if (habilitada) {
+            long ahora = System.currentTimeMillis();
+            bics.forEach(bic -> ultimaEscritura.put(bic, ahora));
+        }
+    }
+
+    /**
+     * Consultado por el DataSource enrutado al obtener la conexión física.
+     */
+    public boolean usarReplica() {
+        Contexto contexto = CONTEXTO.get();
+        if (!habilitada || contexto == null || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        boolean replica = disponible() && !escrituraPendiente(contexto.bic());
+        (replica ? haciaReplica : haciaPrimaria).increment();
+        return replica;
+    }
+
+    /**
+     * Resultado de la sonda: {@code latido} es la marca más nueva de la primaria visible en la réplica.
+     */
+    void latidoVisto(long latido) {
+        long ahora = System.currentTimeMillis();
+        latidoAplicado = latido;
+        // Incluye hasta un intervalo de la sonda aunque la réplica esté al día
+        retrasoMs = Math.max(0, ahora - latido);
+        ultimaSonda = ahora;
+        actualizarEstado(retrasoMs <= retrasoMaxMs, null);
+    }
+
+    void sondaFallida(String motivo) {
+        retrasoMs = Long.MAX_VALUE;
+        ultimaSonda = System.currentTimeMillis();
+        actualizarEstado(false, motivo);
+    }
+
+    private boolean disponible() {
+        return sana && System.currentTimeMillis() - ultimaSonda <= sondaVigenteMs;
+    }
+
+    private boolean escrituraPendiente(String bic) {
+        if (bic == null) {
+            return false;
+        }
+        Long escrita = ultimaEscritura.get(bic);
+        if (escrita == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - escrita < ventanaEscrituraMs || escrita >= latidoAplicado) {
+            return true;
+        }
+        // La réplica ya la alcanzó: deja de ocupar memoria
+        ultimaEscritura.remove(bic, escrita);
+        return false;
+    }
+
+    private void actualizarEstado(boolean ahoraSana, String motivo) {
+        if (ahoraSana != sana) {
+            sana = ahoraSana;
+            if (ahoraSana) {
+                log.info("[REPLICA] Réplica disponible para lecturas (retraso {} ms)", retrasoMs);
+            } else if (motivo != null) {
+                log.warn("[REPLICA] Sonda fallida, lecturas a la primaria: {}", motivo);
+            } else {
+                log.warn("[REPLICA] Retraso de {} ms supera {} ms, lecturas a la primaria", retrasoMs, retrasoMaxMs);
+            }
+        }
+    }
+
+    private <T> T conContexto(Contexto contexto, Supplier<T> operacion) {
+        if (!habilitada) {
+            return operacion.get();
+        }
+        Contexto previo = CONTEXTO.get();
+        CONTEXTO.set(contexto);
+        try {
+            return lectura().execute(status -> operacion.get());
+        } finally {
+            if (previo == null) {
+                CONTEXTO.remove();
+            } else {
+                CONTEXTO.set(previo);
+            }
+        }
+    }
+
+    private TransactionTemplate lectura() {
+        TransactionTemplate plantilla = lectura;
+        if (plantilla == null) {
+            plantilla = new TransactionTemplate(transacciones.getObject());
+            plantilla.setReadOnly(true);
+            lectura = plantilla;
+        }
+        return plantilla;
+    }
+
+    private record Contexto(String bic) {
+    }
+}
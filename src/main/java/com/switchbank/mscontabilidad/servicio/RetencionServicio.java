@@ -0,0 +1,245 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.RetencionDTO;
+import com.switchbank.mscontabilidad.mapper.ContabilidadMapper;
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import com.switchbank.mscontabilidad.modelo.EstadoRetencion;
+import com.switchbank.mscontabilidad.modelo.Retencion;
+import com.switchbank.mscontabilidad.repositorio.RetencionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Ciclo de vida de las retenciones creadas por {@code reservarFondos}: captura (total o
+ * parcial), liberación y expiración por TTL.
+ *
+ * Las operaciones que mueven saldo se ejecutan en el carril del BIC, igual que cualquier
+ * otra mutación de la cuenta. Los vencimientos los entrega la {@link RuedaExpiracion} y se
+ * liberan en lotes por cuenta: una sola actualización de saldo por BIC y lote.
+ */
+@Slf4j
+@Service
+public class RetencionServicio {
+
+    private final RetencionRepository retencionRepo;
+    private final ContabilidadServicio contabilidad;
+    private final ContabilidadMapper mapper;
+    private final RuedaExpiracion rueda;
+    private final MotorContabilizacion motor;
+    private final BulkheadBd bulkhead;
+    private final MetricasContabilidad metricas;
+    private final TransactionTemplate lectura;
+    private final int lote;
+
+    public RetencionServicio(RetencionRepository retencionRepo,
+            ContabilidadServicio contabilidad,
+            ContabilidadMapper mapper,
+            RuedaExpiracion rueda,
+            MotorContabilizacion motor,
+            BulkheadBd bulkhead,
+            MetricasContabilidad metricas,
+            PlatformTransactionManager transactionManager,
+            @Value("${contabilidad.retenciones.lote:500}") int lote) {
+        this.retencionRepo = retencionRepo;
+        this.contabilidad = contabilidad;
+        this.mapper = mapper;
+        this.rueda = rueda;
+        this.motor = motor;
+        this.bulkhead = bulkhead;
+        this.metricas = metricas;
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.lote = Math.max(1, lote);
+    }
+
+    public RetencionDTO consultar(UUID idInstruccion) {
+        return bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> retencionRepo.findByIdInstruccion(idInstruccion))
+                .map(mapper::toDTO)
+                .orElseThrow(() -> new RuntimeException("Retención no encontrada: " + idInstruccion));
+    }
+
+    /**
+     * Captura {@code monto} de la parte pendiente (todo si es null). Lo capturado sigue
+     * bloqueado hasta la compensación y ya no expira; el resto sigue activo.
+     */
+    public RetencionDTO capturar(UUID idInstruccion, BigDecimal monto) {
+        if (monto != null && monto.signum() <= 0) {
+            throw new RuntimeException("El monto a capturar debe ser positivo");
+        }
+        return medir(MetricasContabilidad.OP_CAPTURA, idInstruccion, bic -> contabilidad.contabilizar(bic, cuenta -> {
+            Retencion retencion = retencionRepo.findByIdInstruccion(idInstruccion)
+                    .orElseThrow(() -> new RuntimeException("Retención no encontrada: " + idInstruccion));
+            if (retencion.getEstado() != EstadoRetencion.ACTIVA) {
+                if (monto == null && retencion.getEstado() == EstadoRetencion.CAPTURADA) {
+                    return mapper.toDTO(retencion); // Reintento de una captura total
+                }
+                throw new RuntimeException("La retención " + idInstruccion + " no está activa: " + retencion.getEstado());
+            }
+            if (!retencion.getFechaExpiracion().isAfter(LocalDateTime.now())) {
+                throw new RuntimeException("La retención " + idInstruccion + " expiró");
+            }
+            BigDecimal pendiente = retencion.getMontoPendiente();
+            BigDecimal capturado = monto != null ? monto : pendiente;
+            if (capturado.compareTo(pendiente) > 0) {
+                throw new RuntimeException("El monto a capturar (" + capturado
+                        + ") excede lo pendiente de la retención (" + pendiente + ")");
+            }
+            retencion.setMontoCapturado(retencion.getMontoCapturado().add(capturado));
+            if (capturado.compareTo(pendiente) == 0) {
+                retencion.setEstado(EstadoRetencion.CAPTURADA);
+            }
+            return mapper.toDTO(retencionRepo.save(retencion));
+        }));
+    }
+
+    /**
+     * Devuelve la parte pendiente al saldo disponible. Es idempotente: una retención
+     * ya cerrada se devuelve tal cual.
+     */
+    public RetencionDTO liberar(UUID idInstruccion) {
+        return medir(MetricasContabilidad.OP_LIBERACION, idInstruccion, bic -> contabilidad.contabilizar(bic, cuenta -> {
+            Retencion retencion = retencionRepo.findByIdInstruccion(idInstruccion)
+                    .orElseThrow(() -> new RuntimeException("Retención no encontrada: " + idInstruccion));
+            if (retencion.getEstado() == EstadoRetencion.ACTIVA) {
+                cerrar(cuenta, retencion, EstadoRetencion.LIBERADA, LocalDateTime.now());
+                retencionRepo.save(retencion);
+            }
+            return mapper.toDTO(retencion);
+        }));
+    }
+
+    // El BIC de la retención se resuelve dentro de la medición
+    private RetencionDTO medir(String operacion, UUID idInstruccion, Function<String, RetencionDTO> accion) {
+        MetricasContabilidad.Medicion medicion = metricas.iniciar(operacion, null);
+        try {
+            String bic = bicDe(idInstruccion);
+            medicion.bic(bic);
+            RetencionDTO respuesta = accion.apply(bic);
+            medicion.exito();
+            return respuesta;
+        } catch (RuntimeException e) {
+            medicion.fallo(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.retenciones.tick-ms:1000}")
+    public void expirarVencidas() {
+        List<RuedaExpiracion.Vencimiento> vencidos = rueda.avanzar(System.currentTimeMillis());
+        if (vencidos.isEmpty()) {
+            return;
+        }
+        Map<String, List<UUID>> porBic = new LinkedHashMap<>();
+        vencidos.forEach(v -> porBic.computeIfAbsent(v.bic(), k -> new ArrayList<>()).add(v.idInstruccion()));
+
+        List<CompletableFuture<Integer>> lotes = new ArrayList<>();
+        porBic.forEach((bic, ids) -> {
+            for (int i = 0; i < ids.size(); i += lote) {
+                List<UUID> tramo = ids.subList(i, Math.min(i + lote, ids.size()));
+                lotes.add(motor.enviar(bic, () -> expirarLote(bic, tramo))
+                        .exceptionally(e -> {
+                            log.error("[RETENCIONES] Error expirando lote de {}: {}", bic,
+                                    MotorContabilizacion.desenvolver(e).getMessage());
+                            // Se reintentan en el próximo barrido
+                            return 0;
+                        }));
+            }
+        });
+        int expiradas = lotes.stream().mapToInt(CompletableFuture::join).sum();
+        log.info("[RETENCIONES] {} retenciones expiradas de {} vencimientos ({} cuentas)", expiradas,
+                vencidos.size(), porBic.size());
+    }
+
+    private int expirarLote(String bic, List<UUID> ids) {
+        return contabilidad.contabilizar(bic, cuenta -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            List<Retencion> vencidas = new ArrayList<>();
+            for (Retencion retencion : retencionRepo.findByIdInstruccionIn(ids)) {
+                if (retencion.getEstado() != EstadoRetencion.ACTIVA) {
+                    continue; // Capturada o liberada antes de vencer
+                }
+                if (retencion.getFechaExpiracion().isAfter(ahora)) {
+                    // Se extendió o el reloj de la rueda se adelantó: vuelve a la rueda
+                    rueda.programar(retencion.getIdInstruccion(), bic, retencion.getFechaExpiracion());
+                    continue;
+                }
+                cerrar(cuenta, retencion, EstadoRetencion.EXPIRADA, ahora);
+                vencidas.add(retencion);
+            }
+            retencionRepo.saveAll(vencidas);
+            return vencidas.size();
+        });
+    }
+
+    /**
+     * Libera lo pendiente. Lo liberado nunca supera lo bloqueado: si una compensación ya
+     * consumió esos fondos (reserva no capturada por el switch), solo se libera el resto.
+     */
+    private static void cerrar(CuentaTecnica cuenta, Retencion retencion, EstadoRetencion estado,
+            LocalDateTime ahora) {
+        long liberado = Math.max(0, Math.min(Centavos.de(retencion.getMontoPendiente()), cuenta.getFondosBloqueados()));
+        cuenta.setFondosBloqueados(Centavos.restar(cuenta.getFondosBloqueados(), liberado));
+        cuenta.setSaldoDisponible(Centavos.sumar(cuenta.getSaldoDisponible(), liberado));
+        retencion.setMontoLiberado(retencion.getMontoLiberado().add(Centavos.aBigDecimal(liberado)));
+        retencion.setEstado(retencion.getMontoCapturado().signum() > 0 ? EstadoRetencion.CAPTURADA : estado);
+        retencion.setFechaCierre(ahora);
+    }
+
+    /**
+     * Reconstruye la rueda con las retenciones activas.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void cargarRueda() {
+        long total = lectura.execute(status -> {
+            long n = 0;
+            try (Stream<Object[]> activas = retencionRepo.streamActivas()) {
+                for (Object[] fila : (Iterable<Object[]>) activas::iterator) {
+                    rueda.programar((UUID) fila[0], (String) fila[1], (LocalDateTime) fila[2]);
+                    n++;
+                }
+            }
+            return n;
+        });
+        if (total > 0) {
+            log.info("[RETENCIONES] {} retenciones activas programadas para expirar", total);
+        }
+    }
+
+    /**
+     * Red de seguridad: retenciones vencidas que la rueda de este nodo no conoce
+     * (creadas en otro nodo o que fallaron al expirar) vuelven a la rueda.
+     */
+    @Scheduled(fixedDelayString = "${contabilidad.retenciones.barrido-ms:60000}",
+            initialDelayString = "${contabilidad.retenciones.barrido-ms:60000}")
+    public void barrerVencidas() {
+        List<Object[]> vencidas = retencionRepo.findVencidas(LocalDateTime.now(), PageRequest.of(0, lote * 10));
+        vencidas.forEach(fila -> rueda.programar((UUID) fila[0], (String) fila[1], LocalDateTime.now()));
+        if (!vencidas.isEmpty()) {
+            log.warn("[RETENCIONES] Barrido: {} retenciones vencidas reprogramadas", vencidas.size());
+        }
+    }
+
+    private String bicDe(UUID idInstruccion) {
+        return bulkhead.ejecutar(BulkheadBd.GLOBAL, () -> retencionRepo.findBicByIdInstruccion(idInstruccion))
+                .orElseThrow(() -> new RuntimeException("Retención no encontrada: " + idInstruccion));
+    }
+}
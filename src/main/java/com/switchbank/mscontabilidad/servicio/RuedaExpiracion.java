@@ -0,0 +1,87 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Rueda de tiempo (hashed timing wheel) con los vencimientos de las retenciones activas.
+ *
+ * Programar es O(1): el vencimiento cae en la ranura de su tick. Cada avance revisa solo
+ * las ranuras de los ticks transcurridos; lo que vence más allá de una vuelta se vuelve a
+ * encolar en la misma ranura. Vive solo en memoria: se reconstruye desde BD al arrancar.
+ */
+@Component
+public class RuedaExpiracion {
+
+    public record Vencimiento(UUID idInstruccion, String bic, long tick) {
+    }
+
+    private final long tickMs;
+    private final Queue<Vencimiento>[] ranuras;
+    // Solo se lee y mueve bajo el monitor de la rueda
+    private long cursor;
+
+    @SuppressWarnings("unchecked")
+    public RuedaExpiracion(@Value("${contabilidad.retenciones.tick-ms:1000}") long tickMs,
+            @Value("${contabilidad.retenciones.ranuras:512}") int ranuras) {
+        this.tickMs = Math.max(1, tickMs);
+        this.ranuras = new Queue[Math.max(1, ranuras)];
+        for (int i = 0; i < this.ranuras.length; i++) {
+            this.ranuras[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.cursor = System.currentTimeMillis() / this.tickMs;
+    }
+
+    /**
+     * Sincronizado con {@link #avanzar}: si un avance moviera el cursor entre calcular el tick
+     * y encolarlo, el vencimiento caería en una ranura ya recorrida y esperaría una vuelta.
+     */
+    public synchronized void programar(UUID idInstruccion, String bic, LocalDateTime vence) {
+        long ms = vence.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        // Lo ya vencido se atiende en el próximo avance
+        long tick = Math.max(ms / tickMs, cursor);
+        ranuras[(int) Math.floorMod(tick, (long) ranuras.length)].add(new Vencimiento(idInstruccion, bic, tick));
+    }
+
+    /**
+     * Avanza hasta {@code ahoraMs} y devuelve lo vencido en los ticks recorridos.
+     */
+    public synchronized List<Vencimiento> avanzar(long ahoraMs) {
+        long hasta = ahoraMs / tickMs;
+        List<Vencimiento> vencidos = new ArrayList<>();
+        // Más de una vuelta de atraso: basta con recorrer cada ranura una vez
+        long desde = Math.max(cursor, hasta - ranuras.length + 1);
+        for (long tick = desde; tick <= hasta; tick++) {
+            Queue<Vencimiento> ranura = ranuras[(int) Math.floorMod(tick, (long) ranuras.length)];
+            for (int n = ranura.size(); n > 0; n--) {
+                Vencimiento v = ranura.poll();
+                if (v == null) {
+                    break;
+                }
+                if (v.tick() <= hasta) {
+                    vencidos.add(v);
+                } else {
+                    ranura.add(v);
+                }
+            }
+        }
+        cursor = hasta + 1;
+        return vencidos;
+    }
+
+    public int pendientes() {
+        int total = 0;
+        for (Queue<Vencimiento> ranura : ranuras) {
+            total += ranura.size();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,197 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import com.switchbank.mscontabilidad.dto.MovimientoConciliacion;
+import com.switchbank.mscontabilidad.dto.SaldoHistoricoDTO;
+import com.switchbank.mscontabilidad.modelo.Centavos;
+import com.switchbank.mscontabilidad.modelo.CuentaTecnica;
+import com.switchbank.mscontabilidad.modelo.InstantaneaSaldo;
+import com.switchbank.mscontabilidad.modelo.Movimiento;
+import com.switchbank.mscontabilidad.modelo.OrigenInstantanea;
+import com.switchbank.mscontabilidad.repositorio.CuentaTecnicaRepository;
+import com.switchbank.mscontabilidad.repositorio.InstantaneaSaldoRepository;
+import com.switchbank.mscontabilidad.repositorio.MovimientoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Instantáneas de saldo por cuenta y saldo en un instante.
+ *
+ * Se toma una instantánea de cada cuenta cada {@code intervalo-ms}, solo si cambió desde la
+ * anterior, y una por cuenta en cada compensación asentada, dentro de su misma transacción.
+ * El saldo en un instante parte de la instantánea más reciente anterior y suma el efecto de
+ * los movimientos posteriores hasta ese instante; si es anterior a la primera instantánea,
+ * parte de la siguiente y los descuenta. El costo depende de la actividad de un intervalo y
+ * no de la antigüedad de la cuenta.
+ *
+ * El saldo reconstruido es la posición total (disponible + bloqueado), como en la
+ * conciliación: las reservas mueven fondos entre ambos sin generar movimiento.
+ */
+@Slf4j
+@Service
+public class SaldoHistoricoServicio {
+
+    private final CuentaTecnicaRepository cuentaRepo;
+    private final MovimientoRepository movimientoRepo;
+    private final InstantaneaSaldoRepository instantaneaRepo;
+    private final ArchivoMovimientos archivo;
+    private final ContabilidadServicio contabilidad;
+    private final ReplicaLectura replica;
+    private final TransactionTemplate transaccion;
+    private final TransactionTemplate lectura;
+    private final boolean programadas;
+
+    public SaldoHistoricoServicio(CuentaTecnicaRepository cuentaRepo,
+            MovimientoRepository movimientoRepo,
+            InstantaneaSaldoRepository instantaneaRepo,
+            ArchivoMovimientos archivo,
+            ContabilidadServicio contabilidad,
+            ReplicaLectura replica,
+            PlatformTransactionManager transactionManager,
+            @Value("${contabilidad.instantaneas.programadas:true}") boolean programadas) {
+        this.cuentaRepo = cuentaRepo;
+        this.movimientoRepo = movimientoRepo;
+        this.instantaneaRepo = instantaneaRepo;
+        this.archivo = archivo;
+        this.contabilidad = contabilidad;
+        this.replica = replica;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.programadas = programadas;
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.instantaneas.intervalo-ms:3600000}",
+            initialDelayString = "${contabilidad.instantaneas.intervalo-ms:3600000}")
+    public void instantaneasProgramadas() {
+        if (!programadas) {
+            return;
+        }
+        List<String> bics = cuentaRepo.findAllBics();
+        int tomadas = 0;
+        for (String bic : bics) {
+            try {
+                if (tomar(bic, OrigenInstantanea.PERIODICA) != null) {
+                    tomadas++;
+                }
+            } catch (RuntimeException e) {
+                // Se reintenta en la próxima corrida; las consultas usan la instantánea anterior
+                log.error("[INSTANTANEAS] Error tomando la instantánea de {}: {}", bic, e.getMessage());
+            }
+        }
+        log.info("[INSTANTANEAS] {} instantáneas nuevas de {} cuentas", tomadas, bics.size());
+    }
+
+    /**
+     * Toma la instantánea en el carril de la cuenta, con los asientos del diario ya aplicados.
+     *
+     * @return la instantánea, o null si la cuenta no cambió desde la anterior
+     */
+    InstantaneaSaldo tomar(String bic, OrigenInstantanea origen) {
+        return contabilidad.ejecutarEnCarril(bic, () -> transaccion.execute(status -> {
+            // La compensación escribe fuera del carril: el bloqueo espera a que confirme, así
+            // ningún SETTLEMENT queda con fecha anterior al corte sin estar en los saldos.
+            CuentaTecnica cuenta = cuentaRepo.findByBicParaActualizar(bic)
+                    .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + bic));
+            Long ultimoMovimiento = movimientoRepo.findUltimoIdMovimiento(cuenta.getIdCuenta());
+
+            InstantaneaSaldo anterior = instantaneaRepo.findFirstByIdCuentaOrderByFechaCorteDesc(cuenta.getIdCuenta())
+                    .orElse(null);
+            if (anterior != null && Objects.equals(anterior.getIdUltimoMovimiento(), ultimoMovimiento)
+                    && Centavos.de(anterior.getSaldoDisponible()) == cuenta.getSaldoDisponible()
+                    && Centavos.de(anterior.getFondosBloqueados()) == cuenta.getFondosBloqueados()) {
+                return null;
+            }
+            return instantaneaRepo.save(nueva(cuenta, LocalDateTime.now(), origen, null, ultimoMovimiento));
+        }));
+    }
+
+    /**
+     * Instantánea de cada cuenta recién compensada; corre en la transacción de la compensación.
+     */
+    void registrarCompensacion(List<Movimiento> liquidaciones) {
+        instantaneaRepo.saveAll(liquidaciones.stream()
+                .map(mov -> nueva(mov.getCuenta(), mov.getFechaRegistro(), OrigenInstantanea.COMPENSACION,
+                        mov.getCicloId(), mov.getIdMovimiento()))
+                .toList());
+    }
+
+    public SaldoHistoricoDTO saldoEn(String bic, LocalDateTime fecha) {
+        if (fecha.isAfter(LocalDateTime.now())) {
+            throw new RuntimeException("La fecha consultada es posterior al momento actual: " + fecha);
+        }
+        UUID idCuenta = replica.enReplica(bic,
+                () -> lectura.execute(status -> cuentaRepo.findByBic(bic).map(CuentaTecnica::getIdCuenta)))
+                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para BIC: " + bic));
+
+        SaldoHistoricoDTO saldo = replica.enReplica(bic, () -> lectura.execute(status -> reconstruir(bic, idCuenta, fecha)));
+        if (saldo == null) {
+            // Cuenta aún sin instantáneas: se toma una y se reconstruye hacia atrás desde ella,
+            // en la primaria porque la réplica puede no tenerla todavía
+            tomar(bic, OrigenInstantanea.CONSULTA);
+            saldo = lectura.execute(status -> reconstruir(bic, idCuenta, fecha));
+        }
+        return saldo;
+    }
+
+    private SaldoHistoricoDTO reconstruir(String bic, UUID idCuenta, LocalDateTime fecha) {
+        InstantaneaSaldo anterior = instantaneaRepo
+                .findFirstByIdCuentaAndFechaCorteLessThanEqualOrderByFechaCorteDesc(idCuenta, fecha).orElse(null);
+        if (anterior != null) {
+            Collection<MovimientoConciliacion> delta = archivo.movimientosEntre(idCuenta, anterior.getFechaCorte(), fecha);
+            return resultado(bic, fecha, anterior, anterior.getPosicion().add(efectos(idCuenta, delta)), delta.size());
+        }
+        InstantaneaSaldo siguiente = instantaneaRepo
+                .findFirstByIdCuentaAndFechaCorteGreaterThanOrderByFechaCorteAsc(idCuenta, fecha).orElse(null);
+        if (siguiente == null) {
+            return null;
+        }
+        Collection<MovimientoConciliacion> delta = archivo.movimientosEntre(idCuenta, fecha, siguiente.getFechaCorte());
+        return resultado(bic, fecha, siguiente, siguiente.getPosicion().subtract(efectos(idCuenta, delta)), delta.size());
+    }
+
+    // Mismo cálculo que la conciliación: los reversos se clasifican dentro de la cuenta
+    private BigDecimal efectos(UUID idCuenta, Collection<MovimientoConciliacion> movimientos) {
+        Set<UUID> originalesDebito = archivo.originalesDebito(idCuenta, movimientos);
+        BigDecimal total = BigDecimal.ZERO;
+        for (MovimientoConciliacion mov : movimientos) {
+            total = total.add(ConciliacionServicio.efecto(mov, originalesDebito));
+        }
+        return total;
+    }
+
+    private static InstantaneaSaldo nueva(CuentaTecnica cuenta, LocalDateTime fechaCorte, OrigenInstantanea origen,
+            Integer cicloId, Long ultimoMovimiento) {
+        InstantaneaSaldo instantanea = new InstantaneaSaldo();
+        instantanea.setIdCuenta(cuenta.getIdCuenta());
+        instantanea.setFechaCorte(fechaCorte);
+        instantanea.setSaldoDisponible(Centavos.aBigDecimal(cuenta.getSaldoDisponible()));
+        instantanea.setFondosBloqueados(Centavos.aBigDecimal(cuenta.getFondosBloqueados()));
+        instantanea.setIdUltimoMovimiento(ultimoMovimiento);
+        instantanea.setOrigen(origen);
+        instantanea.setCicloId(cicloId);
+        return instantanea;
+    }
+
+    private static SaldoHistoricoDTO resultado(String bic, LocalDateTime fecha, InstantaneaSaldo base,
+            BigDecimal saldo, int movimientos) {
+        return SaldoHistoricoDTO.builder()
+                .codigoBic(bic)
+                .fecha(fecha)
+                .saldo(saldo)
+                .fechaInstantanea(base.getFechaCorte())
+                .movimientosAplicados(movimientos)
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.switchbank.mscontabilidad.servicio;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Mide el retraso de la réplica con latidos: escribe la hora en la primaria y lee en la
+ * réplica el último latido que ya le llegó. Va directo a cada pool, sin el enrutamiento.
+ */
+public class SondaReplica {
+
+    private static final int ID_LATIDO = 1;
+
+    private final JdbcTemplate primaria;
+    private final JdbcTemplate replica;
+    private final ReplicaLectura estado;
+
+    public SondaReplica(DataSource primaria, DataSource replica, ReplicaLectura estado) {
+        this.primaria = new JdbcTemplate(primaria);
+        this.replica = new JdbcTemplate(replica);
+        this.estado = estado;
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.replica.intervalo-sonda-ms:500}")
+    public void sondear() {
+        try {
+            latir(System.currentTimeMillis());
+            Long visto = replica.queryForObject("SELECT marcaMs FROM LatidoReplica WHERE id = ?", Long.class, ID_LATIDO);
+            estado.latidoVisto(visto);
+        } catch (EmptyResultDataAccessException e) {
+            estado.sondaFallida("la réplica aún no recibió ningún latido");
+        } catch (RuntimeException e) {
+            estado.sondaFallida(e.getMessage());
+        }
+    }
+
+    private void latir(long marca) {
+        if (primaria.update("UPDATE LatidoReplica SET marcaMs = ? WHERE id = ?", marca, ID_LATIDO) == 0) {
+            primaria.update("INSERT INTO LatidoReplica (id, marcaMs) VALUES (?, ?)", ID_LATIDO, marca);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+-- Esquema previo a Flyway, tal como lo dejó ddl-auto=update con las entidades originales.
+-- Las bases ya desplegadas se toman como línea base en esta versión
+-- (spring.flyway.baseline-on-migrate) y solo aplican las migraciones siguientes.
+
+CREATE TABLE cuentaTecnica (
+    idCuenta UUID PRIMARY KEY,
+    bic VARCHAR(20) NOT NULL UNIQUE,
+    saldoDisponible NUMERIC(18,2) NOT NULL,
+    fondosBloqueados NUMERIC(18,2) NOT NULL,              -- Reservas y retenciones activas
+    firmaIntegridad VARCHAR(255) NOT NULL,
+    ultimaConciliacion TIMESTAMP(6)
+);
+
+CREATE TABLE movimiento (
+    idMovimiento BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    idCuenta UUID NOT NULL REFERENCES cuentaTecnica(idCuenta),
+    idInstruccion UUID NOT NULL,                          -- Referencia lógica al Núcleo
+    tipo VARCHAR(10) NOT NULL
+        CHECK (tipo IN ('CREDIT', 'DEBIT', 'RECHARGE', 'REVERSAL', 'SETTLEMENT')),
+    monto NUMERIC(18,2) NOT NULL,
+    saldoResultante NUMERIC(18,2) NOT NULL,
+    fechaRegistro TIMESTAMP(6) NOT NULL,
+    referenciaId UUID                                     -- Original de un reverso
+);
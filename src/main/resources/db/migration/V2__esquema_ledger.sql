@@ -0,0 +1,156 @@
+-- Esquema del ledger sobre la línea base V1. Hibernate solo lo valida al arrancar
+-- (ddl-auto=validate). Todo es idempotente (IF NOT EXISTS): las bases que ddl-auto=update
+-- ya había llevado a un estado intermedio convergen al mismo esquema.
+
+-- Punto de control de la conciliación incremental y control optimista de escrituras concurrentes
+ALTER TABLE cuentaTecnica ADD COLUMN IF NOT EXISTS saldoConciliado NUMERIC(18,2);
+ALTER TABLE cuentaTecnica ADD COLUMN IF NOT EXISTS idUltimoMovimientoConciliado BIGINT;
+ALTER TABLE cuentaTecnica ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Ciclo de compensación que originó el movimiento (solo SETTLEMENT)
+ALTER TABLE movimiento ADD COLUMN IF NOT EXISTS cicloId INTEGER;
+-- El id lo asigna ahora la secuencia agrupada (IDENTITY deshabilita el batching de inserts);
+-- DROP DEFAULT cubre las bases creadas con BIGSERIAL
+ALTER TABLE movimiento ALTER COLUMN idMovimiento DROP IDENTITY IF EXISTS;
+ALTER TABLE movimiento ALTER COLUMN idMovimiento DROP DEFAULT;
+
+-- Keyset de /range/page y cursor de /range/stream
+CREATE INDEX IF NOT EXISTS idx_movimiento_fecha_id ON movimiento(fechaRegistro, idMovimiento);
+-- Conciliación incremental por cuenta
+CREATE INDEX IF NOT EXISTS idx_movimiento_cuenta_id ON movimiento(idCuenta, idMovimiento);
+-- Delta de movimientos desde una instantánea de saldo
+CREATE INDEX IF NOT EXISTS idx_movimiento_cuenta_fecha ON movimiento(idCuenta, fechaRegistro);
+-- Resolución de originales y de reversos existentes (individual y en bloque)
+CREATE INDEX IF NOT EXISTS idx_movimiento_instruccion ON movimiento(idInstruccion);
+CREATE INDEX IF NOT EXISTS idx_movimiento_referencia ON movimiento(referenciaId);
+
+-- Nivel histórico de movimiento: conciliados y fuera de la ventana de reverso.
+-- Conserva idMovimiento; sin FK para que el traslado en bloque no valide contra cuentaTecnica.
+CREATE TABLE IF NOT EXISTS movimientoHistorico (
+    idMovimiento BIGINT PRIMARY KEY,
+    idCuenta UUID NOT NULL,
+    idInstruccion UUID NOT NULL,
+    tipo VARCHAR(10) NOT NULL,
+    monto NUMERIC(18,2) NOT NULL,
+    saldoResultante NUMERIC(18,2) NOT NULL,
+    fechaRegistro TIMESTAMP(6) NOT NULL,
+    referenciaId UUID,
+    cicloId INTEGER
+);
+-- Consultas por rango y reversos fuera de ventana
+CREATE INDEX IF NOT EXISTS idx_movhist_fecha_id ON movimientoHistorico(fechaRegistro, idMovimiento);
+CREATE INDEX IF NOT EXISTS idx_movhist_instruccion ON movimientoHistorico(idInstruccion);
+CREATE INDEX IF NOT EXISTS idx_movhist_cuenta_fecha ON movimientoHistorico(idCuenta, fechaRegistro);
+
+-- Secuencia agrupada de Movimiento (allocationSize = 50 en la entidad). Arranca un bloque por
+-- encima de los ids ya emitidos en ambos niveles (el optimizador pooled toma el valor leído
+-- como límite superior) y nunca retrocede si ddl-auto=update ya la había creado.
+CREATE SEQUENCE IF NOT EXISTS Movimiento_SEQ INCREMENT BY 50;
+SELECT setval('Movimiento_SEQ', GREATEST(
+        (SELECT last_value FROM Movimiento_SEQ),
+        (SELECT COALESCE(MAX(idMovimiento), 0) + 51 FROM movimiento),
+        (SELECT COALESCE(MAX(idMovimiento), 0) + 51 FROM movimientoHistorico)), false);
+
+-- Instantáneas de saldo (periódicas y en cada compensación) para consultas de saldo en un instante
+CREATE TABLE IF NOT EXISTS instantaneaSaldo (
+    idInstantanea BIGINT PRIMARY KEY,
+    idCuenta UUID NOT NULL,
+    fechaCorte TIMESTAMP(6) NOT NULL,
+    saldoDisponible NUMERIC(18,2) NOT NULL,
+    fondosBloqueados NUMERIC(18,2) NOT NULL,
+    idUltimoMovimiento BIGINT,
+    origen VARCHAR(12) NOT NULL,                          -- PERIODICA, COMPENSACION, CONSULTA
+    cicloId INTEGER
+);
+CREATE SEQUENCE IF NOT EXISTS InstantaneaSaldo_SEQ INCREMENT BY 50;
+CREATE INDEX IF NOT EXISTS idx_instantanea_cuenta_fecha ON instantaneaSaldo(idCuenta, fechaCorte);
+
+-- Outbox del feed de movimientos: secuencia nula hasta que el publicador la asigna
+CREATE TABLE IF NOT EXISTS eventoMovimiento (
+    idEvento BIGINT PRIMARY KEY,
+    secuencia BIGINT,                                     -- Offset de los consumidores, en orden de publicación
+    fechaPublicacion TIMESTAMP(6),
+    idMovimiento BIGINT NOT NULL,
+    bic VARCHAR(20) NOT NULL,
+    idInstruccion UUID NOT NULL,
+    tipo VARCHAR(10) NOT NULL,
+    monto NUMERIC(18,2) NOT NULL,
+    saldoResultante NUMERIC(18,2) NOT NULL,
+    fechaRegistro TIMESTAMP(6) NOT NULL,
+    referenciaId UUID,
+    cicloId INTEGER
+);
+CREATE SEQUENCE IF NOT EXISTS EventoMovimiento_SEQ INCREMENT BY 50;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_evento_secuencia ON eventoMovimiento(secuencia);
+CREATE INDEX IF NOT EXISTS idx_evento_publicacion ON eventoMovimiento(fechaPublicacion);
+-- Solo las filas por publicar; el publicador las lee en cada pasada
+CREATE INDEX IF NOT EXISTS idx_evento_pendiente ON eventoMovimiento(idEvento) WHERE secuencia IS NULL;
+
+-- Respuestas originales de instrucciones mutantes (idempotencia de reintentos)
+CREATE TABLE IF NOT EXISTS registroIdempotencia (
+    idRegistro BIGINT PRIMARY KEY,
+    idInstruccion UUID NOT NULL,
+    operacion VARCHAR(20) NOT NULL,                       -- REGISTRO, RECARGA, RESERVA, REVERSO
+    bic VARCHAR(20) NOT NULL,
+    respuesta VARCHAR(2000) NOT NULL,                     -- CuentaDTO serializado tal como se respondió
+    fechaRegistro TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_idempotencia_instruccion UNIQUE (idInstruccion, operacion, bic)
+);
+CREATE SEQUENCE IF NOT EXISTS RegistroIdempotencia_SEQ INCREMENT BY 50;
+
+-- Ciclos de compensación asentados (idempotencia del cierre por cicloId)
+CREATE TABLE IF NOT EXISTS cicloCompensacion (
+    cicloId INTEGER PRIMARY KEY,
+    posiciones INTEGER NOT NULL,
+    montoCompensado NUMERIC(18,2) NOT NULL,
+    fechaAplicacion TIMESTAMP(6) NOT NULL
+);
+
+-- Cortes de ciclo calculados por el ledger (neteo sobre el feed: secuencias en (desde, hasta])
+CREATE TABLE IF NOT EXISTS cierreCiclo (
+    cicloId INTEGER PRIMARY KEY,
+    secuenciaDesde BIGINT NOT NULL,
+    secuenciaHasta BIGINT NOT NULL,
+    participantes INTEGER NOT NULL,
+    neto NUMERIC(18,2) NOT NULL,
+    fechaCierre TIMESTAMP(6) NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_cierre_secuencia ON cierreCiclo(secuenciaHasta);
+
+CREATE TABLE IF NOT EXISTS posicionCiclo (
+    idPosicion BIGINT PRIMARY KEY,
+    cicloId INTEGER NOT NULL,
+    bic VARCHAR(20) NOT NULL,
+    totalDebitos NUMERIC(18,2) NOT NULL,
+    totalCreditos NUMERIC(18,2) NOT NULL,
+    posicionNeta NUMERIC(18,2) NOT NULL,
+    CONSTRAINT uk_posicion_ciclo_bic UNIQUE (cicloId, bic)
+);
+CREATE SEQUENCE IF NOT EXISTS PosicionCiclo_SEQ INCREMENT BY 50;
+
+-- Latido de la sonda de réplica: la marca leída en la réplica indica hasta dónde replicó
+CREATE TABLE IF NOT EXISTS latidoReplica (
+    id INTEGER PRIMARY KEY,
+    marcaMs BIGINT NOT NULL                               -- Epoch en milisegundos
+);
+
+-- Retenciones (holds) creadas por /reservar
+CREATE TABLE IF NOT EXISTS retencion (
+    idRetencion BIGINT PRIMARY KEY,
+    idInstruccion UUID NOT NULL UNIQUE,
+    idCuenta UUID NOT NULL REFERENCES cuentaTecnica(idCuenta),
+    bic VARCHAR(20) NOT NULL,
+    monto NUMERIC(18,2) NOT NULL,
+    montoCapturado NUMERIC(18,2) NOT NULL DEFAULT 0.00,
+    montoLiberado NUMERIC(18,2) NOT NULL DEFAULT 0.00,
+    estado VARCHAR(10) NOT NULL,                          -- ACTIVA, CAPTURADA, LIBERADA, EXPIRADA, LIQUIDADA
+    fechaCreacion TIMESTAMP(6) NOT NULL,
+    fechaExpiracion TIMESTAMP(6) NOT NULL,
+    fechaCierre TIMESTAMP(6),
+    cicloId INTEGER,
+    version BIGINT NOT NULL DEFAULT 0
+);
+CREATE SEQUENCE IF NOT EXISTS Retencion_SEQ INCREMENT BY 50;
+-- Vencimientos pendientes (barrido de respaldo) y liberaciones por cuenta (conciliación)
+CREATE INDEX IF NOT EXISTS idx_retencion_estado_expiracion ON retencion(estado, fechaExpiracion);
+CREATE INDEX IF NOT EXISTS idx_retencion_cuenta_cierre ON retencion(idCuenta, fechaCierre);